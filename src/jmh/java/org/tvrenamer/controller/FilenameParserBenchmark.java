@@ -0,0 +1,84 @@
+package org.tvrenamer.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.tvrenamer.model.FileEpisode;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures FilenameParser.parseFilename, the entry point the program actually
+ * uses, on the filenames of FilenameParserTest and FileEpisodeTest.  Each
+ * invocation parses every name once.<p>
+ *
+ * parseFilenameUncached empties the parse cache first, so it measures the
+ * parser itself; parseFilenameCached measures the common case of names that
+ * have been seen before.  parseAll is the bulk entry point used when files are
+ * dropped onto the window; there are well over 64 names, so it parses them in
+ * parallel, and parseAllCached shows how well the threads share the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilenameParserBenchmark {
+
+    private FileEpisode[] episodes;
+    private List<Path> paths;
+
+    @Setup
+    public void setUp() {
+        List<String> names = ParserCorpus.allInputFilenames();
+        episodes = new FileEpisode[names.size()];
+        Path[] pathArray = new Path[names.size()];
+        for (int i = 0; i < episodes.length; i++) {
+            pathArray[i] = Paths.get(names.get(i));
+            episodes[i] = new FileEpisode(pathArray[i]);
+        }
+        paths = Arrays.asList(pathArray);
+    }
+
+    @Benchmark
+    public void parseFilenameUncached(final Blackhole blackhole) {
+        FilenameParser.clearParseCache();
+        for (FileEpisode episode : episodes) {
+            FilenameParser.parseFilename(episode);
+            blackhole.consume(episode.getFilenameShow());
+        }
+    }
+
+    @Benchmark
+    public void parseFilenameCached(final Blackhole blackhole) {
+        for (FileEpisode episode : episodes) {
+            FilenameParser.parseFilename(episode);
+            blackhole.consume(episode.getFilenameShow());
+        }
+    }
+
+    @Benchmark
+    public List<ParsedFilename> parseAllUncached() {
+        FilenameParser.clearParseCache();
+        return FilenameParser.parseAll(paths);
+    }
+
+    @Benchmark
+    public List<ParsedFilename> parseAllCached() {
+        return FilenameParser.parseAll(paths);
+    }
+}
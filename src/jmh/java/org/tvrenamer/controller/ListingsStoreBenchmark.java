@@ -0,0 +1,105 @@
+package org.tvrenamer.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.tvrenamer.controller.util.SpecialCharacterEncodingReader;
+import org.tvrenamer.model.ListingsStore;
+import org.tvrenamer.model.Show;
+import org.tvrenamer.model.TVRenamerIOException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures filling in the episodes of a library of 50 shows, as happens when
+ * the program starts and looks up the shows of the files the user adds.
+ * Each show has the listing of the fixture, with 226 episodes.<p>
+ *
+ * parseLibraryListings parses the listings of every show, and adds the
+ * episodes to the show, which is what happens when the listings come from
+ * the response cache (a download would come on top of that).
+ * loadLibraryFromStore loads the episodes of every show from a
+ * {@link ListingsStore} instead.  Both build the index of the episodes by
+ * season, which is most of what's left of the time it takes to load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingsStoreBenchmark {
+
+    private static final int NUM_SHOWS = 50;
+    private static final long TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+
+    private String listing;
+    private Path directory;
+    private ListingsStore store;
+
+    private static Show newShow(final int i) {
+        return new Show(String.valueOf(-7000 - i), "Benchmark Show " + i);
+    }
+
+    private Show parseListing(final int i) throws TVRenamerIOException {
+        Show show = newShow(i);
+        show.addEpisodeInfos(TheTVDBProvider.parseEpisodeInfos(
+            new SpecialCharacterEncodingReader(new StringReader(listing)),
+            TheTVDBProviderBenchmark.LISTINGS_FIXTURE));
+        return show;
+    }
+
+    @Setup
+    public void setUp() throws IOException, TVRenamerIOException {
+        listing = TheTVDBProviderBenchmark.readFixture(TheTVDBProviderBenchmark.LISTINGS_FIXTURE);
+        directory = Files.createTempDirectory("listings");
+        store = new ListingsStore(directory, Clock.systemUTC());
+        for (int i = 0; i < NUM_SHOWS; i++) {
+            store.save(parseListing(i), TIME_TO_LIVE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Show[] parseLibraryListings() throws TVRenamerIOException {
+        Show[] shows = new Show[NUM_SHOWS];
+        for (int i = 0; i < NUM_SHOWS; i++) {
+            shows[i] = parseListing(i);
+        }
+        return shows;
+    }
+
+    @Benchmark
+    public Show[] loadLibraryFromStore() {
+        Show[] shows = new Show[NUM_SHOWS];
+        for (int i = 0; i < NUM_SHOWS; i++) {
+            shows[i] = newShow(i);
+            if (store.load(shows[i]) != ListingsStore.LoadResult.CURRENT) {
+                throw new IllegalStateException("listings not stored for " + shows[i]);
+            }
+        }
+        return shows;
+    }
+}
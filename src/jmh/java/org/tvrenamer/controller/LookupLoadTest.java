@@ -0,0 +1,296 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.model.EpisodeDb;
+import org.tvrenamer.model.FailedShow;
+import org.tvrenamer.model.FileEpisode;
+import org.tvrenamer.model.Series;
+import org.tvrenamer.model.Show;
+import org.tvrenamer.model.ShowStore;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the whole lookup pipeline, from adding a folder of files to the
+ * EpisodeDb, through ShowStore and ListingsLookup, to the proposed name of each
+ * file (FileEpisode.listingsComplete), against a {@link TVDBStandIn}.  It
+ * reports the files per second, and the mean, and the 50th and 99th percentiles,
+ * of the time from adding the folder to each file having its proposed name.<p>
+ *
+ * It is not a JMH benchmark: it runs the pipeline once, since the shows and
+ * listings that are looked up stay in memory.  Run it with "gradle loadTest",
+ * passing the arguments in the "loadTestArgs" property:
+ * <pre>
+ *   files shows seasons episodesPerSeason latencyMillis
+ * </pre>
+ * which default to 10000 500 5 20 20.  The files are empty files in a
+ * temporary folder, which also takes the place of the user's home folder, so
+ * the run starts with no preferences and an empty cache, and leaves nothing
+ * behind.  Unless the provider throttle is configured with the usual system
+ * properties, it's opened up, so that the number measures our code and not
+ * the limits we keep to with the real provider.<p>
+ *
+ * It also reports the most threads the process had at once, and the most
+ * memory it had resident (where the operating system says; Linux does), so
+ * the kinds of lookup thread (see {@link LookupExecutor}) can be compared:
+ * <pre>
+ *   gradle loadTest -Dtvrenamer.lookup.threads=platform
+ *   gradle loadTest -Dtvrenamer.lookup.threads=virtual
+ * </pre>
+ * Each should be run in a JVM of its own, under Java 21 or later for virtual
+ * threads.  The stand-in server's threads are counted separately.
+ */
+public final class LookupLoadTest {
+
+    private static final String[] DEFAULTS = { "10000", "500", "5", "20", "20" };
+
+    private LookupLoadTest() {
+    }
+
+    private static void setDefaultProperty(final String name, final String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    /*
+     * Creates the files, spread evenly across the shows, each show's files in
+     * a folder of its own.
+     */
+    private static void createFiles(final Path folder, final int files, final int shows,
+                                    final int seasons, final int episodesPerSeason)
+        throws IOException
+    {
+        for (int i = 0; i < files; i++) {
+            int show = i % shows;
+            int n = i / shows;
+            int season = 1 + (n / episodesPerSeason);
+            int episode = 1 + (n % episodesPerSeason);
+            String name = TVDBStandIn.showName(show);
+            Path showFolder = folder.resolve(name);
+            if (n == 0) {
+                Files.createDirectories(showFolder);
+            }
+            Files.createFile(showFolder.resolve(String.format("%s.S%02dE%02d.720p.mkv",
+                                                              name.replace(' ', '.'),
+                                                              season, episode)));
+        }
+    }
+
+    private static void deleteRecursively(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc)
+                throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static long percentile(final long[] sorted, final double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /*
+     * Gets the most memory the process has had resident, from /proc, which
+     * only Linux has.
+     */
+    private static String peakResidentMemory() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmHWM:")) {
+                        return line.substring("VmHWM:".length()).trim();
+                    }
+                }
+            } catch (IOException ioe) {
+                // fall through
+            }
+        }
+        return "unknown";
+    }
+
+    /*
+     * Does what ResultsTable does with the files that are added, without the table.
+     */
+    private static class Pipeline implements AddEpisodeListener {
+        final long start;
+        final long[] elapsed;
+        final CountDownLatch done;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        Pipeline(final int files, final long start) {
+            this.start = start;
+            this.elapsed = new long[files];
+            this.done = new CountDownLatch(files);
+        }
+
+        void finished(final boolean succeeded) {
+            if (!succeeded) {
+                failed.incrementAndGet();
+            }
+            int slot = next.getAndIncrement();
+            if (slot < elapsed.length) {
+                elapsed[slot] = System.nanoTime() - start;
+            }
+            done.countDown();
+        }
+
+        @Override
+        public void addEpisodes(final Queue<FileEpisode> episodes) {
+            ShowStore.Batch lookups = new ShowStore.Batch();
+            for (final FileEpisode episode : episodes) {
+                if (!episode.wasParsed()) {
+                    finished(false);
+                    continue;
+                }
+                lookups.add(episode.getFilenameShow(), new ShowInformationListener() {
+                        @Override
+                        public void downloadSucceeded(Show show) {
+                            episode.setEpisodeShow(show);
+                            if (!show.isValidSeries()) {
+                                finished(false);
+                                return;
+                            }
+                            Series series = show.asSeries();
+                            series.addListingsListener(new ShowListingsListener() {
+                                    @Override
+                                    public void listingsDownloadComplete() {
+                                        finished(episode.listingsComplete() > 0);
+                                    }
+
+                                    @Override
+                                    public void listingsDownloadFailed(Exception err) {
+                                        episode.listingsFailed(err);
+                                        finished(false);
+                                    }
+                                });
+                        }
+
+                        @Override
+                        public void downloadFailed(FailedShow failedShow) {
+                            episode.setFailedShow(failedShow);
+                            finished(false);
+                        }
+
+                        @Override
+                        public void apiHasBeenDeprecated() {
+                            episode.setApiDiscontinued();
+                            finished(false);
+                        }
+                    });
+            }
+            lookups.submit();
+        }
+
+        @Override
+        public void refreshDestinations() {
+        }
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args
+     *    files, shows, seasons, episodes per season, latency in milliseconds;
+     *    any that are missing take their defaults
+     * @throws Exception if the files can't be created, or the server started
+     */
+    public static void main(final String[] args) throws Exception {
+        String[] values = DEFAULTS.clone();
+        System.arraycopy(args, 0, values, 0, Math.min(args.length, values.length));
+        final int files = Integer.parseInt(values[0]);
+        final int shows = Integer.parseInt(values[1]);
+        final int seasons = Integer.parseInt(values[2]);
+        final int episodesPerSeason = Integer.parseInt(values[3]);
+        final long latencyMillis = Long.parseLong(values[4]);
+        if (files > (long) shows * seasons * episodesPerSeason) {
+            throw new IllegalArgumentException("not enough episodes for " + files + " files");
+        }
+
+        // This must be done before any of the program's classes are loaded.
+        Path home = Files.createTempDirectory("tvrenamer-load");
+        System.setProperty("user.home", home.toString());
+        setDefaultProperty("tvrenamer.provider.requestsPerSecond", "100000");
+        setDefaultProperty("tvrenamer.provider.burst", "1000");
+        setDefaultProperty("tvrenamer.provider.maxInFlight", "256");
+        Logger.getLogger("").setLevel(Level.WARNING);
+
+        Path folder = home.resolve("drop");
+        Files.createDirectories(folder);
+        createFiles(folder, files, shows, seasons, episodesPerSeason);
+
+        try (TVDBStandIn standIn = new TVDBStandIn(shows, seasons, episodesPerSeason,
+                                                   latencyMillis).start())
+        {
+            TheTVDBProvider.setSiteUrl(standIn.getSiteUrl());
+            EpisodeDb episodeDb = new EpisodeDb();
+            Pipeline pipeline = new Pipeline(files, System.nanoTime());
+            episodeDb.subscribe(pipeline);
+            episodeDb.addFolderToQueue(folder.toString());
+            long parsedNanos = System.nanoTime() - pipeline.start;
+
+            boolean finished = pipeline.done.await(30, TimeUnit.MINUTES);
+            long totalNanos = System.nanoTime() - pipeline.start;
+            int completed = Math.min(files, pipeline.next.get());
+            long[] sorted = Arrays.copyOf(pipeline.elapsed, completed);
+            Arrays.sort(sorted);
+
+            System.out.printf("%d files, %d shows of %d x %d episodes, %d ms latency%n",
+                              files, shows, seasons, episodesPerSeason, latencyMillis);
+            if (!finished) {
+                System.out.printf("TIMED OUT: only %d files finished%n", completed);
+            }
+            System.out.printf("parsed and queued in %.1f ms; all done in %.1f ms%n",
+                              parsedNanos / 1e6, totalNanos / 1e6);
+            System.out.printf("%.1f files/sec; %d failed%n",
+                              completed / (totalNanos / 1e9), pipeline.failed.get());
+            if (completed > 0) {
+                System.out.printf("time to proposed name: mean %.1f ms, p50 %.1f ms, p99 %.1f ms,"
+                                  + " max %.1f ms%n",
+                                  Arrays.stream(sorted).average().orElse(0.0) / 1e6,
+                                  percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                                  sorted[completed - 1] / 1e6);
+            }
+            System.out.printf("%d requests to the server; %s%n", standIn.getRequestCount(),
+                              ProviderThrottle.getProviderThrottle());
+            System.out.printf("%s lookup threads; most threads at once %d, of which the"
+                              + " stand-in server's %d; most memory resident %s%n",
+                              LookupExecutor.MODE.toString().toLowerCase(Locale.ROOT),
+                              ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+                              standIn.getThreadCount(), peakResidentMemory());
+            System.out.print(HttpConnectionHandler.dumpStatistics());
+        } finally {
+            ShowStore.cleanUp();
+            ListingsLookup.cleanUp();
+            deleteRecursively(home);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.model.EpisodeCorpus;
+import org.tvrenamer.model.EpisodeTestData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Supplies the benchmarks with the filenames from FilenameParserTest.<p>
+ *
+ * The test data is read by EpisodeCorpus, so the benchmarks always use the same
+ * names as the test.
+ */
+final class ParserCorpus {
+
+    private ParserCorpus() {
+        // utility class
+    }
+
+    /**
+     * @return the input filenames of FilenameParserTest, in order
+     */
+    static List<String> inputFilenames() {
+        List<String> names = new ArrayList<>();
+        for (EpisodeTestData data : EpisodeCorpus.fromTest(FilenameParserTest.class)) {
+            names.add(data.inputFilename);
+        }
+        return names;
+    }
+
+    /**
+     * @return the input filenames of FilenameParserTest, followed by those of
+     *    FileEpisodeTest
+     */
+    static List<String> allInputFilenames() {
+        List<String> names = inputFilenames();
+        for (EpisodeTestData data : EpisodeCorpus.fileEpisodeTestData()) {
+            names.add(data.inputFilename);
+        }
+        return names;
+    }
+
+    /**
+     * @return the input filenames of FilenameParserTest, as Paths
+     */
+    static Path[] inputPaths() {
+        List<String> names = inputFilenames();
+        Path[] paths = new Path[names.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = Paths.get(names.get(i));
+        }
+        return paths;
+    }
+
+    /**
+     * The names as FilenameParser actually matches them: with the show name
+     * from the parent directory inserted, if necessary, and junk removed.
+     *
+     * @return the stripped names of the test files
+     */
+    static String[] strippedNames() {
+        Path[] paths = inputPaths();
+        String[] stripped = new String[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            stripped[i] = FilenameParser.stripJunk(FilenameParser.insertShowNameIfNeeded(paths[i]));
+        }
+        return stripped;
+    }
+}
@@ -0,0 +1,255 @@
+package org.tvrenamer.controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.tvrenamer.controller.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP server that stands in for the provider, with a catalog of
+ * made-up shows, so that the whole lookup pipeline can be run and measured
+ * without the network.  It answers the two requests TheTVDBProvider makes:
+ * <pre>
+ *   api/GetSeries.php?seriesname=(query)
+ *   api/(key)/series/(id)/all/en.xml
+ * </pre>
+ * in the provider's format, with only the fields we read.  A search finds
+ * the show whose query string is the same as the one searched for, and a
+ * second show with a longer name, as the provider often does.  Each show
+ * has the same number of seasons and episodes.  Every response can be
+ * delayed, to stand for the time a real server would take.<p>
+ *
+ * Point TheTVDBProvider at it with {@link TheTVDBProvider#setSiteUrl}.
+ */
+final class TVDBStandIn implements AutoCloseable {
+    private static final String CONSONANTS = "bdfgklmnprstvz";
+    private static final String VOWELS = "aeiou";
+    private static final int SYLLABLES = CONSONANTS.length() * VOWELS.length();
+    private static final int FIRST_ID = 800000;
+    private static final String OTHER_SUFFIX = " Revisited";
+
+    private static final Pattern LISTINGS_PATH
+        = Pattern.compile("/api/[^/]+/series/(\\d+)/all/[a-z]+\\.xml");
+
+    private final int shows;
+    private final int seasons;
+    private final int episodesPerSeason;
+    private final long latencyMillis;
+    private final Map<String, Integer> showsByQuery = new HashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param shows
+     *    the number of shows in the catalog
+     * @param seasons
+     *    the number of seasons of each show
+     * @param episodesPerSeason
+     *    the number of episodes in each season
+     * @param latencyMillis
+     *    how long to wait before answering each request
+     */
+    TVDBStandIn(final int shows, final int seasons, final int episodesPerSeason,
+                final long latencyMillis)
+    {
+        this.shows = shows;
+        this.seasons = seasons;
+        this.episodesPerSeason = episodesPerSeason;
+        this.latencyMillis = latencyMillis;
+        for (int i = 0; i < shows; i++) {
+            showsByQuery.put(StringUtils.makeQueryString(showName(i)), i);
+        }
+    }
+
+    private static String syllable(final int n) {
+        return "" + CONSONANTS.charAt(n / VOWELS.length()) + VOWELS.charAt(n % VOWELS.length());
+    }
+
+    private static String word(final int n) {
+        String word = syllable(n % SYLLABLES) + syllable((n / SYLLABLES) % SYLLABLES);
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Gets the name of a show in the catalog.  The names are made of letters
+     * and spaces, so they survive being put in a filename and parsed back.
+     *
+     * @param show
+     *    the number of the show, from 0
+     * @return the name of the show
+     */
+    static String showName(final int show) {
+        int words = SYLLABLES * SYLLABLES;
+        return word(show % words) + " " + word(show / words);
+    }
+
+    /**
+     * Starts the server on a free port of the loopback address.
+     *
+     * @return this
+     * @throws IOException if the server can't be started
+     */
+    TVDBStandIn start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::respond);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stand-in-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return the base URL of the server, to give to TheTVDBProvider.setSiteUrl
+     */
+    String getSiteUrl() {
+        return "http://" + server.getAddress().getHostString() + ":"
+            + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return the number of requests the server has answered
+     */
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of threads the server has started, which are counted
+     *    in the process's threads, but aren't ours
+     */
+    int getThreadCount() {
+        return threads.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private static void appendElement(final StringBuilder xml, final String name,
+                                      final Object value)
+    {
+        xml.append('<').append(name).append('>').append(value)
+            .append("</").append(name).append(">\n");
+    }
+
+    private static void appendSeries(final StringBuilder xml, final int id, final String name) {
+        xml.append("<Series>\n");
+        appendElement(xml, "seriesid", id);
+        appendElement(xml, "SeriesName", name);
+        appendElement(xml, "Status", "Ended");
+        xml.append("</Series>\n");
+    }
+
+    private String search(final String query) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data>\n");
+        Integer show = showsByQuery.get(StringUtils.makeQueryString(query));
+        if (show != null) {
+            appendSeries(xml, FIRST_ID + show, showName(show));
+            appendSeries(xml, FIRST_ID + shows + show, showName(show) + OTHER_SUFFIX);
+        }
+        return xml.append("</Data>\n").toString();
+    }
+
+    private String listings(final int id) {
+        int show = (id - FIRST_ID) % shows;
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data>\n");
+        appendSeries(xml, id, showName(show));
+        for (int season = 1; season <= seasons; season++) {
+            for (int episode = 1; episode <= episodesPerSeason; episode++) {
+                xml.append("<Episode>\n");
+                appendElement(xml, "id", ((long) id * 10000L) + (season * 100L) + episode);
+                appendElement(xml, "SeasonNumber", season);
+                appendElement(xml, "EpisodeNumber", episode);
+                appendElement(xml, "EpisodeName", word(id + season) + " " + word(episode));
+                appendElement(xml, "FirstAired",
+                              String.format("%04d-%02d-%02d", 2000 + season,
+                                            1 + ((episode - 1) / 28) % 12, 1 + (episode - 1) % 28));
+                appendElement(xml, "DVD_season", "");
+                appendElement(xml, "DVD_episodenumber", "");
+                xml.append("</Episode>\n");
+            }
+        }
+        return xml.append("</Data>\n").toString();
+    }
+
+    private void send(final HttpExchange exchange, final int code, final String body)
+        throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+        exchange.sendResponseHeaders(code, (bytes.length == 0) ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String queryParameter(final String query, final String name)
+        throws UnsupportedEncodingException
+    {
+        if (query == null) {
+            return "";
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return URLDecoder.decode(parameter.substring(name.length() + 1), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    private void respond(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latencyMillis > 0L) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/api/GetSeries.php")) {
+            String query = queryParameter(exchange.getRequestURI().getRawQuery(), "seriesname");
+            send(exchange, 200, search(query));
+            return;
+        }
+        Matcher listings = LISTINGS_PATH.matcher(path);
+        if (listings.matches()) {
+            int id = Integer.parseInt(listings.group(1));
+            if ((id >= FIRST_ID) && (id < FIRST_ID + (2 * shows))) {
+                send(exchange, 200, listings(id));
+                return;
+            }
+        }
+        send(exchange, 404, "");
+    }
+}
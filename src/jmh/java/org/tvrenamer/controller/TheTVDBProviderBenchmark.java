@@ -0,0 +1,116 @@
+package org.tvrenamer.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.tvrenamer.controller.util.SpecialCharacterEncodingReader;
+import org.tvrenamer.controller.util.StringUtils;
+import org.tvrenamer.model.EpisodeInfo;
+import org.tvrenamer.model.TVRenamerIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing an episode listings document, without the network.<p>
+ *
+ * The document is a fixture in the same format as the provider's
+ * "series/{id}/all/en.xml", with 226 episodes in 11 seasons.  With the
+ * "episodes" parameter set to 3000, the episodes of the fixture are repeated
+ * (with new ids) to make a listing as long as that of a long-running daily
+ * show.  parseListings
+ * parses the document as it is after encodeSpecialCharacters, which is what
+ * the provider code used to do once the download completed;
+ * encodeAndParseListings includes that step.  streamAndParseListings encodes
+ * the document through a SpecialCharacterEncodingReader as it's parsed, which
+ * is what the provider code does now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TheTVDBProviderBenchmark {
+
+    static final String LISTINGS_FIXTURE = "/fixtures/series-listing-en.xml";
+
+    private static final String EPISODE_START = "<Episode>";
+    private static final String DATA_END = "</Data>";
+
+    @Param({"226", "3000"})
+    public int episodes;
+
+    private String downloaded;
+    private String encoded;
+
+    static String readFixture(final String name) {
+        try (InputStream in = TheTVDBProviderBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("fixture not found: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new IllegalStateException("unable to read fixture " + name, ioe);
+        }
+    }
+
+    /*
+     * Makes a listing with the given number of episodes, by repeating the
+     * episodes of the given listing.  Each copy of an episode gets a new id.
+     */
+    static String longListing(final String listing, final int count) {
+        int first = listing.indexOf(EPISODE_START);
+        int end = listing.lastIndexOf(DATA_END);
+        String[] originals = listing.substring(first, end).split("(?=" + EPISODE_START + ")");
+        StringBuilder xml = new StringBuilder(listing.substring(0, first));
+        for (int i = 0; i < count; i++) {
+            xml.append(originals[i % originals.length]
+                       .replaceFirst("<id>[0-9]+</id>", "<id>" + (5000000 + i) + "</id>"));
+        }
+        xml.append(listing.substring(end));
+        return xml.toString();
+    }
+
+    @Setup
+    public void setUp() {
+        downloaded = longListing(readFixture(LISTINGS_FIXTURE), episodes);
+        encoded = StringUtils.encodeSpecialCharacters(downloaded);
+    }
+
+    @Benchmark
+    public EpisodeInfo[] parseListings() throws TVRenamerIOException {
+        return TheTVDBProvider.parseEpisodeInfos(encoded, LISTINGS_FIXTURE);
+    }
+
+    @Benchmark
+    public EpisodeInfo[] encodeAndParseListings() throws TVRenamerIOException {
+        return TheTVDBProvider.parseEpisodeInfos(StringUtils.encodeSpecialCharacters(downloaded),
+                                                 LISTINGS_FIXTURE);
+    }
+
+    @Benchmark
+    public EpisodeInfo[] streamAndParseListings() throws TVRenamerIOException {
+        return TheTVDBProvider.parseEpisodeInfos(
+            new SpecialCharacterEncodingReader(new StringReader(downloaded)), LISTINGS_FIXTURE);
+    }
+}
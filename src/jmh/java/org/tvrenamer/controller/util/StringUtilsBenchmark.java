@@ -0,0 +1,116 @@
+package org.tvrenamer.controller.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.tvrenamer.controller.FilenameParserTest;
+import org.tvrenamer.model.EpisodeCorpus;
+import org.tvrenamer.model.EpisodeTestData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the string normalization done on every file: turning the show name
+ * found in the filename into a query string, and turning show names, episode
+ * titles and finished filenames into something legal on the file system.<p>
+ *
+ * The inputs are the show names found in the filenames of FilenameParserTest
+ * and FileEpisodeTest (for the query string methods), and the proper show names,
+ * episode titles and expected replacements of those tests (for sanitiseTitle).
+ * Each invocation processes every input once.  replacePunctuationWithRegex
+ * is the original, regular expression version of replacePunctuation, for
+ * comparison.<p>
+ *
+ * sanitiseCleanTitle uses only the titles that sanitiseTitle doesn't change,
+ * which is most of them.  Those should not allocate anything; run it with
+ * "-prof gc" and check that gc.alloc.rate.norm is (close to) zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+    private String[] filenameShows;
+    private String[] titles;
+    private String[] cleanTitles;
+
+    private static void addIfPresent(final List<String> list, final String value) {
+        if (value != null) {
+            list.add(value);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        List<EpisodeTestData> data = EpisodeCorpus.fromTest(FilenameParserTest.class);
+        data.addAll(EpisodeCorpus.fileEpisodeTestData());
+
+        List<String> shows = new ArrayList<>();
+        List<String> titleList = new ArrayList<>();
+        for (EpisodeTestData episode : data) {
+            addIfPresent(shows, episode.filenameShow);
+            addIfPresent(titleList, episode.properShowName);
+            addIfPresent(titleList, episode.episodeTitle);
+            addIfPresent(titleList, episode.expectedReplacement);
+        }
+        filenameShows = shows.toArray(new String[shows.size()]);
+        titles = titleList.toArray(new String[titleList.size()]);
+
+        List<String> clean = new ArrayList<>();
+        for (String title : titleList) {
+            if (title.equals(StringUtils.sanitiseTitle(title))) {
+                clean.add(title);
+            }
+        }
+        cleanTitles = clean.toArray(new String[clean.size()]);
+    }
+
+    @Benchmark
+    public void makeQueryString(final Blackhole blackhole) {
+        for (String show : filenameShows) {
+            blackhole.consume(StringUtils.makeQueryString(show));
+        }
+    }
+
+    @Benchmark
+    public void replacePunctuation(final Blackhole blackhole) {
+        for (String show : filenameShows) {
+            blackhole.consume(StringUtils.replacePunctuation(show));
+        }
+    }
+
+    @Benchmark
+    public void replacePunctuationWithRegex(final Blackhole blackhole) {
+        for (String show : filenameShows) {
+            blackhole.consume(StringUtils.replacePunctuationWithRegex(show));
+        }
+    }
+
+    @Benchmark
+    public void sanitiseTitle(final Blackhole blackhole) {
+        for (String title : titles) {
+            blackhole.consume(StringUtils.sanitiseTitle(title));
+        }
+    }
+
+    @Benchmark
+    public void sanitiseCleanTitle(final Blackhole blackhole) {
+        for (String title : cleanTitles) {
+            blackhole.consume(StringUtils.sanitiseTitle(title));
+        }
+    }
+}
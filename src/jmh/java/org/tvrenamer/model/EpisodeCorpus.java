@@ -0,0 +1,71 @@
+package org.tvrenamer.model;
+
+import org.junit.BeforeClass;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Supplies the benchmarks with the EpisodeTestData of the unit tests.<p>
+ *
+ * The tests build their data in a series of @BeforeClass methods, which add to a
+ * private list called "values".  Rather than copy the data, we run those methods
+ * and read the list, so the benchmarks always use the same data as the tests.
+ * Since the methods add to the list, each class is only read once.
+ */
+public final class EpisodeCorpus {
+
+    private static final Map<Class<?>, List<EpisodeTestData>> LOADED = new HashMap<>();
+
+    private EpisodeCorpus() {
+        // utility class
+    }
+
+    /**
+     * Runs the @BeforeClass methods of the given test class, and returns the
+     * EpisodeTestData they created.
+     *
+     * @param testClass
+     *    a test class which keeps its EpisodeTestData in a static field "values"
+     * @return a copy of the test data, in order
+     */
+    public static synchronized List<EpisodeTestData> fromTest(final Class<?> testClass) {
+        List<EpisodeTestData> data = LOADED.get(testClass);
+        if (data != null) {
+            return new ArrayList<>(data);
+        }
+        data = new ArrayList<>();
+        try {
+            for (Method method : testClass.getMethods()) {
+                if (method.isAnnotationPresent(BeforeClass.class)
+                    && Modifier.isStatic(method.getModifiers()))
+                {
+                    method.invoke(null);
+                }
+            }
+            Field field = testClass.getDeclaredField("values");
+            field.setAccessible(true);
+            for (Object value : (List<?>) field.get(null)) {
+                data.add((EpisodeTestData) value);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("unable to read " + testClass.getSimpleName()
+                                            + " data", e);
+        }
+        LOADED.put(testClass, data);
+        return new ArrayList<>(data);
+    }
+
+    /**
+     * @return the test data of FileEpisodeTest, which includes show and episode
+     *    titles and replacement templates
+     */
+    public static List<EpisodeTestData> fileEpisodeTestData() {
+        return fromTest(FileEpisodeTest.class);
+    }
+}
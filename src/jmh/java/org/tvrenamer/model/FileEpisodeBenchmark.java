@@ -0,0 +1,107 @@
+package org.tvrenamer.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rendering of the new filename from the user's template.<p>
+ *
+ * The shows, episodes and templates come from FileEpisodeTest; each invocation
+ * renders every one of them once.  plugInInformationAllTokens renders the same
+ * episodes with a template that uses every token, including the dates, and
+ * plugInAirDate renders only the date tokens, for a year's worth of dates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileEpisodeBenchmark {
+
+    private static final String ALL_TOKENS_TEMPLATE
+        = "%S [%sx%e] %t (%0s.%0e) %T %r %yyyy-%0m-%0d %d.%m.%yy";
+
+    private static final String DATE_TEMPLATE
+        = "%S %yyyy-%0m-%0d (%d/%m/%yy)";
+
+    private static final int NUM_DATES = 365;
+
+    private String[] templates;
+    private Show[] shows;
+    private Episode[] episodes;
+    private EpisodePlacement[] placements;
+    private String[] resolutions;
+    private LocalDate[] dates;
+
+    @Setup
+    public void setUp() {
+        List<EpisodeTestData> data = EpisodeCorpus.fileEpisodeTestData();
+        int count = data.size();
+        templates = new String[count];
+        shows = new Show[count];
+        episodes = new Episode[count];
+        placements = new EpisodePlacement[count];
+        resolutions = new String[count];
+        LocalDate airDate = LocalDate.of(2005, 9, 22);
+        for (int i = 0; i < count; i++) {
+            EpisodeTestData test = data.get(i);
+            templates[i] = test.replacementMask;
+            shows[i] = new Show(test.showId, test.properShowName);
+            EpisodeInfo info = new EpisodeInfo.Builder()
+                .episodeId(test.episodeId)
+                .seasonNumber(String.valueOf(test.seasonNum))
+                .episodeNumber(String.valueOf(test.episodeNum))
+                .episodeName(test.episodeTitle)
+                .firstAired(airDate.plusWeeks(i).toString())
+                .build();
+            episodes[i] = new Episode(info);
+            // Parse the air date now, rather than during the first invocation.
+            episodes[i].getAirDate();
+            placements[i] = new EpisodePlacement(test.seasonNum, test.episodeNum);
+            resolutions[i] = test.episodeResolution;
+        }
+
+        dates = new LocalDate[NUM_DATES];
+        for (int i = 0; i < NUM_DATES; i++) {
+            dates[i] = airDate.plusDays(i);
+        }
+    }
+
+    @Benchmark
+    public void plugInInformation(final Blackhole blackhole) {
+        for (int i = 0; i < episodes.length; i++) {
+            blackhole.consume(FileEpisode.plugInInformation(templates[i], shows[i], episodes[i],
+                                                            placements[i], resolutions[i]));
+        }
+    }
+
+    @Benchmark
+    public void plugInInformationAllTokens(final Blackhole blackhole) {
+        for (int i = 0; i < episodes.length; i++) {
+            blackhole.consume(FileEpisode.plugInInformation(ALL_TOKENS_TEMPLATE, shows[i],
+                                                            episodes[i], placements[i],
+                                                            resolutions[i]));
+        }
+    }
+
+    @Benchmark
+    public void plugInAirDate(final Blackhole blackhole) {
+        for (LocalDate date : dates) {
+            blackhole.consume(FileEpisode.plugInAirDate(date, DATE_TEMPLATE));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.tvrenamer.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding a long listing to a Show, and indexing it by season.<p>
+ *
+ * The listing is synthetic: 5000 episodes, in 20 seasons of 250, the way a
+ * daily show might have.  Every episode has an over-the-air placement, and
+ * the first half of the seasons also have DVD placements, which differ from
+ * the air order for a few episodes, as they often do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShowBenchmark {
+
+    private static final int NUM_SEASONS = 20;
+    private static final int EPISODES_PER_SEASON = 250;
+
+    private EpisodeInfo[] infos;
+    private Show indexedShow;
+
+    static EpisodeInfo[] syntheticListing(final int seasons, final int episodesPerSeason) {
+        EpisodeInfo[] infos = new EpisodeInfo[seasons * episodesPerSeason];
+        LocalDate airDate = LocalDate.of(1999, 1, 11);
+        int n = 0;
+        for (int season = 1; season <= seasons; season++) {
+            for (int episode = 1; episode <= episodesPerSeason; episode++) {
+                EpisodeInfo.Builder builder = new EpisodeInfo.Builder()
+                    .episodeId(String.valueOf(300000 + n))
+                    .seasonNumber(String.valueOf(season))
+                    .episodeNumber(String.valueOf(episode))
+                    .episodeName("Episode " + season + "-" + episode)
+                    .firstAired(airDate.toString());
+                if (season <= seasons / 2) {
+                    int dvdEpisode = ((episode % 10) == 0) ? episode - 1
+                        : (((episode % 10) == 9) ? episode + 1 : episode);
+                    builder.dvdSeason(String.valueOf(season))
+                        .dvdEpisodeNumber(dvdEpisode + ".0");
+                }
+                infos[n++] = builder.build();
+                airDate = airDate.plusDays(1);
+            }
+        }
+        return infos;
+    }
+
+    @Setup
+    public void setUp() {
+        infos = syntheticListing(NUM_SEASONS, EPISODES_PER_SEASON);
+        indexedShow = new Show("-5000", "Benchmark Daily Show");
+        indexedShow.addEpisodeInfos(infos);
+    }
+
+    @Benchmark
+    public Show addEpisodeInfos() {
+        Show show = new Show("-5000", "Benchmark Daily Show");
+        show.addEpisodeInfos(infos);
+        return show;
+    }
+
+    @Benchmark
+    public Show indexEpisodesBySeason() {
+        indexedShow.indexEpisodesBySeason();
+        return indexedShow;
+    }
+}
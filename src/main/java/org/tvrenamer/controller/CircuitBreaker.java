@@ -0,0 +1,138 @@
+package org.tvrenamer.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops us from sending requests to a server that is failing.  After a given
+ * number of failures in a row, the breaker "opens", and requests are refused
+ * right away, without going to the server, for a cool-down period.  After
+ * that, one trial request is let through; if it succeeds, the breaker closes
+ * again, and if it fails, the breaker stays open for another cool-down.<p>
+ *
+ * Without this, when the provider is down, every lookup would wait for its
+ * own timeouts and retries, one after the other.<p>
+ *
+ * Access is synchronized; no I/O is done under the lock.
+ */
+final class CircuitBreaker {
+
+    /**
+     * The states the breaker can be in.
+     */
+    enum State {
+        /** Requests go through as usual. */
+        CLOSED,
+        /** Requests are refused until the cool-down is over. */
+        OPEN,
+        /** A trial request has been let through, and the others are refused. */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long coolDownNanos;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    private long timesOpened = 0;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param failureThreshold
+     *    the number of failures in a row that opens the breaker
+     * @param coolDownMillis
+     *    how long the breaker stays open before a trial request is let through
+     * @param nanoTime
+     *    the source of the current time, in nanoseconds, such as System::nanoTime
+     */
+    CircuitBreaker(final int failureThreshold, final long coolDownMillis,
+                   final LongSupplier nanoTime)
+    {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("circuit breaker needs a positive threshold");
+        }
+        this.failureThreshold = failureThreshold;
+        this.coolDownNanos = TimeUnit.MILLISECONDS.toNanos(coolDownMillis);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Asks whether a request may be made now.  If this returns true, the
+     * caller must report the outcome with {@link #recordSuccess},
+     * {@link #recordFailure} or {@link #recordAbandoned}.
+     *
+     * @return true if the request may be made; false if it should fail right away
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if ((nanoTime.getAsLong() - openedAt) >= coolDownNanos) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A trial request is already in flight.
+                return false;
+        }
+    }
+
+    /**
+     * Records that the server answered.  That includes answers like "not found";
+     * what matters is that the server is working.
+     */
+    synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records that a request failed because of the server or the network.
+     */
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        if ((state == State.HALF_OPEN) || (consecutiveFailures >= failureThreshold)) {
+            if (state != State.OPEN) {
+                timesOpened++;
+            }
+            state = State.OPEN;
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Records that a request was called off before the server answered, which
+     * says nothing about the server.  If it was the trial request, the next
+     * request is let through as the trial instead.
+     */
+    synchronized void recordAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * @return the state the breaker is in
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return how many times the breaker has opened
+     */
+    synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker [" + state + ", " + consecutiveFailures + " failures in a row, opened "
+            + timesOpened + " times]";
+    }
+}
@@ -0,0 +1,79 @@
+package org.tvrenamer.controller;
+
+import java.nio.file.Path;
+
+/**
+ * Information about a directory which is shared by all the files in it.<p>
+ *
+ * When a filename starts with the season and episode (like "S02E05.avi"), the
+ * show name has to come from the directories above it.  FilenameParser walks up
+ * from the file's directory, skipping over directories like "Season 02", "S02"
+ * and "versions", until it finds one that looks like a show name.  In a typical
+ * "Show/Season 02/" layout, every file in the directory gets the same answer, so
+ * there's no need to walk up for each of them.  Whoever is scanning a directory
+ * can create one of these, and pass it to the parser along with each of the
+ * files in the directory.<p>
+ *
+ * The show name is only figured out the first time a file actually needs it.
+ * That may happen on more than one thread at once, in which case the work may
+ * be done more than once, but the answer is always the same.
+ */
+public final class DirectoryContext {
+    private final Path directory;
+    private volatile String inferredShowName = null;
+
+    /**
+     * Creates a context for the given directory.
+     *
+     * @param directory
+     *    the directory that contains the files that will be parsed with this
+     *    context; may be null, for files that have no parent
+     */
+    public DirectoryContext(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the directory this is the context for
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the show name that should be inserted into the names of files
+     * in this directory which begin with a season and episode.
+     *
+     * @return the name of the closest ancestor (including the directory itself)
+     *    that doesn't look like a season folder; may be empty, but not null
+     */
+    public String getInferredShowName() {
+        String name = inferredShowName;
+        if (name == null) {
+            name = FilenameParser.inferShowName(directory);
+            inferredShowName = name;
+        }
+        return name;
+    }
+
+    /**
+     * Tells whether this context applies to the given file; that is, whether the
+     * file is directly within this context's directory.
+     *
+     * @param filePath
+     *    the path to the file
+     * @return true if the file's parent is this context's directory
+     */
+    boolean contains(final Path filePath) {
+        Path parent = filePath.getParent();
+        if (parent == null) {
+            return (directory == null);
+        }
+        return parent.equals(directory);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryContext [" + directory + "]";
+    }
+}
@@ -0,0 +1,141 @@
+package org.tvrenamer.controller;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests made to each endpoint, how many failed, and how long
+ * they took.  An endpoint is a host and a path, with the parts of the path
+ * that vary from request to request (IDs, API keys) replaced by "*", and
+ * without the query; so all the searches are one endpoint, and all the
+ * listings downloads are another.<p>
+ *
+ * The counters are safe to update from any number of threads.
+ */
+final class EndpointStatistics {
+
+    private static final class Counters {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    }
+
+    private final Map<String, Counters> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the endpoint that the given URL is a request to.
+     *
+     * @param host
+     *    the host the request is made to
+     * @param path
+     *    the path of the URL, without the query
+     * @return the name of the endpoint
+     */
+    static String endpoint(final String host, final String path) {
+        StringBuilder name = new StringBuilder(host);
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            name.append('/');
+            if (segment.chars().anyMatch(Character::isDigit)) {
+                name.append('*');
+            } else {
+                name.append(segment);
+            }
+        }
+        if (path.endsWith("/")) {
+            name.append('/');
+        }
+        return name.toString();
+    }
+
+    private Counters counters(final String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new Counters());
+    }
+
+    /**
+     * Records one attempt at a request, and how it went.
+     *
+     * @param endpoint
+     *    the endpoint, as returned by {@link #endpoint}
+     * @param elapsedNanos
+     *    how long it took to get the response, or to fail
+     * @param succeeded
+     *    whether the server gave a successful response
+     */
+    void recordAttempt(final String endpoint, final long elapsedNanos, final boolean succeeded) {
+        Counters counters = counters(endpoint);
+        counters.attempts.increment();
+        if (!succeeded) {
+            counters.failures.increment();
+        }
+        counters.nanos.add(elapsedNanos);
+        counters.maxNanos.accumulate(elapsedNanos);
+    }
+
+    /**
+     * Records that a failed request is going to be tried again.
+     */
+    void recordRetry(final String endpoint) {
+        counters(endpoint).retries.increment();
+    }
+
+    /**
+     * Records that a request was refused without being made, because the
+     * circuit breaker was open.
+     */
+    void recordRejected(final String endpoint) {
+        counters(endpoint).rejected.increment();
+    }
+
+    long getAttempts(final String endpoint) {
+        Counters counters = endpoints.get(endpoint);
+        return (counters == null) ? 0L : counters.attempts.sum();
+    }
+
+    long getFailures(final String endpoint) {
+        Counters counters = endpoints.get(endpoint);
+        return (counters == null) ? 0L : counters.failures.sum();
+    }
+
+    long getRetries(final String endpoint) {
+        Counters counters = endpoints.get(endpoint);
+        return (counters == null) ? 0L : counters.retries.sum();
+    }
+
+    long getRejected(final String endpoint) {
+        Counters counters = endpoints.get(endpoint);
+        return (counters == null) ? 0L : counters.rejected.sum();
+    }
+
+    boolean isEmpty() {
+        return endpoints.isEmpty();
+    }
+
+    /**
+     * @return a table of the counters, one line per endpoint
+     */
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-48s %8s %8s %8s %8s %10s %10s%n", "endpoint", "attempts",
+                                 "failures", "retries", "rejected", "avg ms", "max ms"));
+        for (Map.Entry<String, Counters> entry : new TreeMap<>(endpoints).entrySet()) {
+            Counters counters = entry.getValue();
+            long tries = counters.attempts.sum();
+            long elapsed = counters.nanos.sum();
+            out.append(String.format("%-48s %8d %8d %8d %8d %10.1f %10.1f%n", entry.getKey(),
+                                     tries, counters.failures.sum(), counters.retries.sum(),
+                                     counters.rejected.sum(),
+                                     (tries == 0) ? 0.0 : elapsed / 1e6 / tries,
+                                     counters.maxNanos.get() / 1e6));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,764 @@
+package org.tvrenamer.controller;
+
+/**
+ * A hand-written equivalent of the cascade of regular expressions documented in
+ * {@link FilenameParser}.<p>
+ *
+ * The regular expressions are tried one after the other, and each one of them is
+ * full of <code>.+?</code> and <code>.*</code> constructs, so a name which only
+ * matches the last-resort pattern pays for fifteen failed, backtracking matches
+ * first.  This class scans the name once, left to right, classifying each
+ * character and recording, for every position, whether the "show name" part of
+ * the patterns is allowed to end there.  It also remembers where the last
+ * resolution ("720p", "4k", etc.) in the name is.  After that, each of the
+ * sixteen rules can be checked with a few character comparisons at a small
+ * number of candidate positions.<p>
+ *
+ * The rules are numbered the same way as FilenameParser.COMPILED_REGEX: rules 0
+ * through 7 are the eight shapes with a resolution at the end, and rules 8
+ * through 15 are the same shapes without one.  The rules are checked in that
+ * order, and for each rule, candidate positions are visited in the same order
+ * that the regular expression engine would visit them, so the result (including
+ * which characters end up in which group) is exactly what the regex cascade
+ * would produce.  FilenameMatcherTest checks that claim against the regular
+ * expressions themselves.<p>
+ *
+ * The one thing this class does not model is that "." in a regular expression
+ * does not match line terminators.  Filenames essentially never contain them,
+ * but if one does, {@link #scan} returns false and the caller should fall back
+ * to the regular expressions.<p>
+ *
+ * While it scans, the matcher also notes which of a handful of cheap features
+ * the name has: a separator, "s" or "e" followed by a digit, an "x" between
+ * digits, the words "Season" and "Episode", runs of two, three or four digits,
+ * and a resolution.  Each rule requires certain features (the SSxEE shape can't
+ * match without an "x", the year shape can't match without four digits in a
+ * row, and so on), and a rule whose features are not all present is not even
+ * tried.  The same test is available to FilenameParser for the regular
+ * expressions, via {@link #isPossible}.<p>
+ *
+ * Instances are not thread-safe; they hold per-name scratch space that is reused
+ * from one name to the next.  FilenameParser keeps one per thread.
+ */
+final class FilenameMatcher {
+
+    // Indexes into the array of shapes, in order of precedence.  These are the
+    // same as the indexes of FilenameParser.REGEX.
+    static final int SHAPE_SXXEYY = 0;
+    static final int SHAPE_SEASON_EPISODE = 1;
+    static final int SHAPE_S_DOT_E = 2;
+    static final int SHAPE_SSXEE = 3;
+    static final int SHAPE_YEAR = 4;
+    static final int SHAPE_SXXYY = 5;
+    static final int SHAPE_EVERYTHING_ELSE = 6;
+    static final int SHAPE_LAST_RESORT = 7;
+
+    static final int NUM_SHAPES = 8;
+    static final int NUM_RULES = NUM_SHAPES * 2;
+
+    static final int NO_MATCH = -1;
+
+    private static final String[] SHAPE_NAMES = {
+        "SxxEyy",
+        "Season-X-Episode-Y",
+        "sXX.eXX",
+        "SSxEE",
+        "year",
+        "SXXYY",
+        "everything else",
+        "last resort"
+    };
+
+    // Character classes, as understood by the regular expressions: "\d" is only
+    // ASCII digits, and "[^a-zA-Z0-9]" treats every non-ASCII letter as "other".
+    private static final byte OTHER = 0;
+    private static final byte DIGIT = 1;
+    private static final byte LETTER = 2;
+
+    // Flags recorded for each position in the name, telling whether the first
+    // group of a pattern is permitted to end just before that position.
+    //
+    // LAZY_PREFIX_END: "(.+?[^a-zA-Z0-9]\D*?)" and "(.+[^a-zA-Z0-9]\D*?)" can
+    //    match everything before this position.  That's the case when, since the
+    //    last digit, there has been a non-alphanumeric character that was not the
+    //    very first character of the name.
+    // YEAR_PREFIX_END: "(.+?\d{4}[^a-zA-Z0-9]\D*?)" can match everything before
+    //    this position; that is, the run of non-digits just before it starts with
+    //    a non-alphanumeric character, which comes right after four digits, which
+    //    do not start the name.
+    private static final byte LAZY_PREFIX_END = 1;
+    private static final byte YEAR_PREFIX_END = 2;
+
+    // Features of the name which some rules require.  Each of these is a
+    // necessary, but not sufficient, condition for the rules that use it.
+    private static final int FEATURE_SEPARATOR = 1;       // [^a-zA-Z0-9], not first
+    private static final int FEATURE_S_DIGIT = 1 << 1;    // [sS]\d
+    private static final int FEATURE_E_DIGIT = 1 << 2;    // [eE]\d
+    private static final int FEATURE_X_DIGIT = 1 << 3;    // \dx\d
+    private static final int FEATURE_SEASON = 1 << 4;     // Season
+    private static final int FEATURE_EPISODE = 1 << 5;    // Episode
+    private static final int FEATURE_TWO_DIGITS = 1 << 6;   // \d\d
+    private static final int FEATURE_THREE_DIGITS = 1 << 7; // \d\d\d
+    private static final int FEATURE_FOUR_DIGITS = 1 << 8;  // \d\d\d\d
+    private static final int FEATURE_RESOLUTION = 1 << 9;   // \D\d+[pk]
+
+    // The features required by each shape.  Every shape's first group ends with
+    // (or after) a non-alphanumeric character which is not the first character.
+    private static final int[] SHAPE_FEATURES = {
+        FEATURE_SEPARATOR | FEATURE_S_DIGIT | FEATURE_E_DIGIT,
+        FEATURE_SEPARATOR | FEATURE_SEASON | FEATURE_EPISODE,
+        FEATURE_SEPARATOR | FEATURE_S_DIGIT | FEATURE_E_DIGIT,
+        FEATURE_SEPARATOR | FEATURE_S_DIGIT | FEATURE_X_DIGIT,
+        FEATURE_SEPARATOR | FEATURE_FOUR_DIGITS,
+        FEATURE_SEPARATOR | FEATURE_S_DIGIT | FEATURE_FOUR_DIGITS,
+        FEATURE_SEPARATOR | FEATURE_TWO_DIGITS,
+        FEATURE_SEPARATOR | FEATURE_THREE_DIGITS
+    };
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private CharSequence text;
+    private int length;
+    private byte[] classes = new byte[INITIAL_CAPACITY];
+    private byte[] prefixEnds = new byte[INITIAL_CAPACITY + 1];
+    private int lastResolutionStart;
+    private int lastResolutionEnd;
+    private int features;
+
+    // The result of the most recent successful match
+    private int rule = NO_MATCH;
+    private int showEnd;
+    private int seasonStart;
+    private int seasonEnd;
+    private int episodeStart;
+    private int episodeEnd;
+    private int resolutionStart;
+    private int resolutionEnd;
+
+    /**
+     * Examines the given name in preparation for calling {@link #match}.
+     *
+     * @param name
+     *    the (already stripped) name to be matched
+     * @return true if this matcher can handle the name; false if the name
+     *    contains a line terminator, in which case the caller must use the
+     *    regular expressions instead (though {@link #getFeatures} is still
+     *    valid)
+     */
+    boolean scan(final CharSequence name) {
+        text = name;
+        length = name.length();
+        rule = NO_MATCH;
+        lastResolutionStart = -1;
+        lastResolutionEnd = -1;
+        features = 0;
+        if (classes.length < length) {
+            int capacity = Math.max(length, classes.length * 2);
+            classes = new byte[capacity];
+            prefixEnds = new byte[capacity + 1];
+        }
+
+        boolean lazyPrefix = false;
+        boolean yearPrefix = false;
+        boolean lineTerminator = false;
+        int digitRunStart = -1;
+        for (int i = 0; i < length; i++) {
+            prefixEnds[i] = flags(lazyPrefix, yearPrefix);
+
+            char c = name.charAt(i);
+            if (c >= '0' && c <= '9') {
+                classes[i] = DIGIT;
+                if (digitRunStart < 0) {
+                    digitRunStart = i;
+                }
+                lazyPrefix = false;
+                yearPrefix = false;
+                continue;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                classes[i] = LETTER;
+                features |= letterFeatures(name, i, c, digitRunStart >= 0);
+            } else {
+                if (c == '\n' || c == '\r' || c == '\u0085'
+                    || c == '\u2028' || c == '\u2029')
+                {
+                    // Keep going, to collect the features of the whole name.
+                    lineTerminator = true;
+                }
+                classes[i] = OTHER;
+                if (i > 0) {
+                    lazyPrefix = true;
+                    features |= FEATURE_SEPARATOR;
+                }
+                if ((digitRunStart >= 0) && (i - digitRunStart >= 4) && (i > 4)) {
+                    yearPrefix = true;
+                }
+            }
+            if (digitRunStart >= 0) {
+                features |= digitRunFeatures(i - digitRunStart);
+                if ((c == 'p' || c == 'k') && (digitRunStart > 0)) {
+                    lastResolutionStart = digitRunStart;
+                    lastResolutionEnd = i + 1;
+                    features |= FEATURE_RESOLUTION;
+                }
+                digitRunStart = -1;
+            }
+        }
+        if (digitRunStart >= 0) {
+            features |= digitRunFeatures(length - digitRunStart);
+        }
+        prefixEnds[length] = flags(lazyPrefix, yearPrefix);
+        return !lineTerminator;
+    }
+
+    private static int letterFeatures(final CharSequence name, final int i, final char c,
+                                      final boolean afterDigit)
+    {
+        boolean beforeDigit = (i + 1 < name.length())
+            && (name.charAt(i + 1) >= '0') && (name.charAt(i + 1) <= '9');
+        switch (c) {
+            case 's':
+                return beforeDigit ? FEATURE_S_DIGIT : 0;
+            case 'S':
+                if (beforeDigit) {
+                    return FEATURE_S_DIGIT;
+                }
+                return regionEquals(name, i, "Season") ? FEATURE_SEASON : 0;
+            case 'e':
+                return beforeDigit ? FEATURE_E_DIGIT : 0;
+            case 'E':
+                if (beforeDigit) {
+                    return FEATURE_E_DIGIT;
+                }
+                return regionEquals(name, i, "Episode") ? FEATURE_EPISODE : 0;
+            case 'x':
+                return (afterDigit && beforeDigit) ? FEATURE_X_DIGIT : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private static int digitRunFeatures(final int runLength) {
+        if (runLength >= 4) {
+            return FEATURE_TWO_DIGITS | FEATURE_THREE_DIGITS | FEATURE_FOUR_DIGITS;
+        }
+        if (runLength == 3) {
+            return FEATURE_TWO_DIGITS | FEATURE_THREE_DIGITS;
+        }
+        if (runLength == 2) {
+            return FEATURE_TWO_DIGITS;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the features found in the name most recently passed to
+     *    {@link #scan}, for use with {@link #isPossible}
+     */
+    int getFeatures() {
+        return features;
+    }
+
+    /**
+     * Checks whether a name with the given features could possibly match the
+     * given rule.  This is used both by the matcher itself and to prefilter the
+     * regular expressions, since the rules are the same.
+     *
+     * @param r
+     *    the index of a rule
+     * @param nameFeatures
+     *    the features of the name, as returned by {@link #getFeatures}
+     * @return false if the rule certainly does not match; true if it might
+     */
+    static boolean isPossible(final int r, final int nameFeatures) {
+        int required = SHAPE_FEATURES[r % NUM_SHAPES];
+        if (r < NUM_SHAPES) {
+            required |= FEATURE_RESOLUTION;
+        }
+        return (nameFeatures & required) == required;
+    }
+
+    private static byte flags(final boolean lazyPrefix, final boolean yearPrefix) {
+        byte flags = 0;
+        if (lazyPrefix) {
+            flags |= LAZY_PREFIX_END;
+        }
+        if (yearPrefix) {
+            flags |= YEAR_PREFIX_END;
+        }
+        return flags;
+    }
+
+    /**
+     * Finds the first rule, in order of precedence, which matches the name that
+     * was most recently passed to {@link #scan}.
+     *
+     * @return true if any rule matched; the details are then available from the
+     *    accessors
+     */
+    boolean match() {
+        for (int r = 0; r < NUM_RULES; r++) {
+            if (isPossible(r, features) && matchRule(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the same rule as {@link #match()}, but tries the rules in the given
+     * order, and records what it does in the given statistics.<p>
+     *
+     * Since the rule that matches first might not be the one with the highest
+     * precedence, once a rule matches, we go back and try the rules with higher
+     * precedence which have not been tried yet.  If the order puts the rule that
+     * usually matches first, that's often none, or very few.
+     *
+     * @param order
+     *    the order in which to try the rules; must contain every rule once
+     * @param stats
+     *    where to record the time spent on each rule
+     * @return true if any rule matched; the details are then available from the
+     *    accessors
+     */
+    boolean match(final int[] order, final ParserStatistics stats) {
+        int tried = 0;
+        for (int r : order) {
+            if (!isPossible(r, features)) {
+                tried |= (1 << r);
+                continue;
+            }
+            if (timedMatchRule(r, stats)) {
+                for (int q = 0; q < r; q++) {
+                    if (((tried & (1 << q)) == 0) && isPossible(q, features)) {
+                        stats.recordVerification();
+                        if (timedMatchRule(q, stats)) {
+                            break;
+                        }
+                    }
+                }
+                return true;
+            }
+            tried |= (1 << r);
+        }
+        return false;
+    }
+
+    private boolean timedMatchRule(final int r, final ParserStatistics stats) {
+        long start = System.nanoTime();
+        boolean matched = matchRule(r);
+        stats.recordAttempt(r, System.nanoTime() - start);
+        return matched;
+    }
+
+    /**
+     * @param r
+     *    the index of a rule
+     * @return a short description of the rule, for diagnostics
+     */
+    static String describeRule(final int r) {
+        String shape = SHAPE_NAMES[r % NUM_SHAPES];
+        if (r < NUM_SHAPES) {
+            return shape + " with resolution";
+        }
+        return shape;
+    }
+
+    /**
+     * Checks whether the given rule matches the name that was most recently
+     * passed to {@link #scan}.
+     *
+     * @param r
+     *    the rule to check; an index into FilenameParser.COMPILED_REGEX
+     * @return true if the rule matched; the details are then available from the
+     *    accessors
+     */
+    boolean matchRule(final int r) {
+        final int shape = r % NUM_SHAPES;
+        final boolean withResolution = (r < NUM_SHAPES);
+        final int end;
+        switch (shape) {
+            case SHAPE_SXXEYY:
+            case SHAPE_SEASON_EPISODE:
+            case SHAPE_SXXYY:
+                end = lazyPrefix(shape, withResolution, LAZY_PREFIX_END);
+                break;
+            case SHAPE_YEAR:
+                end = lazyPrefix(shape, withResolution, YEAR_PREFIX_END);
+                break;
+            case SHAPE_S_DOT_E:
+            case SHAPE_SSXEE:
+            case SHAPE_EVERYTHING_ELSE:
+                end = greedyPrefix(shape, withResolution);
+                break;
+            case SHAPE_LAST_RESORT:
+                end = separatorPrefix(withResolution);
+                break;
+            default:
+                end = NO_MATCH;
+        }
+        if (end == NO_MATCH) {
+            return false;
+        }
+        rule = r;
+        showEnd = end;
+        if (!withResolution) {
+            resolutionStart = -1;
+            resolutionEnd = -1;
+        }
+        return true;
+    }
+
+    /*
+     * "(.+?...\D*?)" -- the regex engine tries the shortest possible first
+     * group, so the answer is simply the first position where the group may
+     * end and the rest of the pattern matches.
+     */
+    private int lazyPrefix(final int shape, final boolean withResolution, final byte flag) {
+        for (int end = 2; end < length; end++) {
+            if (((prefixEnds[end] & flag) != 0) && matchRest(shape, end, withResolution)) {
+                return end;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /*
+     * "(.+[^a-zA-Z0-9]\D*?)" -- the regex engine tries the rightmost possible
+     * non-alphanumeric character first, and then extends the group over
+     * non-digits, one character at a time.  Several separators in the same run
+     * of non-digits share candidate end positions; those that were already
+     * tried on behalf of a separator further to the right are not tried again.
+     */
+    private int greedyPrefix(final int shape, final boolean withResolution) {
+        int digitToRight = length;
+        int triedFrom = length + 1;
+        for (int sep = length - 1; sep >= 1; sep--) {
+            byte cls = classes[sep];
+            if (cls == DIGIT) {
+                digitToRight = sep;
+                triedFrom = sep + 1;
+            } else if (cls == OTHER) {
+                int last = Math.min(Math.min(digitToRight, triedFrom - 1), length - 1);
+                for (int end = sep + 1; end <= last; end++) {
+                    if (matchRest(shape, end, withResolution)) {
+                        return end;
+                    }
+                }
+                triedFrom = sep + 1;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /*
+     * "(.+[^a-zA-Z0-9]+)" -- the group always ends at the end of a run of
+     * non-alphanumeric characters, and the runs are tried right to left.
+     */
+    private int separatorPrefix(final boolean withResolution) {
+        int sep = length - 1;
+        while (sep >= 1) {
+            if (classes[sep] != OTHER) {
+                sep--;
+                continue;
+            }
+            if (matchRest(SHAPE_LAST_RESORT, sep + 1, withResolution)) {
+                return sep + 1;
+            }
+            while (sep >= 1 && classes[sep] == OTHER) {
+                sep--;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private boolean matchRest(final int shape, final int pos, final boolean withResolution) {
+        switch (shape) {
+            case SHAPE_SXXEYY:
+                return matchSxxEyy(pos, withResolution);
+            case SHAPE_SEASON_EPISODE:
+                return matchSeasonEpisode(pos, withResolution);
+            case SHAPE_S_DOT_E:
+                return matchSDotE(pos, withResolution);
+            case SHAPE_SSXEE:
+                return matchSSxEE(pos, withResolution);
+            case SHAPE_YEAR:
+                return matchYear(pos, withResolution);
+            case SHAPE_SXXYY:
+                return matchSxxYy(pos, withResolution);
+            case SHAPE_EVERYTHING_ELSE:
+                return matchEverythingElse(pos, withResolution);
+            case SHAPE_LAST_RESORT:
+                return matchLastResort(pos, withResolution);
+            default:
+                return false;
+        }
+    }
+
+    // [sS](\d\d*)[eE](\d\d*).*
+    private boolean matchSxxEyy(final int pos, final boolean withResolution) {
+        if (!isSeasonLetter(pos)) {
+            return false;
+        }
+        int sEnd = digitsEnd(pos + 1);
+        if ((sEnd == pos + 1) || !isEpisodeLetter(sEnd)) {
+            return false;
+        }
+        int eEnd = digitsEnd(sEnd + 1);
+        if (eEnd == sEnd + 1) {
+            return false;
+        }
+        return found(pos + 1, sEnd, sEnd + 1, eEnd, withResolution, eEnd);
+    }
+
+    // Season[- ](\d\d*)[- ]?Episode[- ](\d\d*).*
+    private boolean matchSeasonEpisode(final int pos, final boolean withResolution) {
+        if (!regionEquals(pos, "Season") || !isSpaceOrHyphen(pos + 6)) {
+            return false;
+        }
+        int sStart = pos + 7;
+        int sEnd = digitsEnd(sStart);
+        if (sEnd == sStart) {
+            return false;
+        }
+        int word;
+        if (isSpaceOrHyphen(sEnd) && regionEquals(sEnd + 1, "Episode")) {
+            word = sEnd + 1;
+        } else if (regionEquals(sEnd, "Episode")) {
+            word = sEnd;
+        } else {
+            return false;
+        }
+        if (!isSpaceOrHyphen(word + 7)) {
+            return false;
+        }
+        int eStart = word + 8;
+        int eEnd = digitsEnd(eStart);
+        if (eEnd == eStart) {
+            return false;
+        }
+        return found(sStart, sEnd, eStart, eEnd, withResolution, eEnd);
+    }
+
+    // [sS](\d\d*)\D*?[eE](\d\d*).*
+    private boolean matchSDotE(final int pos, final boolean withResolution) {
+        if (!isSeasonLetter(pos)) {
+            return false;
+        }
+        int sEnd = digitsEnd(pos + 1);
+        if (sEnd == pos + 1) {
+            return false;
+        }
+        for (int e = sEnd; e < length && classes[e] != DIGIT; e++) {
+            if (isEpisodeLetter(e) && isDigit(e + 1)) {
+                int eEnd = digitsEnd(e + 1);
+                return found(pos + 1, sEnd, e + 1, eEnd, withResolution, eEnd);
+            }
+        }
+        return false;
+    }
+
+    // [Ss](\d\d?)x(\d\d\d?).*
+    private boolean matchSSxEE(final int pos, final boolean withResolution) {
+        if (!isSeasonLetter(pos) || !isDigit(pos + 1)) {
+            return false;
+        }
+        int x;
+        if (isDigit(pos + 2) && charIs(pos + 3, 'x')) {
+            x = pos + 3;
+        } else if (charIs(pos + 2, 'x')) {
+            x = pos + 2;
+        } else {
+            return false;
+        }
+        if (!isDigit(x + 1) || !isDigit(x + 2)) {
+            return false;
+        }
+        int eEnd = isDigit(x + 3) ? x + 4 : x + 3;
+        return found(pos + 1, x, x + 1, eEnd, withResolution, eEnd);
+    }
+
+    // [sS]?(\d\d?)\D*?(\d\d).*
+    private boolean matchYear(final int pos, final boolean withResolution) {
+        int sStart = isSeasonLetter(pos) ? pos + 1 : pos;
+        if (!isDigit(sStart)) {
+            return false;
+        }
+        int sLength = isDigit(sStart + 1) ? 2 : 1;
+        for (; sLength > 0; sLength--) {
+            int eStart = sStart + sLength;
+            while (eStart < length && classes[eStart] != DIGIT) {
+                eStart++;
+            }
+            if (isDigit(eStart + 1)
+                && found(sStart, sStart + sLength, eStart, eStart + 2,
+                         withResolution, eStart + 2))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // [sS](\d\d)(\d\d)\D.*
+    private boolean matchSxxYy(final int pos, final boolean withResolution) {
+        if (!isSeasonLetter(pos)) {
+            return false;
+        }
+        for (int i = pos + 1; i < pos + 5; i++) {
+            if (!isDigit(i)) {
+                return false;
+            }
+        }
+        if ((pos + 5 >= length) || isDigit(pos + 5)) {
+            return false;
+        }
+        return found(pos + 1, pos + 3, pos + 3, pos + 5, withResolution, pos + 6);
+    }
+
+    // (\d\d?)\D+(\d\d).*
+    private boolean matchEverythingElse(final int pos, final boolean withResolution) {
+        if (!isDigit(pos)) {
+            return false;
+        }
+        int sEnd = isDigit(pos + 1) ? pos + 2 : pos + 1;
+        if ((sEnd >= length) || isDigit(sEnd)) {
+            return false;
+        }
+        int eStart = sEnd + 1;
+        while (eStart < length && classes[eStart] != DIGIT) {
+            eStart++;
+        }
+        if (!isDigit(eStart + 1)) {
+            return false;
+        }
+        return found(pos, sEnd, eStart, eStart + 2, withResolution, eStart + 2);
+    }
+
+    // (\d\d?)(\d\d).*
+    private boolean matchLastResort(final int pos, final boolean withResolution) {
+        if (!isDigit(pos) || !isDigit(pos + 1) || !isDigit(pos + 2)) {
+            return false;
+        }
+        int sEnd = isDigit(pos + 3) ? pos + 2 : pos + 1;
+        return found(pos, sEnd, sEnd, sEnd + 2, withResolution, sEnd + 2);
+    }
+
+    /*
+     * Records the spans of a successful match, after checking the optional
+     * resolution.  The resolution part is "\D(\d+[pk]).*", which follows a
+     * ".*" and therefore always finds the last digit run which is followed by
+     * "p" or "k", provided that there is at least one character between that
+     * run and the episode number (or whatever precedes the resolution).
+     */
+    private boolean found(final int sStart, final int sEnd, final int eStart, final int eEnd,
+                          final boolean withResolution, final int resolutionSearchFrom)
+    {
+        if (withResolution) {
+            if ((lastResolutionStart < 0) || (lastResolutionStart - 1 < resolutionSearchFrom)) {
+                return false;
+            }
+            resolutionStart = lastResolutionStart;
+            resolutionEnd = lastResolutionEnd;
+        }
+        seasonStart = sStart;
+        seasonEnd = sEnd;
+        episodeStart = eStart;
+        episodeEnd = eEnd;
+        return true;
+    }
+
+    private boolean isDigit(final int i) {
+        return (i < length) && (classes[i] == DIGIT);
+    }
+
+    private boolean charIs(final int i, final char c) {
+        return (i < length) && (text.charAt(i) == c);
+    }
+
+    private boolean isSeasonLetter(final int i) {
+        return charIs(i, 's') || charIs(i, 'S');
+    }
+
+    private boolean isEpisodeLetter(final int i) {
+        return charIs(i, 'e') || charIs(i, 'E');
+    }
+
+    private boolean isSpaceOrHyphen(final int i) {
+        return charIs(i, ' ') || charIs(i, '-');
+    }
+
+    private boolean regionEquals(final int start, final String word) {
+        return regionEquals(text, start, word);
+    }
+
+    private static boolean regionEquals(final CharSequence name, final int start,
+                                        final String word)
+    {
+        if (start + word.length() > name.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (name.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int digitsEnd(final int start) {
+        int i = start;
+        while (i < length && classes[i] == DIGIT) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the rule that matched, or NO_MATCH
+     */
+    int getRule() {
+        return rule;
+    }
+
+    /**
+     * @return true if the rule that matched includes a resolution
+     */
+    boolean hasResolution() {
+        return (rule >= 0) && (rule < NUM_SHAPES);
+    }
+
+    /**
+     * Records the result of the most recent successful match in the given
+     * ParseResult, which must hold the name that was matched.
+     *
+     * @param result
+     *    the ParseResult to fill in
+     */
+    void copyTo(final ParseResult result) {
+        result.setFound(showEnd, seasonStart, seasonEnd, episodeStart, episodeEnd,
+                        resolutionStart, resolutionEnd);
+    }
+
+    /**
+     * @return the untrimmed first group of the pattern
+     */
+    String getShowGroup() {
+        return text.subSequence(0, showEnd).toString();
+    }
+
+    String getSeason() {
+        return text.subSequence(seasonStart, seasonEnd).toString();
+    }
+
+    String getEpisode() {
+        return text.subSequence(episodeStart, episodeEnd).toString();
+    }
+
+    String getResolution() {
+        if (resolutionStart < 0) {
+            return "";
+        }
+        return text.subSequence(resolutionStart, resolutionEnd).toString();
+    }
+}
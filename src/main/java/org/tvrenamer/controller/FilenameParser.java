@@ -6,20 +6,26 @@ import org.tvrenamer.model.ShowName;
 import org.tvrenamer.model.util.Constants;
 
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class FilenameParser {
     private static final Logger logger = Logger.getLogger(FilenameParser.class.getName());
 
-    private static final String FILENAME_BEGINS_WITH_SEASON
-        = "(([sS]\\d\\d?[eE]\\d\\d?)|([sS]?\\d\\d?[x.]?\\d\\d\\d?)).*";
-    private static final String DIR_LOOKS_LIKE_SEASON = "[sS][0-3]\\d";
+    private static final Pattern FILENAME_BEGINS_WITH_SEASON
+        = Pattern.compile("(([sS]\\d\\d?[eE]\\d\\d?)|([sS]?\\d\\d?[x.]?\\d\\d\\d?)).*");
+    private static final Pattern DIR_LOOKS_LIKE_SEASON = Pattern.compile("[sS][0-3]\\d");
 
     // We sometimes find folders like "MyShow.Season02"; in this case, we want to
     // strip away ".Season02" and be left with just "MyShow".
-    private static final String EXCESS_SEASON = "[^A-Za-z]Season[ _-]?\\d\\d?";
+    private static final Pattern EXCESS_SEASON = Pattern.compile("[^A-Za-z]Season[ _-]?\\d\\d?");
 
     private static final String RESOLUTION_REGEX = "\\D(\\d+[pk]).*";
 
@@ -74,6 +80,32 @@ public class FilenameParser {
         }
     }
 
+    // The matcher keeps scratch space which is reused from one name to the next,
+    // so each thread gets its own.
+    private static final ThreadLocal<FilenameMatcher> MATCHER
+        = ThreadLocal.withInitial(FilenameMatcher::new);
+    private static final ThreadLocal<ParseResult> RESULT
+        = ThreadLocal.withInitial(ParseResult::new);
+
+    // Whether lower-casing an ASCII letter in the default locale gives the usual
+    // ASCII lower-case letter.  It doesn't in, for example, Turkish.
+    private static final boolean ASCII_LOWER_CASE_IS_STANDARD
+        = StringUtils.toLower("ABCDEFGHIJKLMNOPQRSTUVWXYZ").equals("abcdefghijklmnopqrstuvwxyz");
+
+    // Results are cached by the name that was parsed.  This is plenty for even a
+    // big library, and each entry is just a few short strings.
+    private static final int PARSE_CACHE_SIZE = 8192;
+
+    // Per-pattern statistics, and the adaptive ordering that is based on them.
+    private static final ParserStatistics STATISTICS = new ParserStatistics();
+    private static volatile boolean adaptiveOrder = Boolean.getBoolean("tvrenamer.parser.adaptive");
+    private static volatile boolean collectStatistics
+        = adaptiveOrder || Boolean.getBoolean("tvrenamer.parser.statistics");
+
+    // Below this many names, parseAll doesn't bother splitting up the work.
+    private static final int PARALLEL_PARSE_THRESHOLD = 64;
+    private static final ParseCache PARSE_CACHE = new ParseCache(PARSE_CACHE_SIZE);
+
     private FilenameParser() {
         // singleton
     }
@@ -83,12 +115,16 @@ public class FilenameParser {
      *
      * Gets the path associated with the FileEpisode, and tries to extract the
      * episode-related information from it.  Uses a hard-coded, ordered list
-     * of common patterns that such filenames tend to follow.  As soon as it
-     * matches one, it:<ol>
+     * of common patterns that such filenames tend to follow (see REGEX, above,
+     * and FilenameMatcher, which checks them all in a single pass).  As soon
+     * as it matches one, it:<ol>
      * <li>starts the process of looking up the show name from the provider,
      *     which is done in a separate thread</li>
      * <li>updates the FileEpisode with the found information</li></ol><p>
      *
+     * The result of parsing a name is cached, so a name that has been seen before
+     * is not parsed again.<p>
+     *
      * This method doesn't return anything, it just updates the FileEpisode.
      * A caller could check <code>episode.wasParsed()</code> after this returns,
      * to see if the episode was successfully parsed or not.
@@ -97,43 +133,366 @@ public class FilenameParser {
      *   the FileEpisode whose filename we are to try to parse
      */
     public static void parseFilename(final FileEpisode episode) {
-        Path filePath = episode.getPath();
-        String withShowName = insertShowNameIfNeeded(filePath);
-        String strippedName = stripJunk(withShowName);
+        parseFilename(episode, null);
+    }
+
+    /**
+     * Parses the filename of the given FileEpisode, which is in the directory
+     * described by the given context.<p>
+     *
+     * This is exactly like {@link #parseFilename(FileEpisode)}, except that if the
+     * show name has to be taken from the file's parent directories, the context
+     * provides it, and the work of finding it is shared by all the files in the
+     * directory.
+     *
+     * @param episode
+     *   the FileEpisode whose filename we are to try to parse
+     * @param directory
+     *   the context for the directory that contains the file; if null, or if it
+     *   is not actually for the file's directory, it is ignored
+     */
+    public static void parseFilename(final FileEpisode episode, final DirectoryContext directory) {
+        applyParsedFilename(episode, parsePath(episode.getPath(), directory));
+    }
+
+    /**
+     * Updates the given FileEpisode with the information that was found in its
+     * filename, and starts the process of looking up the show name.
+     *
+     * @param episode
+     *   the FileEpisode whose filename was parsed
+     * @param parsed
+     *   the result of parsing the filename
+     */
+    public static void applyParsedFilename(final FileEpisode episode, final ParsedFilename parsed) {
+        if (parsed.wasParsed()) {
+            ShowName.mapShowName(parsed.filenameShow);
+
+            episode.setFilenameShow(parsed.filenameShow);
+            episode.setEpisodePlacement(parsed.season, parsed.episode);
+            episode.setFilenameResolution(parsed.resolution);
+            episode.setParsed();
+        } else {
+            episode.setFailToParse();
+        }
+    }
+
+    /**
+     * Parses the names of all the given files.<p>
+     *
+     * The work is spread across the common fork-join pool.  Files in the same
+     * directory share a DirectoryContext.  Unlike parseFilename, this does not
+     * touch FileEpisodes, nor map the show names; it simply returns what it
+     * found, which the caller can give to the FileEpisode(Path, ParsedFilename)
+     * constructor, or to {@link #applyParsedFilename}.
+     *
+     * @param paths
+     *   the files whose names are to be parsed; none may be null
+     * @return a list with the result for each file, in the same order as the
+     *   paths were given; ParsedFilename.FAILED for names that couldn't be parsed
+     */
+    public static List<ParsedFilename> parseAll(final Collection<Path> paths) {
+        final Path[] input = paths.toArray(new Path[paths.size()]);
+        final ParsedFilename[] results = new ParsedFilename[input.length];
+        final Map<Path, DirectoryContext> contexts = new ConcurrentHashMap<>();
+
+        IntStream indexes = IntStream.range(0, input.length);
+        if (input.length >= PARALLEL_PARSE_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            Path parent = input[i].getParent();
+            DirectoryContext directory = null;
+            if (parent != null) {
+                directory = contexts.computeIfAbsent(parent, DirectoryContext::new);
+            }
+            results[i] = parsePath(input[i], directory);
+        });
+
+        return Arrays.asList(results);
+    }
+
+    private static ParsedFilename parsePath(final Path filePath, final DirectoryContext directory) {
+        String withShowName = insertShowNameIfNeeded(filePath, directory);
+        ParsedFilename parsed = PARSE_CACHE.get(withShowName);
+        if (parsed == null) {
+            parsed = parseName(withShowName);
+            PARSE_CACHE.put(withShowName, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Extracts the episode-related information from the given name.
+     *
+     * @param withShowName
+     *   the name of a file, with the show name from its parent directory
+     *   inserted, if necessary
+     * @return the information found in the name; ParsedFilename.FAILED if
+     *   none of the patterns match
+     */
+    static ParsedFilename parseName(final String withShowName) {
+        ParseResult result = RESULT.get();
+        if (parse(withShowName, result)) {
+            return new ParsedFilename(result.getShowName(), result.getSeason(),
+                                      result.getEpisode(), result.getResolution());
+        }
+        return ParsedFilename.FAILED;
+    }
+
+    /**
+     * Extracts the episode-related information from the given name, into the
+     * given result holder.<p>
+     *
+     * This is the lowest-level entry point to the parser, meant for callers that
+     * parse very large numbers of names.  It does not create any objects (aside
+     * from, rarely, when the name contains unusual characters); the season and
+     * episode are stored as ints, and the show name and resolution as spans, and
+     * the caller can create Strings from them if and when it needs to.  The
+     * ParseResult can be reused for the next name.  This method does not look
+     * at the parse cache, and does not map the show name.
+     *
+     * @param withShowName
+     *   the name of a file, with the show name from its parent directory
+     *   inserted, if necessary
+     * @param result
+     *   the holder to fill in; any previous contents are discarded
+     * @return true if the name was parsed; the same as result.wasParsed()
+     */
+    public static boolean parse(final CharSequence withShowName, final ParseResult result) {
+        result.reset();
+        StringBuilder strippedName = result.parsedName;
+        stripJunk(withShowName, strippedName);
+
+        FilenameMatcher matcher = MATCHER.get();
+        if (!matcher.scan(strippedName)) {
+            // The name contains a line terminator, which the matcher does not
+            // model.  Let the regular expressions deal with it.
+            if (collectStatistics) {
+                STATISTICS.recordRegexFallback();
+            }
+            parseWithRegex(result, matcher.getFeatures());
+        } else if (collectStatistics) {
+            int[] order = adaptiveOrder ? STATISTICS.getAdaptiveOrder() : ParserStatistics.CANONICAL_ORDER;
+            boolean matched = matcher.match(order, STATISTICS);
+            STATISTICS.recordParse(matched ? matcher.getRule() : FilenameMatcher.NO_MATCH);
+            if (matched) {
+                matcher.copyTo(result);
+            }
+        } else if (matcher.match()) {
+            matcher.copyTo(result);
+        }
+        return result.wasParsed();
+    }
+
+    /**
+     * Turns the collection of per-pattern statistics on or off.  It can also be
+     * turned on at startup by setting the system property
+     * "tvrenamer.parser.statistics" to "true".  Collecting the statistics costs
+     * a little time on each parse.
+     *
+     * @param collect
+     *   whether to collect statistics
+     */
+    public static void setCollectStatistics(final boolean collect) {
+        collectStatistics = collect || adaptiveOrder;
+    }
+
+    /**
+     * Turns adaptive mode on or off.  In adaptive mode, the parser tries the
+     * patterns that have matched most often first, and then, only if necessary,
+     * verifies that none of the patterns with higher precedence matches.  The
+     * results are always the same as in the normal mode.  Adaptive mode relies
+     * on the statistics, so it turns them on.  It can also be turned on at startup
+     * by setting the system property "tvrenamer.parser.adaptive" to "true".
+     *
+     * @param adaptive
+     *   whether to use adaptive mode
+     */
+    public static void setAdaptiveOrder(final boolean adaptive) {
+        adaptiveOrder = adaptive;
+        if (adaptive) {
+            collectStatistics = true;
+        }
+    }
+
+    /**
+     * Returns a table of how often each pattern has matched, how often it has
+     * been tried, and how much time has been spent trying it.
+     *
+     * @return the per-pattern statistics, as a multi-line String
+     */
+    public static String dumpPatternStatistics() {
+        return STATISTICS.dump();
+    }
+
+    /**
+     * Discards the per-pattern statistics collected so far.
+     */
+    public static void resetPatternStatistics() {
+        STATISTICS.reset();
+    }
+
+    /**
+     * Discards all cached parse results.  This must be called if anything
+     * changes the way names are parsed.
+     */
+    public static void clearParseCache() {
+        PARSE_CACHE.clear();
+    }
+
+    /**
+     * @return the number of times a name was found in the parse cache
+     */
+    public static long getParseCacheHits() {
+        return PARSE_CACHE.getHits();
+    }
+
+    /**
+     * @return the number of times a name had to be parsed
+     */
+    public static long getParseCacheMisses() {
+        return PARSE_CACHE.getMisses();
+    }
+
+    /**
+     * Writes the parse cache counters, and the per-pattern statistics if they
+     * are being collected, to the log.
+     */
+    public static void logStatistics() {
+        logger.fine(PARSE_CACHE.toString());
+        if (collectStatistics) {
+            logger.info("filename pattern statistics:\n" + STATISTICS.dump());
+        }
+    }
+
+    /**
+     * Tries the patterns in COMPILED_REGEX, in order, against the given name.<p>
+     *
+     * This is the original implementation of the parser, and the definition of
+     * what FilenameMatcher is supposed to do.  It is used directly only for names
+     * that FilenameMatcher declines to handle, and for verifying the matcher.
+     *
+     * @param strippedName
+     *   the name to match, with the show name inserted and junk removed
+     * @return a Matcher which has successfully matched the name, or null
+     *   if none of the patterns match
+     */
+    static Matcher matchWithRegex(final String strippedName) {
         Matcher matcher;
         for (Pattern patt : COMPILED_REGEX) {
             matcher = patt.matcher(strippedName);
             if (matcher.matches()) {
-                String foundName = StringUtils.trimFoundShow(matcher.group(1));
-                ShowName.mapShowName(foundName);
-
-                String resolution = "";
-                if (matcher.groupCount() == 4) {
-                    resolution = matcher.group(4);
-                } else if (matcher.groupCount() != 3) {
-                    // This should never happen and so we should probably consider it
-                    // an error if it does, but not important.
-                    continue;
-                }
-                episode.setFilenameShow(foundName);
-                episode.setEpisodePlacement(matcher.group(2), matcher.group(3));
-                episode.setFilenameResolution(resolution);
-                episode.setParsed();
+                return matcher;
+            }
+        }
+        return null;
+    }
 
-                return;
+    /**
+     * Does the same thing as {@link #matchWithRegex(String)}, but skips the
+     * patterns that a name with the given features cannot possibly match.
+     *
+     * @param strippedName
+     *   the name to match, with the show name inserted and junk removed
+     * @param features
+     *   the features of the name, as found by FilenameMatcher.scan
+     * @return a Matcher which has successfully matched the name, or null
+     *   if none of the patterns match
+     */
+    static Matcher matchWithRegex(final String strippedName, final int features) {
+        Matcher matcher;
+        for (int i = 0; i < COMPILED_REGEX.length; i++) {
+            if (FilenameMatcher.isPossible(i, features)) {
+                matcher = COMPILED_REGEX[i].matcher(strippedName);
+                if (matcher.matches()) {
+                    return matcher;
+                }
             }
         }
+        return null;
+    }
 
-        episode.setFailToParse();
+    private static void parseWithRegex(final ParseResult result, final int features) {
+        Matcher matcher = matchWithRegex(result.parsedName.toString(), features);
+        if (matcher == null) {
+            return;
+        }
+        int resStart = -1;
+        int resEnd = -1;
+        if (matcher.groupCount() == 4) {
+            resStart = matcher.start(4);
+            resEnd = matcher.end(4);
+        }
+        result.setFound(matcher.end(1), matcher.start(2), matcher.end(2),
+                        matcher.start(3), matcher.end(3), resStart, resEnd);
+        result.setShowName(StringUtils.trimFoundShow(matcher.group(1)));
     }
 
-    private static String stripJunk(String input) {
+    static String stripJunk(String input) {
         String output = input;
         output = StringUtils.removeLast(output, "hdtv");
         output = StringUtils.removeLast(output, "dvdrip");
         return output;
     }
 
+    /**
+     * Does the same thing as {@link #stripJunk(String)}, but writes the result
+     * into the given buffer instead of creating new Strings.<p>
+     *
+     * StringUtils.removeLast looks for the junk in a lower-cased copy of the
+     * input, using the default locale.  For ASCII text, in any locale where the
+     * ASCII letters lower-case to themselves, comparing character by character
+     * gives exactly the same answer.  Otherwise, we just call the String version.
+     *
+     * @param input
+     *   the name to strip
+     * @param output
+     *   the buffer to put the stripped name into; its contents are replaced
+     */
+    static void stripJunk(final CharSequence input, final StringBuilder output) {
+        output.setLength(0);
+        if (!ASCII_LOWER_CASE_IS_STANDARD || !isAscii(input)) {
+            output.append(stripJunk(input.toString()));
+            return;
+        }
+        output.append(input);
+        removeLastIgnoringCase(output, "hdtv");
+        removeLastIgnoringCase(output, "dvdrip");
+    }
+
+    private static boolean isAscii(final CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void removeLastIgnoringCase(final StringBuilder text, final String lowerMatch) {
+        final int matchLength = lowerMatch.length();
+        for (int idx = text.length() - matchLength; idx > 0; idx--) {
+            int i = 0;
+            while (i < matchLength
+                   && asciiToLower(text.charAt(idx + i)) == lowerMatch.charAt(i))
+            {
+                i++;
+            }
+            if (i == matchLength) {
+                text.delete(idx, idx + matchLength);
+                return;
+            }
+        }
+    }
+
+    private static char asciiToLower(final char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        return c;
+    }
+
     private static String extractParentName(Path parent) {
         if (parent == null) {
             return Constants.EMPTY_STRING;
@@ -145,10 +504,39 @@ public class FilenameParser {
         }
 
         String parentName = parentPathname.toString();
-        return parentName.replaceFirst(EXCESS_SEASON, "");
+        return EXCESS_SEASON.matcher(parentName).replaceFirst("");
     }
 
-    private static String insertShowNameIfNeeded(final Path filePath) {
+    /**
+     * Finds the show name for files in the given directory whose names begin with
+     * the season and episode.  That's the name of the directory, unless it looks
+     * like a season folder (or the folder for duplicates), in which case we keep
+     * going up.
+     *
+     * @param directory
+     *   the directory containing a file
+     * @return the show name to insert before the file's name; may be empty
+     */
+    static String inferShowName(final Path directory) {
+        Path parent = directory;
+        String parentName = extractParentName(parent);
+        while (StringUtils.toLower(parentName).startsWith("season")
+               || DIR_LOOKS_LIKE_SEASON.matcher(parentName).matches()
+               || parentName.equals(Constants.DUPLICATES_DIRECTORY))
+        {
+            parent = parent.getParent();
+            parentName = extractParentName(parent);
+        }
+        return parentName;
+    }
+
+    static String insertShowNameIfNeeded(final Path filePath) {
+        return insertShowNameIfNeeded(filePath, null);
+    }
+
+    private static String insertShowNameIfNeeded(final Path filePath,
+                                                 final DirectoryContext directory)
+    {
         if (filePath == null) {
             throw new IllegalArgumentException("insertShowNameIfNeeded received null argument.");
         }
@@ -160,15 +548,12 @@ public class FilenameParser {
 
         final String pName = justNamePath.toString();
         logger.fine("pName = " + pName);
-        if (pName.matches(FILENAME_BEGINS_WITH_SEASON)) {
-            Path parent = filePath.getParent();
-            String parentName = extractParentName(parent);
-            while (StringUtils.toLower(parentName).startsWith("season")
-                   || parentName.matches(DIR_LOOKS_LIKE_SEASON)
-                   || parentName.equals(Constants.DUPLICATES_DIRECTORY))
-            {
-                parent = parent.getParent();
-                parentName = extractParentName(parent);
+        if (FILENAME_BEGINS_WITH_SEASON.matcher(pName).matches()) {
+            String parentName;
+            if ((directory != null) && directory.contains(filePath)) {
+                parentName = directory.getInferredShowName();
+            } else {
+                parentName = inferShowName(filePath.getParent());
             }
             logger.fine("appending parent directory '" + parentName + "' to filename '" + pName + "'");
             return parentName + " " + pName;
@@ -1,5 +1,7 @@
 package org.tvrenamer.controller;
 
+import okhttp3.Call;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -9,49 +11,339 @@ import org.tvrenamer.model.TVRenamerIOException;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Downloads URLs.  Every request we make is a GET, which is safe to repeat,
+ * so a request that fails because of the network, or because the server is
+ * overloaded or broken (a 5xx response, 408 or 429), is tried again, after a
+ * randomized, exponentially growing delay, or after the delay the server asks
+ * for with a Retry-After header.  Other responses, like 404, are not retried.<p>
+ *
+ * Requests to each host go through a {@link CircuitBreaker}, so that when a
+ * server keeps failing, requests to it fail right away for a while, instead of
+ * each one waiting out its own timeouts and retries.  The attempts made to each
+ * endpoint are counted in an {@link EndpointStatistics}.<p>
+ *
+ * The retries can be configured with system properties:<ul>
+ *  <li>tvrenamer.http.maxAttempts: tries per request, including the first (default 3)</li>
+ *  <li>tvrenamer.http.failureThreshold: failures in a row that open the breaker (default 5)</li>
+ *  <li>tvrenamer.http.coolDownSeconds: how long the breaker stays open (default 30)</li></ul>
+ */
 class HttpConnectionHandler {
     private static final Logger logger = Logger.getLogger(HttpConnectionHandler.class.getName());
 
-    private static final int CONNECT_TIMEOUT_MS = 30000;
-    private static final int READ_TIMEOUT_MS = 60000;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 20000;
 
-    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
-        .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-        .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-        .build();
+    private static final int MAX_ATTEMPTS
+        = Math.max(1, Integer.getInteger("tvrenamer.http.maxAttempts", 3));
+    private static final long BASE_DELAY_MS = 500L;
+    private static final long MAX_DELAY_MS = 8000L;
+
+    // If the server asks us to wait longer than this, we don't try again.
+    private static final long MAX_RETRY_AFTER_MS = 30000L;
+
+    private static final int FAILURE_THRESHOLD
+        = Math.max(1, Integer.getInteger("tvrenamer.http.failureThreshold", 5));
+    private static final long COOL_DOWN_MS
+        = TimeUnit.SECONDS.toMillis(Integer.getInteger("tvrenamer.http.coolDownSeconds", 30));
+
+    private static final int NOT_FOUND = 404;
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int FIRST_SERVER_ERROR = 500;
+
+    private static final OkHttpClient CLIENT = buildClient();
+
+    // The breakers and statistics are shared by every handler made with the
+    // default constructor, so they cover all the requests the program makes.
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+    private static final EndpointStatistics STATISTICS = new EndpointStatistics();
 
     /**
-     * Try to keep {@link #downloadUrl} as clean as possible by not doing error handling
-     * there.  On any kind of failure, we'll get here.  We may need to re-discover something
-     * that was already known, but it's really not an issue, especially since this only
-     * happens in the error case.
+     * Waits between attempts; Thread::sleep, except in tests.
+     */
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final OkHttpClient client;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final Function<String, CircuitBreaker> breakers;
+    private final EndpointStatistics statistics;
+    private final Sleeper sleeper;
+
+    /**
+     * Creates a handler that shares its client, circuit breakers and statistics
+     * with every other handler created this way.
+     */
+    HttpConnectionHandler() {
+        this(CLIENT, MAX_ATTEMPTS, BASE_DELAY_MS,
+             host -> BREAKERS.computeIfAbsent(host, h -> new CircuitBreaker(FAILURE_THRESHOLD,
+                                                                            COOL_DOWN_MS,
+                                                                            System::nanoTime)),
+             STATISTICS, Thread::sleep);
+    }
+
+    /**
+     * Creates a handler with the given parts; for testing.
+     *
+     * @param client
+     *    the client to make the requests with
+     * @param maxAttempts
+     *    the most times to try each request, including the first
+     * @param baseDelayMillis
+     *    the delay before the first retry; it doubles with each retry, up to
+     *    a limit, and is randomized
+     * @param breakers
+     *    gives the circuit breaker for a host
+     * @param statistics
+     *    where to count the attempts
+     * @param sleeper
+     *    waits between attempts
+     */
+    HttpConnectionHandler(final OkHttpClient client, final int maxAttempts,
+                          final long baseDelayMillis,
+                          final Function<String, CircuitBreaker> breakers,
+                          final EndpointStatistics statistics, final Sleeper sleeper)
+    {
+        this.client = client;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.breakers = breakers;
+        this.statistics = statistics;
+        this.sleeper = sleeper;
+    }
+
+    /*
+     * Responses are recorded or replayed if the system properties ask for it;
+     * see RecordReplayInterceptor.
+     */
+    private static OkHttpClient buildClient() {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        RecordReplayInterceptor recordReplay = RecordReplayInterceptor.fromSystemProperties();
+        if (recordReplay != null) {
+            builder.addInterceptor(recordReplay);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a table of the requests made to each endpoint, how many failed,
+     * were retried, or were refused by a circuit breaker, and how long they took.
+     *
+     * @return the per-endpoint statistics, as a multi-line String
+     */
+    static String dumpStatistics() {
+        return STATISTICS.dump();
+    }
+
+    /**
+     * Writes the per-endpoint statistics to the log, if any requests were made.
+     */
+    static void logStatistics() {
+        if (!STATISTICS.isEmpty()) {
+            logger.info("HTTP statistics:\n" + STATISTICS.dump());
+        }
+    }
+
+    private static boolean isRetryable(final int code) {
+        return (code >= FIRST_SERVER_ERROR)
+            || (code == REQUEST_TIMEOUT)
+            || (code == TOO_MANY_REQUESTS);
+    }
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds, or a date.
+     *
+     * @param value
+     *    the value of the header, or null if there wasn't one
+     * @param nowMillis
+     *    the current time, in milliseconds
+     * @return how long the server asked us to wait, in milliseconds, or -1 if
+     *    it didn't say
+     */
+    static long parseRetryAfter(final String value, final long nowMillis) {
+        if (value == null) {
+            return -1L;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException nfe) {
+            // Not a number; try it as a date.
+        }
+        try {
+            long when = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant().toEpochMilli();
+            return Math.max(0L, when - nowMillis);
+        } catch (DateTimeParseException dtpe) {
+            logger.fine("ignoring unparseable Retry-After: " + value);
+            return -1L;
+        }
+    }
+
+    /**
+     * Decides how long to wait before trying a request again.
      *
+     * @param attempt
+     *    the attempt that just failed, starting at 1
      * @param response
-     *   the Response object that we got back after trying to download the URL
+     *    the response to that attempt, or null if it got none
+     * @return the delay, in milliseconds, or -1 if the request should not be
+     *    tried again
+     */
+    private long retryDelay(final int attempt, final Response response) {
+        if (attempt >= maxAttempts) {
+            return -1L;
+        }
+        if (response != null) {
+            long retryAfter = parseRetryAfter(response.header("Retry-After"),
+                                              System.currentTimeMillis());
+            if (retryAfter > MAX_RETRY_AFTER_MS) {
+                return -1L;
+            }
+            if (retryAfter >= 0L) {
+                return retryAfter;
+            }
+        }
+        // Exponential backoff, with "equal jitter": somewhere between half the
+        // delay and the whole delay, so that requests which failed together
+        // don't all come back together.
+        long delay = Math.min(MAX_DELAY_MS, baseDelayMillis << Math.min(attempt - 1, 20));
+        return (delay / 2) + ThreadLocalRandom.current().nextLong((delay / 2) + 1);
+    }
+
+    /**
+     * Makes the request, trying again as necessary, and returns the successful
+     * response.  The caller must close it.
+     *
+     * @param urlString the URL as a String
+     * @return the response
+     * @throws FileNotFoundException if the server says there's no such URL
+     * @throws InterruptedIOException if the lookup making the request was called off
+     * @throws IOException if the request could not be made or was not successful
+     */
+    private Response execute(final String urlString) throws IOException {
+        LookupHandle handle = LookupHandle.current();
+        Request request = new Request.Builder().url(urlString).get().build();
+        HttpUrl url = request.url();
+        String endpoint = EndpointStatistics.endpoint(url.host(), url.encodedPath());
+        CircuitBreaker breaker = breakers.apply(url.host() + ":" + url.port());
+        if (!breaker.allowRequest()) {
+            statistics.recordRejected(endpoint);
+            throw new TVRenamerIOException("not downloading " + urlString + "; "
+                                           + url.host() + " has been failing");
+        }
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            IOException failure = null;
+            Call call = client.newCall(request);
+            if ((handle != null) && !handle.attach(call)) {
+                breaker.recordAbandoned();
+                throw new InterruptedIOException("lookup cancelled; not downloading " + urlString);
+            }
+            long start = System.nanoTime();
+            try {
+                response = call.execute();
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if ((response != null) && response.isSuccessful()) {
+                statistics.recordAttempt(endpoint, elapsed, true);
+                breaker.recordSuccess();
+                return response;
+            }
+            if (call.isCanceled()) {
+                // Nothing is wrong with the server; no one wants the answer.
+                if (response != null) {
+                    response.close();
+                }
+                breaker.recordAbandoned();
+                throw new InterruptedIOException("lookup cancelled while downloading " + urlString);
+            }
+            statistics.recordAttempt(endpoint, elapsed, false);
+            if ((response != null) && !isRetryable(response.code())) {
+                // The server is working; it just doesn't like this request.
+                breaker.recordSuccess();
+                response.close();
+                if (response.code() == NOT_FOUND) {
+                    throw new FileNotFoundException(urlString);
+                }
+                throw new TVRenamerIOException("attempt to download " + urlString
+                                               + " failed with response code " + response.code());
+            }
+            breaker.recordFailure();
+
+            long delay = retryDelay(attempt, response);
+            String problem = (response == null) ? String.valueOf(failure)
+                : ("response code " + response.code());
+            if (response != null) {
+                response.close();
+            }
+            if ((delay < 0L) || !breaker.allowRequest()) {
+                if (failure != null) {
+                    throw failure;
+                }
+                throw new TVRenamerIOException("attempt to download " + urlString
+                                               + " failed with " + problem);
+            }
+            statistics.recordRetry(endpoint);
+            logger.info("attempt " + attempt + " to download " + urlString + " failed with "
+                        + problem + "; trying again in " + delay + " ms");
+            try {
+                sleeper.sleep(delay);
+            } catch (InterruptedException ie) {
+                // We told the breaker we'd report back; we won't be, so say so.
+                breaker.recordAbandoned();
+                Thread.currentThread().interrupt();
+                InterruptedIOException interrupted
+                    = new InterruptedIOException("interrupted waiting to retry " + urlString);
+                interrupted.initCause(ie);
+                throw interrupted;
+            }
+        }
+    }
+
+    /**
+     * Try to keep {@link #downloadUrl} as clean as possible by not doing error handling
+     * there.  On any kind of failure, we'll get here.
+     *
      * @param url
      *   the URL we tried to download, as a String
      * @param ioe
-     *   an I/O exception that may give some indication of what went wrong (and, at least,
+     *   an I/O exception that gives some indication of what went wrong (and, at least,
      *   gives us a stack trace...)
      * @return
      *   does not actually return anything; always throws an exception
      * @throws TVRenamerIOException in all cases; the fact of this method being called
      *   means something went wrong; creates it from the given arguments
      */
-    private String downloadUrlFailed(final Response response, final String url,
-                                     final IOException ioe)
+    private <T> T downloadUrlFailed(final String url, final IOException ioe)
         throws TVRenamerIOException
     {
-        String msg;
-        if (ioe == null) {
-            msg = "attempt to download " + url + " failed with response code "
-                + response.code();
-        } else {
-            msg = "exception downloading " + url;
+        String msg = "exception downloading " + url;
+        LookupHandle handle = LookupHandle.current();
+        if ((handle != null) && handle.isCancelled()) {
+            logger.fine("cancelled downloading " + url);
+            throw new TVRenamerIOException("cancelled downloading " + url, ioe);
         }
         logger.log(Level.WARNING, msg, ioe);
         throw new TVRenamerIOException(msg, ioe);
@@ -67,28 +359,44 @@ class HttpConnectionHandler {
     public String downloadUrl(String urlString) throws TVRenamerIOException {
         logger.fine("Downloading URL " + urlString);
 
-        Request request;
-        Response response = null;
+        try (Response response = execute(urlString)) {
+            ResponseBody body = response.body();
+            if (body == null) {
+                throw new TVRenamerIOException("no content downloading " + urlString);
+            }
+            String downloaded = body.string();
+            if (logger.isLoggable(Level.FINEST)) {
+                logger.log(Level.FINEST, "Url stream:\n{0}", downloaded);
+            }
+            return downloaded;
+        } catch (IOException ioe) {
+            return downloadUrlFailed(urlString, ioe);
+        }
+    }
+
+    /**
+     * Open the URL for reading.  Unlike {@link #downloadUrl}, this does not read the
+     * contents; the returned Reader reads them from the network as the caller reads
+     * from it, so the contents never need to be held in memory all at once.  The
+     * caller must close the Reader.
+     *
+     * @param urlString the URL as a String
+     * @return a Reader for the contents
+     * @throws TVRenamerIOException when there is an error connecting to the URL
+     */
+    public Reader openUrlReader(String urlString) throws TVRenamerIOException {
+        logger.fine("Opening URL " + urlString);
+
         try {
-            request = new Request.Builder().url(urlString).build();
-            response = CLIENT.newCall(request).execute();
-            if (response != null) {
-                if (response.isSuccessful()) {
-                    ResponseBody body = response.body();
-                    if (body != null) {
-                        String downloaded = body.string();
-                        if (logger.isLoggable(Level.FINEST)) {
-                            logger.log(Level.FINEST, "Url stream:\n{0}", downloaded);
-                        }
-                        return downloaded;
-                    }
-                } else if (response.code() == 404) {
-                    throw new FileNotFoundException(urlString);
-                }
+            Response response = execute(urlString);
+            ResponseBody body = response.body();
+            if (body == null) {
+                response.close();
+                throw new TVRenamerIOException("no content downloading " + urlString);
             }
-            throw new TVRenamerIOException(urlString);
+            return body.charStream();
         } catch (IOException ioe) {
-            return downloadUrlFailed(response, urlString, ioe);
+            return downloadUrlFailed(urlString, ioe);
         }
     }
 }
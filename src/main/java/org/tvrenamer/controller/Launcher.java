@@ -34,6 +34,8 @@ class Launcher {
         MoveRunner.shutDown();
         ShowStore.cleanUp();
         ListingsLookup.cleanUp();
+        FilenameParser.logStatistics();
+        HttpConnectionHandler.logStatistics();
     }
 
     /**
@@ -1,5 +1,6 @@
 package org.tvrenamer.controller;
 
+import org.tvrenamer.model.ListingsStore;
 import org.tvrenamer.model.Series;
 import org.tvrenamer.model.TVRenamerIOException;
 
@@ -20,10 +21,22 @@ public class ListingsLookup {
     private static final Logger logger = Logger.getLogger(ListingsLookup.class.getName());
 
     /**
-     * A pool of low-priority threads to execute the listings lookups.
+     * Low-priority threads to execute the listings lookups.  No more run at once
+     * than the provider throttle lets make requests; other lookups wait their turn,
+     * and those with the most files waiting for them go first.
      */
-    private static final ExecutorService THREAD_POOL
-        = Executors.newCachedThreadPool(r -> {
+    private static final LookupExecutor THREAD_POOL
+        = new LookupExecutor("listings-lookup", ProviderThrottle.MAX_IN_FLIGHT,
+                             Thread.MIN_PRIORITY);
+
+    /**
+     * A single low-priority thread to download again the listings of series which
+     * are already being shown with expired listings from the store.  These
+     * refreshes can wait; they run one at a time, so that they don't hold up
+     * the lookups of series we have no listings for at all.
+     */
+    private static final ExecutorService REFRESH_THREAD
+        = Executors.newSingleThreadExecutor(r -> {
             Thread t = new Thread(r);
             t.setPriority(Thread.MIN_PRIORITY);
             t.setDaemon(true);
@@ -33,23 +46,45 @@ public class ListingsLookup {
     /**
      * Spawn a thread to ask the provider to look up the listings for the given Series.
      *
-     * This is public so it can be called from the Series class.  No one else should
-     * call it.  Other classes which are interested in series listings should call
-     * addListener() on the Series itself.
+     * If the listings are in the listings store, the Series is filled in from there,
+     * and its listeners are notified right away, on the calling thread.  If the stored
+     * listings have expired, they're downloaded again in the background afterwards,
+     * and the listeners hear about it only if they changed.  A download that is
+     * still running when no one is waiting for it any more is called off.
+     *
+     * This is public so it can be called from the Series class, once Series.beginDownload
+     * has said the listings should be downloaded.  No one else should call it.  Other
+     * classes which are interested in series listings should call getListings() or
+     * addListingsListener() on the Series itself.
      *
      * @param series
      *           the series to download listings for
      */
     public static void downloadListings(final Series series) {
-        if (!series.beginDownload()) {
-            logger.warning("should not call downloadListings; Series is already download[ing/ed].");
+        // If we have the listings in the store, even expired ones, the listeners can
+        // have them right away, without waiting for a thread.
+        ListingsStore.LoadResult stored = TheTVDBProvider.loadStoredListings(series);
+        if (stored != ListingsStore.LoadResult.NOT_FOUND) {
+            series.listingsSucceeded();
+            if (stored == ListingsStore.LoadResult.EXPIRED) {
+                refreshListings(series);
+            }
+            return;
+        }
+        final LookupHandle handle = series.getDownloadHandle();
+        if (handle == null) {
+            // Called off already; whoever wants them next will start it again.
             return;
         }
-        Callable<Boolean> listingsFetcher = () -> {
+        Callable<Boolean> listingsFetcher = () -> handle.call(() -> {
             try {
-                TheTVDBProvider.getSeriesListing(series);
+                TheTVDBProvider.downloadSeriesListing(series);
                 return true;
             } catch (TVRenamerIOException e) {
+                if (handle.isCancelled()) {
+                    logger.fine("download of listings for " + series.getName() + " was called off");
+                    return false;
+                }
                 series.listingsFailed(e);
                 return false;
             } catch (Exception e) {
@@ -62,22 +97,57 @@ public class ListingsLookup {
                 series.listingsFailed(e);
                 return false;
             }
-        };
+        });
         try {
-            Future<Boolean> future = THREAD_POOL.submit(listingsFetcher);
+            Future<Boolean> future = THREAD_POOL.submit(listingsFetcher, series::getLookupPriority);
+            handle.setFuture(future);
             logger.fine("successfully submitted task " + future);
         } catch (RejectedExecutionException | NullPointerException e) {
             logger.log(Level.WARNING, "unable to submit listings download task ("
                        + series.getName() + ") for execution", e);
+            series.listingsFailed(e);
         }
     }
 
+    /*
+     * Downloads the listings again, in the background, for a Series that already
+     * has (expired) listings, and lets the listeners know if anything changed.
+     * If the download fails, the Series keeps the listings it has.
+     */
+    private static void refreshListings(final Series series) {
+        Callable<Boolean> listingsRefresher = () -> {
+            try {
+                series.listingsRefreshed(TheTVDBProvider.refreshSeriesListing(series));
+                return true;
+            } catch (Exception e) {
+                logger.log(Level.INFO, "unable to refresh listings for " + series
+                           + "; keeping expired listings", e);
+                return false;
+            }
+        };
+        try {
+            Future<Boolean> future = REFRESH_THREAD.submit(listingsRefresher);
+            logger.fine("successfully submitted task " + future);
+        } catch (RejectedExecutionException | NullPointerException e) {
+            logger.log(Level.WARNING, "unable to submit listings refresh task ("
+                       + series.getName() + ") for execution", e);
+        }
+    }
+
+    /**
+     * @return the number of listings lookups waiting for a thread
+     */
+    public static int getQueuedLookups() {
+        return THREAD_POOL.getQueuedCount();
+    }
+
     /**
      * Kill any threads that might be running, so the program can shut down.
      *
      */
     public static void cleanUp() {
         THREAD_POOL.shutdownNow();
+        REFRESH_THREAD.shutdownNow();
     }
 
     /**
@@ -0,0 +1,372 @@
+package org.tvrenamer.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs lookups, no more than a given number at once.  The limit is kept by a
+ * semaphore, and not by the number of threads, so it's the same whichever kind
+ * of thread runs the lookups.<p>
+ *
+ * The lookup that runs next is the waiting one with the highest priority, and,
+ * of those with the same priority, the one submitted first.  A lookup's priority
+ * is asked for each time the next one is chosen, so it can change while the
+ * lookup waits; for example, as more files turn out to need it.  Tasks given to
+ * {@link #execute} have priority 0.<p>
+ *
+ * The kind of thread is chosen with the system property tvrenamer.lookup.threads:<ul>
+ *  <li>"platform" (the default): a pool of daemon threads, no more than the
+ *      limit, which end after a minute without work</li>
+ *  <li>"virtual": a new virtual thread for each lookup.  A lookup spends nearly
+ *      all its time waiting for the provider, which a virtual thread does
+ *      without holding on to a thread of the operating system.  Virtual threads
+ *      are only in Java 21 and later; on older versions, platform threads are
+ *      used instead.</li></ul>
+ */
+public final class LookupExecutor extends AbstractExecutorService {
+    private static final Logger logger = Logger.getLogger(LookupExecutor.class.getName());
+
+    /**
+     * The kinds of thread lookups can run on.
+     */
+    enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    /**
+     * The kind of thread lookups run on, unless an executor is created with another.
+     */
+    static final Mode MODE = modeFromProperty();
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final String name;
+    private final Semaphore permits;
+    // Guarded by itself.  It's not kept in order, since priorities change.
+    private final List<Runnable> queue = new ArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private final Object terminationLock = new Object();
+    private volatile boolean shutdown = false;
+
+    // Either the pool of platform threads, or null, when each task gets a
+    // virtual thread from the factory.
+    private final ThreadPoolExecutor pool;
+    private final ThreadFactory virtualThreads;
+
+    /**
+     * Create an executor which runs lookups on the kind of thread chosen by the
+     * system property.
+     *
+     * @param name
+     *    the name of the executor, which its threads are named after
+     * @param maxConcurrent
+     *    the most lookups to run at once
+     * @param threadPriority
+     *    the priority of the threads, if they're platform threads; virtual
+     *    threads always have normal priority
+     */
+    public LookupExecutor(final String name, final int maxConcurrent, final int threadPriority) {
+        this(name, maxConcurrent, threadPriority, MODE);
+    }
+
+    LookupExecutor(final String name, final int maxConcurrent, final int threadPriority,
+                   final Mode mode)
+    {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("LookupExecutor must run at least one task at once");
+        }
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent);
+        this.virtualThreads = (mode == Mode.VIRTUAL) ? virtualThreadFactory(name) : null;
+        if (virtualThreads == null) {
+            AtomicInteger count = new AtomicInteger();
+            pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent,
+                                          KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<>(), r -> {
+                                              Thread t = new Thread(r, name + "-"
+                                                                    + count.incrementAndGet());
+                                              t.setPriority(threadPriority);
+                                              t.setDaemon(true);
+                                              return t;
+                                          });
+            pool.allowCoreThreadTimeOut(true);
+        } else {
+            pool = null;
+        }
+    }
+
+    private static Mode modeFromProperty() {
+        String value = System.getProperty("tvrenamer.lookup.threads", "platform");
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException iae) {
+            logger.warning("ignoring unknown kind of lookup thread \"" + value + "\"");
+            return Mode.PLATFORM;
+        }
+    }
+
+    /*
+     * Gets a factory for virtual threads named after the executor, if this
+     * version of Java has them.  We're built for Java 8, so it has to be done
+     * by reflection: Thread.ofVirtual().name(prefix, 1).factory()
+     */
+    private static ThreadFactory virtualThreadFactory(final String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "virtual threads are not available in Java "
+                       + System.getProperty("java.version") + "; using platform threads for "
+                       + name, e);
+            return null;
+        }
+    }
+
+    /*
+     * A task with a priority, which can change while the task waits.
+     */
+    private static class PrioritizedTask<T> extends FutureTask<T> {
+        private final IntSupplier priority;
+
+        PrioritizedTask(final Callable<T> callable, final IntSupplier priority) {
+            super(callable);
+            this.priority = priority;
+        }
+    }
+
+    private static int priorityOf(final Runnable task) {
+        if (task instanceof PrioritizedTask) {
+            return ((PrioritizedTask<?>) task).priority.getAsInt();
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if this executor runs each task on a virtual thread
+     */
+    public boolean usesVirtualThreads() {
+        return (virtualThreads != null);
+    }
+
+    /**
+     * @return the number of tasks waiting for their turn
+     */
+    public int getQueuedCount() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private boolean noneQueued() {
+        synchronized (queue) {
+            return queue.isEmpty();
+        }
+    }
+
+    /*
+     * Takes the waiting task with the highest priority, or null if none is waiting.
+     */
+    private Runnable takeNext() {
+        synchronized (queue) {
+            int best = -1;
+            int bestPriority = Integer.MIN_VALUE;
+            for (int i = 0; i < queue.size(); i++) {
+                int priority = priorityOf(queue.get(i));
+                if ((best < 0) || (priority > bestPriority)) {
+                    best = i;
+                    bestPriority = priority;
+                }
+            }
+            return (best < 0) ? null : queue.remove(best);
+        }
+    }
+
+    /**
+     * Submits a task with a priority.
+     *
+     * @param <T>
+     *    the type of the task's result
+     * @param task
+     *    the task to run
+     * @param priority
+     *    gives the task's priority; it's called, while the task waits, each
+     *    time the next task to run is chosen, so it should be quick
+     * @return a Future for the task's result
+     */
+    public <T> Future<T> submit(final Callable<T> task, final IntSupplier priority) {
+        if ((task == null) || (priority == null)) {
+            throw new NullPointerException("cannot submit null task or priority");
+        }
+        PrioritizedTask<T> prioritized = new PrioritizedTask<>(task, priority);
+        execute(prioritized);
+        return prioritized;
+    }
+
+    /**
+     * @return the number of tasks running
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("cannot execute null task");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " has been shut down");
+        }
+        synchronized (queue) {
+            queue.add(task);
+        }
+        dispatch();
+    }
+
+    /*
+     * Starts as many of the waiting tasks as the semaphore lets run.  This is
+     * called whenever a task is added, and whenever one finishes, so a task
+     * can't be left waiting while there's a permit for it.
+     */
+    private void dispatch() {
+        while (!noneQueued() && permits.tryAcquire()) {
+            // Counted as running before it leaves the queue, so that there's no
+            // moment when it's neither, and the executor looks terminated.
+            active.incrementAndGet();
+            Runnable task = takeNext();
+            if (task == null) {
+                // Another thread started it.
+                active.decrementAndGet();
+                permits.release();
+                continue;
+            }
+            try {
+                start(task);
+            } catch (RejectedExecutionException | OutOfMemoryError e) {
+                logger.log(Level.WARNING, "unable to start " + name + " task", e);
+                finished();
+            }
+        }
+    }
+
+    private void start(final Runnable task) {
+        Runnable runner = () -> {
+            Thread current = Thread.currentThread();
+            running.add(current);
+            try {
+                task.run();
+            } finally {
+                running.remove(current);
+                finished();
+            }
+        };
+        if (pool == null) {
+            virtualThreads.newThread(runner).start();
+        } else {
+            pool.execute(runner);
+        }
+    }
+
+    private void finished() {
+        active.decrementAndGet();
+        permits.release();
+        dispatch();
+        if (shutdown) {
+            signalIfTerminated();
+        }
+    }
+
+    private void signalIfTerminated() {
+        if (isTerminated()) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            synchronized (terminationLock) {
+                terminationLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting tasks.  Those already submitted are still run.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        dispatch();
+        signalIfTerminated();
+    }
+
+    /**
+     * Stops accepting tasks, discards those waiting, and interrupts those running.
+     *
+     * @return the tasks that were waiting
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> waiting = new ArrayList<>();
+        synchronized (queue) {
+            waiting.addAll(queue);
+            queue.clear();
+        }
+        running.forEach(Thread::interrupt);
+        signalIfTerminated();
+        return waiting;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && noneQueued() && (active.get() == 0);
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupExecutor [" + name + ", " + (usesVirtualThreads() ? "virtual" : "platform")
+            + " threads, " + getActiveCount() + " running, " + getQueuedCount() + " waiting]";
+    }
+}
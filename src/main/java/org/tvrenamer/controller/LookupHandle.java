@@ -0,0 +1,141 @@
+package org.tvrenamer.controller;
+
+import okhttp3.Call;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * A handle on one attempt at a lookup (a show search, or a listings download),
+ * by which it can be called off from another thread, once no file is waiting
+ * for it any more.  Calling it off cancels the lookup's Future, so that it
+ * doesn't run if it hasn't started, and is interrupted if it has; and cancels
+ * the HTTP request it's making, if any, since a thread blocked reading from the
+ * network doesn't notice being interrupted.<p>
+ *
+ * The HTTP request is found through the thread: while the lookup runs (see
+ * {@link #call}), its handle is the thread's current one, and
+ * HttpConnectionHandler gives the current handle each request it makes.
+ */
+public final class LookupHandle {
+    private static final Logger logger = Logger.getLogger(LookupHandle.class.getName());
+
+    private static final ThreadLocal<LookupHandle> CURRENT = new ThreadLocal<>();
+
+    private final String description;
+
+    // All guarded by this.
+    private Future<?> future = null;
+    private Call call = null;
+    private boolean cancelled = false;
+
+    /**
+     * @param description
+     *    what the lookup is for, for logging
+     */
+    public LookupHandle(final String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return the handle of the lookup the current thread is running, or null
+     */
+    static LookupHandle current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the lookup on this thread, with this as the thread's current handle.
+     *
+     * @param <T>
+     *    the type of the lookup's result
+     * @param lookup
+     *    the lookup to run
+     * @return the lookup's result
+     * @throws Exception if the lookup throws one
+     */
+    public <T> T call(final Callable<T> lookup) throws Exception {
+        LookupHandle previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return lookup.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Sets the Future of the task that runs the lookup, so that it can be
+     * cancelled.  If the lookup has already been called off, it's cancelled now.
+     *
+     * @param future
+     *    the Future returned when the task was submitted
+     */
+    public void setFuture(final Future<?> future) {
+        synchronized (this) {
+            this.future = future;
+            if (!cancelled) {
+                return;
+            }
+        }
+        future.cancel(true);
+    }
+
+    /**
+     * Notes the HTTP request the lookup is about to make, so that it can be
+     * cancelled.  It stays noted after it's made, so that reading the response
+     * can be cancelled, too.
+     *
+     * @param httpCall
+     *    the request
+     * @return false if the lookup has been called off, and the request should
+     *    not be made; true otherwise
+     */
+    synchronized boolean attach(final Call httpCall) {
+        if (cancelled) {
+            return false;
+        }
+        call = httpCall;
+        return true;
+    }
+
+    /**
+     * Calls off the lookup.  Does nothing if it has already been called off.
+     */
+    public void cancel() {
+        Future<?> cancelFuture;
+        Call cancelCall;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelFuture = future;
+            cancelCall = call;
+        }
+        logger.fine("cancelling lookup of " + description);
+        if (cancelCall != null) {
+            cancelCall.cancel();
+        }
+        if (cancelFuture != null) {
+            cancelFuture.cancel(true);
+        }
+    }
+
+    /**
+     * @return true if the lookup has been called off
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupHandle [" + description + (isCancelled() ? ", cancelled]" : "]");
+    }
+}
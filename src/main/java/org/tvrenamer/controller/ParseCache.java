@@ -0,0 +1,140 @@
+package org.tvrenamer.controller;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A size-bounded, least-recently-used cache of parse results, keyed on the name
+ * that was actually parsed (that is, the filename, with the show name from the
+ * parent directory inserted if necessary).<p>
+ *
+ * The same names get parsed over and over: the preload folder at every start,
+ * files that are dropped again, and so on.  Since the result depends on nothing
+ * but the name, there's no need to do the work again.<p>
+ *
+ * The cache is read by all the threads of FilenameParser.parseAll at once, so
+ * it's not locked to look up or add a result.  Each entry is stamped when it's
+ * used, from a counter that goes up each time a result is added; a lookup only
+ * reads the counter, so threads finding results don't contend for it.  An entry
+ * used since the last result was added counts as newer than any other entry.<p>
+ *
+ * When the cache grows past its capacity, the thread that notices removes the
+ * entries with the oldest stamps, an eighth of the capacity at a time, so that
+ * it needn't do so again for a while.  The bound is approximate: while one
+ * thread is removing entries, others may still add them.
+ */
+final class ParseCache {
+    private final int capacity;
+    private final int evictTo;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong uses = new AtomicLong();
+    private final ReentrantLock evicting = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Entry {
+        final ParsedFilename parsed;
+        volatile long lastUsed;
+
+        Entry(final ParsedFilename parsed, final long lastUsed) {
+            this.parsed = parsed;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /*
+     * An entry's key and stamp, as they were when the entries were gathered
+     * to be evicted, so that they sort the same however they're used meanwhile.
+     */
+    private static final class Stamped {
+        final String name;
+        final long lastUsed;
+
+        Stamped(final String name, final long lastUsed) {
+            this.name = name;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    ParseCache(final int capacity) {
+        this.capacity = capacity;
+        this.evictTo = capacity - (capacity / 8);
+    }
+
+    /**
+     * Looks up the result of parsing the given name, and counts the hit or miss.
+     *
+     * @param name
+     *    the name that was (or is about to be) parsed
+     * @return the cached result, or null if there is none
+     */
+    ParsedFilename get(final String name) {
+        Entry found = entries.get(name);
+        if (found == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        long now = uses.get() + 1L;
+        if (found.lastUsed != now) {
+            found.lastUsed = now;
+        }
+        return found.parsed;
+    }
+
+    void put(final String name, final ParsedFilename parsed) {
+        entries.put(name, new Entry(parsed, uses.incrementAndGet()));
+        if ((entries.size() > capacity) && evicting.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evicting.unlock();
+            }
+        }
+    }
+
+    private void evict() {
+        List<Stamped> stamped = new ArrayList<>(entries.size());
+        entries.forEach((name, entry) -> stamped.add(new Stamped(name, entry.lastUsed)));
+        int excess = stamped.size() - evictTo;
+        if (excess <= 0) {
+            return;
+        }
+        stamped.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (int i = 0; i < excess; i++) {
+            entries.remove(stamped.get(i).name);
+        }
+    }
+
+    /**
+     * Discards all cached results.  The counters are not reset.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ParseCache [size=" + entries.size() + "/" + capacity
+            + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -0,0 +1,200 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.model.Show;
+
+/**
+ * A reusable holder for the result of parsing a single name.<p>
+ *
+ * {@link FilenameParser#parse(CharSequence, ParseResult)} fills one of these in
+ * without creating any objects.  The season and episode are stored as ints, and
+ * the show name and resolution are stored as spans of the name that was actually
+ * matched (that is, the given name with junk like "hdtv" removed), which is kept
+ * in a buffer owned by this object.  Strings are only created if the caller asks
+ * for them.  So a caller that parses a great many names can reuse one instance,
+ * and get the values it needs, without creating garbage for each name.<p>
+ *
+ * Instances are not thread-safe.
+ */
+public final class ParseResult {
+    private static final int INITIAL_CAPACITY = 128;
+
+    // The name that was matched; all spans are indexes into this.
+    final StringBuilder parsedName = new StringBuilder(INITIAL_CAPACITY);
+
+    private boolean parsed = false;
+    private int season = Show.NO_SEASON;
+    private int episode = Show.NO_EPISODE;
+    private int showStart = 0;
+    private int showEnd = 0;
+    private int resolutionStart = -1;
+    private int resolutionEnd = -1;
+    // The show name, when it isn't a span of the parsed name; see setShowName.
+    private String showName = null;
+
+    void reset() {
+        parsedName.setLength(0);
+        parsed = false;
+        season = Show.NO_SEASON;
+        episode = Show.NO_EPISODE;
+        showStart = 0;
+        showEnd = 0;
+        resolutionStart = -1;
+        resolutionEnd = -1;
+        showName = null;
+    }
+
+    /**
+     * Records a successful match.  The arguments are the spans of the groups of
+     * the pattern; the show name is trimmed of separators, and the season and
+     * episode are converted to numbers.
+     */
+    void setFound(final int showGroupEnd,
+                  final int seasonStart, final int seasonEnd,
+                  final int episodeStart, final int episodeEnd,
+                  final int resStart, final int resEnd)
+    {
+        int start = 0;
+        int end = showGroupEnd;
+        while (start < end && isTrimmable(parsedName.charAt(start))) {
+            start++;
+        }
+        while (end > start && isTrimmable(parsedName.charAt(end - 1))) {
+            end--;
+        }
+        showStart = start;
+        showEnd = end;
+        season = parseDigits(seasonStart, seasonEnd, Show.NO_SEASON);
+        episode = parseDigits(episodeStart, episodeEnd, Show.NO_EPISODE);
+        resolutionStart = resStart;
+        resolutionEnd = resEnd;
+        parsed = true;
+    }
+
+    /**
+     * Records the show name as a String, rather than as a span.  This is for
+     * names the regular expressions matched, which may contain a line
+     * terminator; StringUtils.trimFoundShow trims separators from just before
+     * a final one, which leaves a show name that isn't a span of the parsed
+     * name.  The span set by setFound is kept, as the nearest span there is.
+     */
+    void setShowName(final String trimmed) {
+        showName = trimmed;
+    }
+
+    // These are the characters that StringUtils.trimFoundShow removes from the
+    // beginning and end of the show name.
+    private static boolean isTrimmable(final char c) {
+        return (c == ' ') || (c == '_') || (c == '.') || (c == '-');
+    }
+
+    /*
+     * The spans only ever contain ASCII digits.  A number too big for an int is
+     * treated the way Integer.parseInt failing on it always has been: as though
+     * there were no number.
+     */
+    private int parseDigits(final int start, final int end, final int ifTooBig) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value * 10) + (parsedName.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return ifTooBig;
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return true if the name was successfully parsed
+     */
+    public boolean wasParsed() {
+        return parsed;
+    }
+
+    /**
+     * @return the season number found in the name, or Show.NO_SEASON
+     */
+    public int getSeason() {
+        return season;
+    }
+
+    /**
+     * @return the episode number found in the name, or Show.NO_EPISODE
+     */
+    public int getEpisode() {
+        return episode;
+    }
+
+    /**
+     * @return the name that was actually matched, which the spans refer to;
+     *    only valid until this object is reused
+     */
+    public CharSequence getParsedName() {
+        return parsedName;
+    }
+
+    public int getShowStart() {
+        return showStart;
+    }
+
+    public int getShowEnd() {
+        return showEnd;
+    }
+
+    /**
+     * @return true if a resolution was found in the name
+     */
+    public boolean hasResolution() {
+        return resolutionStart >= 0;
+    }
+
+    /**
+     * @return the start of the resolution in the parsed name, or -1
+     */
+    public int getResolutionStart() {
+        return resolutionStart;
+    }
+
+    /**
+     * @return the end of the resolution in the parsed name, or -1
+     */
+    public int getResolutionEnd() {
+        return resolutionEnd;
+    }
+
+    /**
+     * Creates the String for the show name that was found.
+     *
+     * @return the show name, as it appeared in the name; null if the name
+     *    was not parsed
+     */
+    public String getShowName() {
+        if (!parsed) {
+            return null;
+        }
+        if (showName != null) {
+            return showName;
+        }
+        return parsedName.substring(showStart, showEnd);
+    }
+
+    /**
+     * Creates the String for the resolution that was found.
+     *
+     * @return the resolution, or the empty string if there was none
+     */
+    public String getResolution() {
+        if (resolutionStart < 0) {
+            return "";
+        }
+        return parsedName.substring(resolutionStart, resolutionEnd);
+    }
+
+    @Override
+    public String toString() {
+        if (!parsed) {
+            return "ParseResult [unparsed]";
+        }
+        return "ParseResult [" + getShowName() + ", S" + season + "E" + episode
+            + ", " + getResolution() + "]";
+    }
+}
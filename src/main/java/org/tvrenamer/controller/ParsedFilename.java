@@ -0,0 +1,56 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.model.Show;
+
+/**
+ * The information that FilenameParser extracts from a filename, independent of
+ * any FileEpisode.<p>
+ *
+ * Instances are immutable, so that they can be cached and shared.  A name which
+ * could not be parsed is represented by {@link #FAILED}.
+ */
+public final class ParsedFilename {
+    public static final ParsedFilename FAILED = new ParsedFilename();
+
+    public final String filenameShow;
+    public final int season;
+    public final int episode;
+    public final String resolution;
+
+    private final boolean parsed;
+
+    public ParsedFilename(final String filenameShow, final int season,
+                          final int episode, final String resolution)
+    {
+        this.filenameShow = filenameShow;
+        this.season = season;
+        this.episode = episode;
+        this.resolution = (resolution == null) ? "" : resolution;
+        parsed = true;
+    }
+
+    private ParsedFilename() {
+        filenameShow = null;
+        season = Show.NO_SEASON;
+        episode = Show.NO_EPISODE;
+        resolution = "";
+        parsed = false;
+    }
+
+    /**
+     * @return true if the filename was successfully parsed; false if this
+     *    is {@link #FAILED}
+     */
+    public boolean wasParsed() {
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        if (!parsed) {
+            return "ParsedFilename [unparsed]";
+        }
+        return "ParsedFilename [" + filenameShow + ", S" + season
+            + "E" + episode + ", " + resolution + "]";
+    }
+}
@@ -0,0 +1,162 @@
+package org.tvrenamer.controller;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each of FilenameParser's rules matches, and how much time is
+ * spent trying each one.<p>
+ *
+ * The counters are safe to update from any number of threads.  The match counts
+ * also determine the order in which the rules are tried when FilenameParser is in
+ * adaptive mode: most frequently matched first.  That order is recomputed every
+ * so often, as names are parsed.
+ */
+final class ParserStatistics {
+    private static final int NUM_RULES = FilenameMatcher.NUM_RULES;
+
+    // How many names to parse between recomputations of the adaptive order
+    private static final long REORDER_INTERVAL = 4096;
+
+    static final int[] CANONICAL_ORDER = new int[NUM_RULES];
+
+    static {
+        for (int r = 0; r < NUM_RULES; r++) {
+            CANONICAL_ORDER[r] = r;
+        }
+    }
+
+    private final LongAdder[] matches = new LongAdder[NUM_RULES];
+    private final LongAdder[] attempts = new LongAdder[NUM_RULES];
+    private final LongAdder[] nanos = new LongAdder[NUM_RULES];
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder regexFallbacks = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final AtomicLong parses = new AtomicLong();
+
+    private volatile int[] adaptiveOrder = CANONICAL_ORDER;
+
+    ParserStatistics() {
+        for (int r = 0; r < NUM_RULES; r++) {
+            matches[r] = new LongAdder();
+            attempts[r] = new LongAdder();
+            nanos[r] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records that a rule was tried, and how long it took.
+     */
+    void recordAttempt(final int rule, final long elapsedNanos) {
+        attempts[rule].increment();
+        nanos[rule].add(elapsedNanos);
+    }
+
+    /**
+     * Records that, in adaptive mode, a rule with higher precedence than the one
+     * that matched first had to be checked.
+     */
+    void recordVerification() {
+        verifications.increment();
+    }
+
+    /**
+     * Records that a name contained characters that the FilenameMatcher does not
+     * handle, so the regular expressions were used instead.
+     */
+    void recordRegexFallback() {
+        regexFallbacks.increment();
+    }
+
+    /**
+     * Records the outcome of parsing a name.
+     *
+     * @param rule
+     *    the rule that matched, or FilenameMatcher.NO_MATCH
+     */
+    void recordParse(final int rule) {
+        if (rule == FilenameMatcher.NO_MATCH) {
+            unmatched.increment();
+        } else {
+            matches[rule].increment();
+        }
+        if ((parses.incrementAndGet() % REORDER_INTERVAL) == 0) {
+            reorder();
+        }
+    }
+
+    /**
+     * @return the rules, sorted by how often they've matched, most often first;
+     *    rules that have matched equally often stay in order of precedence
+     */
+    int[] getAdaptiveOrder() {
+        return adaptiveOrder;
+    }
+
+    /**
+     * Recomputes the adaptive order from the current match counts.
+     */
+    void reorder() {
+        final long[] counts = new long[NUM_RULES];
+        Integer[] order = new Integer[NUM_RULES];
+        for (int r = 0; r < NUM_RULES; r++) {
+            counts[r] = matches[r].sum();
+            order[r] = r;
+        }
+        // Arrays.sort on objects is stable, so ties stay in canonical order
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int[] newOrder = new int[NUM_RULES];
+        for (int r = 0; r < NUM_RULES; r++) {
+            newOrder[r] = order[r];
+        }
+        adaptiveOrder = newOrder;
+    }
+
+    long getMatches(final int rule) {
+        return matches[rule].sum();
+    }
+
+    long getAttempts(final int rule) {
+        return attempts[rule].sum();
+    }
+
+    long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    void reset() {
+        for (int r = 0; r < NUM_RULES; r++) {
+            matches[r].reset();
+            attempts[r].reset();
+            nanos[r].reset();
+        }
+        unmatched.reset();
+        regexFallbacks.reset();
+        verifications.reset();
+        parses.set(0);
+        adaptiveOrder = CANONICAL_ORDER;
+    }
+
+    /**
+     * @return a table of the counters, one line per rule
+     */
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-4s %-34s %10s %10s %12s %10s%n",
+                                 "rule", "pattern", "matches", "attempts", "total ms", "avg ns"));
+        for (int r = 0; r < NUM_RULES; r++) {
+            long tries = attempts[r].sum();
+            long elapsed = nanos[r].sum();
+            out.append(String.format("%-4d %-34s %10d %10d %12.3f %10d%n",
+                                     r, FilenameMatcher.describeRule(r), matches[r].sum(), tries,
+                                     elapsed / 1e6, (tries == 0) ? 0 : elapsed / tries));
+        }
+        out.append("names parsed: ").append(parses.get())
+            .append(", unmatched: ").append(unmatched.sum())
+            .append(", regex fallbacks: ").append(regexFallbacks.sum())
+            .append(", adaptive verifications: ").append(verifications.sum())
+            .append(", adaptive order: ").append(Arrays.toString(adaptiveOrder));
+        return out.toString();
+    }
+}
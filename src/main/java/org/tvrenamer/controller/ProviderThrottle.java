@@ -0,0 +1,151 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.model.TVRenamerIOException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Limits the requests we make to the provider: no more than a given number
+ * may be in flight at once, and they are started no faster than a given rate
+ * (see {@link TokenBucket}).  Searches and listings downloads share the same
+ * limits.  Responses that come from the cache don't count.<p>
+ *
+ * Without this, adding a folder with hundreds of different show names would
+ * start hundreds of downloads at once, which the provider throttles, and which
+ * can use up the sockets available to us.<p>
+ *
+ * The limits can be set with system properties:<ul>
+ *  <li>tvrenamer.provider.maxInFlight: requests in flight at once (default 4)</li>
+ *  <li>tvrenamer.provider.requestsPerSecond: sustained rate (default 4)</li>
+ *  <li>tvrenamer.provider.burst: requests that may start at once (default 8)</li></ul><p>
+ *
+ * It also keeps a few numbers about how requests are queued, which are logged,
+ * and can be read by anyone interested.
+ */
+public final class ProviderThrottle {
+    private static final Logger logger = Logger.getLogger(ProviderThrottle.class.getName());
+
+    /**
+     * The most requests to the provider that may be in flight at once.  The
+     * lookup thread pools are the same size, since a thread that can't make
+     * its request would only wait.
+     */
+    public static final int MAX_IN_FLIGHT
+        = Math.max(1, Integer.getInteger("tvrenamer.provider.maxInFlight", 4));
+
+    private static final double REQUESTS_PER_SECOND
+        = Double.parseDouble(System.getProperty("tvrenamer.provider.requestsPerSecond", "4"));
+    private static final int BURST
+        = Math.max(1, Integer.getInteger("tvrenamer.provider.burst", 8));
+
+    private static final ProviderThrottle PROVIDER
+        = new ProviderThrottle(MAX_IN_FLIGHT,
+                               new TokenBucket(BURST, REQUESTS_PER_SECOND, System::nanoTime));
+
+    /**
+     * Permission to make one request.  Close it when the request is finished.
+     */
+    interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Semaphore slots;
+    private final TokenBucket bucket;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    ProviderThrottle(final int maxInFlight, final TokenBucket bucket) {
+        this.slots = new Semaphore(maxInFlight, true);
+        this.bucket = bucket;
+    }
+
+    /**
+     * @return the throttle for requests to the provider
+     */
+    public static ProviderThrottle getProviderThrottle() {
+        return PROVIDER;
+    }
+
+    /**
+     * Waits until a request may be made.
+     *
+     * @param description
+     *    what the request is for, for logging
+     * @return a Permit, which must be closed when the request is done
+     * @throws TVRenamerIOException
+     *    if the thread is interrupted while it waits
+     */
+    Permit acquire(final String description) throws TVRenamerIOException {
+        long start = System.nanoTime();
+        int queued = waiting.incrementAndGet();
+        if (queued > 1) {
+            logger.fine(queued + " requests waiting; queued " + description);
+        }
+        try {
+            slots.acquire();
+            try {
+                bucket.acquire();
+            } catch (InterruptedException e) {
+                slots.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TVRenamerIOException("interrupted waiting to download " + description, e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+        requests.incrementAndGet();
+        inFlight.incrementAndGet();
+        AtomicInteger released = new AtomicInteger();
+        return () -> {
+            if (released.getAndIncrement() == 0) {
+                inFlight.decrementAndGet();
+                slots.release();
+            }
+        };
+    }
+
+    /**
+     * @return the number of requests waiting for their turn
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests that have been allowed to go
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the total time requests have spent waiting for their turn, in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "ProviderThrottle [" + getInFlight() + " in flight, " + getWaiting() + " waiting, "
+            + getRequestCount() + " requests, waited " + getTotalWaitMillis() + " ms]";
+    }
+}
@@ -0,0 +1,309 @@
+package org.tvrenamer.controller;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import org.tvrenamer.controller.util.FileUtilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stands between HttpConnectionHandler and the network, so that the provider
+ * code can be tested and measured without it.  In RECORD mode, requests go to
+ * the network as usual, and each response is saved to a fixture file.  In
+ * REPLAY mode, nothing goes to the network; each request is answered from its
+ * fixture file, after a delay and at a speed given by a {@link NetworkProfile},
+ * so that timings are repeatable.  A request with no fixture fails, as if the
+ * network were down.<p>
+ *
+ * The fixture for a request is named for its path and query, and not its
+ * host, so fixtures recorded from the provider can be replayed for a server
+ * at another address.  A fixture is a text header, followed by the body:
+ * <pre>
+ *   TVRFIXTURE 1
+ *   status code
+ *   header lines, as "Name: value"
+ *   empty line
+ *   body
+ * </pre>
+ * Fixtures can be written by hand, too.<p>
+ *
+ * Nothing is recorded or replayed unless it's asked for with system properties:<ul>
+ *  <li>tvrenamer.http.mode: "record" or "replay"</li>
+ *  <li>tvrenamer.http.fixtures: the directory of fixture files (default "fixtures")</li>
+ *  <li>tvrenamer.http.profile: when replaying, one of the NetworkProfile names (default none)</li></ul>
+ */
+final class RecordReplayInterceptor implements Interceptor {
+    private static final Logger logger = Logger.getLogger(RecordReplayInterceptor.class.getName());
+
+    private static final String HEADER = "TVRFIXTURE 1";
+    private static final String FILE_SUFFIX = ".http";
+    private static final String TEMP_PREFIX = "tmp-";
+    private static final int MAX_NAME_LENGTH = 100;
+
+    /**
+     * What to do with requests.
+     */
+    enum Mode {
+        /** Make them, and save the responses. */
+        RECORD,
+        /** Answer them from the saved responses. */
+        REPLAY
+    }
+
+    /**
+     * How long a replayed response takes to start, and how fast its body arrives.
+     */
+    enum NetworkProfile {
+        /** As fast as the fixtures can be read. */
+        NONE(0L, 0L),
+        /** A server on the local network. */
+        LAN(2L, 50L * 1024L * 1024L),
+        /** A typical home connection to a distant server. */
+        BROADBAND(80L, 2L * 1024L * 1024L),
+        /** A poor mobile connection. */
+        SLOW(400L, 64L * 1024L);
+
+        final long latencyMillis;
+        final long bytesPerSecond;
+
+        NetworkProfile(final long latencyMillis, final long bytesPerSecond) {
+            this.latencyMillis = latencyMillis;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    /*
+     * Reads no faster than the given rate: after each read, waits until the
+     * bytes read so far would have arrived.
+     */
+    private static class ThrottledSource extends ForwardingSource {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long total = 0L;
+
+        ThrottledSource(final Source source, final long bytesPerSecond) {
+            super(source);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public long read(final Buffer sink, final long byteCount) throws IOException {
+            long count = super.read(sink, byteCount);
+            if (count > 0L) {
+                total += count;
+                long due = start + (total * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+                pause(due - System.nanoTime());
+            }
+            return count;
+        }
+    }
+
+    private final Mode mode;
+    private final Path directory;
+    private final NetworkProfile profile;
+
+    /**
+     * @param mode
+     *    whether to record or replay
+     * @param directory
+     *    the directory of fixture files
+     * @param profile
+     *    how fast replayed responses arrive; ignored when recording
+     */
+    RecordReplayInterceptor(final Mode mode, final Path directory, final NetworkProfile profile) {
+        this.mode = mode;
+        this.directory = directory;
+        this.profile = profile;
+    }
+
+    /**
+     * Creates the interceptor asked for by the system properties.
+     *
+     * @return the interceptor, or null if nothing should be recorded or replayed
+     */
+    static RecordReplayInterceptor fromSystemProperties() {
+        String modeName = System.getProperty("tvrenamer.http.mode");
+        if ((modeName == null) || modeName.isEmpty()) {
+            return null;
+        }
+        try {
+            Mode mode = Mode.valueOf(modeName.toUpperCase(Locale.ROOT));
+            Path directory = Paths.get(System.getProperty("tvrenamer.http.fixtures", "fixtures"));
+            NetworkProfile profile = NetworkProfile.valueOf(
+                System.getProperty("tvrenamer.http.profile", "none").toUpperCase(Locale.ROOT));
+            logger.info(mode + " HTTP responses in " + directory.toAbsolutePath()
+                        + ((mode == Mode.REPLAY) ? (", profile " + profile) : ""));
+            return new RecordReplayInterceptor(mode, directory, profile);
+        } catch (IllegalArgumentException iae) {
+            logger.warning("ignoring bad HTTP record/replay settings: " + iae.getMessage());
+            return null;
+        }
+    }
+
+    private static void pause(final long nanos) throws InterruptedIOException {
+        if (nanos <= 0L) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted replaying response");
+        }
+    }
+
+    /**
+     * Gets the name of the fixture file for the given URL.
+     *
+     * @param url
+     *    the URL of the request
+     * @return the name of the file, which depends only on the URL's path and query
+     */
+    static String fixtureName(final HttpUrl url) {
+        String query = url.encodedQuery();
+        String target = url.encodedPath() + ((query == null) ? "" : ("?" + query));
+        String name = target.replaceAll("^/+", "").replaceAll("[^-.=A-Za-z0-9]", "_");
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH) + "-" + Integer.toHexString(target.hashCode());
+        }
+        return name + FILE_SUFFIX;
+    }
+
+    private Path fixtureFile(final Request request) {
+        return directory.resolve(fixtureName(request.url()));
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        if (mode == Mode.RECORD) {
+            return record(chain);
+        }
+        return replay(chain.request());
+    }
+
+    private Response record(final Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        MediaType contentType = (body == null) ? null : body.contentType();
+        byte[] content = (body == null) ? new byte[0] : body.bytes();
+        save(fixtureFile(chain.request()), response, content);
+        return response.newBuilder().body(ResponseBody.create(contentType, content)).build();
+    }
+
+    private void save(final Path file, final Response response, final byte[] content) {
+        if (!FileUtilities.ensureWritableDirectory(directory)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, TEMP_PREFIX, FILE_SUFFIX);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                StringBuilder header = new StringBuilder(HEADER).append('\n');
+                header.append(response.code()).append('\n');
+                Headers headers = response.headers();
+                for (int i = 0; i < headers.size(); i++) {
+                    header.append(headers.name(i)).append(": ").append(headers.value(i)).append('\n');
+                }
+                header.append('\n');
+                out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+                out.write(content);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            logger.fine("recorded " + response.request().url() + " to " + file);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.log(Level.INFO, "unable to record " + response.request().url(), e);
+            if ((temp != null) && Files.exists(temp)) {
+                FileUtilities.deleteFile(temp);
+            }
+        }
+    }
+
+    /*
+     * Reads a line of the fixture's header; the header is ASCII, so a byte
+     * is a character.
+     */
+    private static String readLine(final InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while (((c = in.read()) >= 0) && (c != '\n')) {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private Response replay(final Request request) throws IOException {
+        Path file = fixtureFile(request);
+        if (!Files.exists(file)) {
+            throw new IOException("no recorded response for " + request.url() + " in " + file);
+        }
+        pause(TimeUnit.MILLISECONDS.toNanos(profile.latencyMillis));
+
+        int code;
+        Headers.Builder headers = new Headers.Builder();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            if (!HEADER.equals(readLine(in))) {
+                throw new IOException(file + " is not a fixture file");
+            }
+            try {
+                code = Integer.parseInt(readLine(in).trim());
+            } catch (NumberFormatException nfe) {
+                throw new IOException(file + " has no status code", nfe);
+            }
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                headers.add(line);
+            }
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                content.write(buffer, 0, count);
+            }
+        }
+
+        Headers replayedHeaders = headers.build();
+        String type = replayedHeaders.get("Content-Type");
+        MediaType contentType = (type == null) ? null : MediaType.parse(type);
+        Buffer body = new Buffer().write(content.toByteArray());
+        Source source = (profile.bytesPerSecond > 0L)
+            ? new ThrottledSource(body, profile.bytesPerSecond)
+            : body;
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("replayed from " + file.getFileName())
+            .headers(replayedHeaders)
+            .body(ResponseBody.create(contentType, content.size(), Okio.buffer(source)))
+            .build();
+    }
+}
@@ -0,0 +1,430 @@
+package org.tvrenamer.controller;
+
+import org.tvrenamer.controller.util.FileUtilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of documents downloaded from the provider, on disk, so that they
+ * don't have to be downloaded again the next time the program runs.<p>
+ *
+ * Each entry is a file in the cache directory.  The file starts with a short
+ * header, giving the time the entry expires and the key it was stored under,
+ * followed by the document itself, as UTF-8.  The name of the file is made from
+ * a hash of the key; the key in the header tells us if two keys had the same
+ * hash.<p>
+ *
+ * A new entry is written to a temporary file, and only moved into place, with
+ * an atomic move, once it's complete; so an entry is never seen half-written,
+ * even by another instance of the program.  The expiry time is written last,
+ * just before the move, so that the caller can decide how long to keep the
+ * document after it's looked at it.<p>
+ *
+ * The total size of the entries is kept under a limit by removing the least
+ * recently used ones.  The last-modified time of each file is the last time the
+ * entry was used.  The total is kept up to date as entries are added and
+ * removed, and the directory is only listed when it goes over the limit.<p>
+ *
+ * Failures to read or write the cache are logged, and otherwise treated as if
+ * the entry wasn't there; the cache is never a reason for a lookup to fail.
+ */
+final class ResponseCache {
+    private static final Logger logger = Logger.getLogger(ResponseCache.class.getName());
+
+    private static final String ENTRY_SUFFIX = ".xml";
+    private static final String TEMP_PREFIX = "tmp-";
+    // "TVRCACHE 1 " + 19-digit expiry time in milliseconds + "\n"
+    private static final String MAGIC = "TVRCACHE 1 ";
+    private static final int EXPIRY_DIGITS = 19;
+    private static final int EXPIRY_OFFSET = MAGIC.length();
+    private static final int EXPIRY_LINE_LENGTH = EXPIRY_OFFSET + EXPIRY_DIGITS + 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Clock clock;
+
+    // The total size of the entries, or -1 until the directory has been listed.
+    // Another instance of the program may add entries too; those are counted
+    // the next time the directory is listed.  Guarded by this.
+    private long totalBytes = -1L;
+
+    /*
+     * An entry file, with its last-modified time and size as they were when
+     * the directory was listed, so that sorting them doesn't touch the disk,
+     * and isn't upset by an entry being used meanwhile.
+     */
+    private static final class StoredFile {
+        final Path file;
+        final long lastModified;
+        final long size;
+
+        StoredFile(final Path file, final long lastModified, final long size) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A new entry, being written.  Write the document with {@link #write},
+     * and then {@link #commit} it; or close it without committing, to discard it.
+     */
+    final class Entry implements Closeable {
+        private final String key;
+        private final Path temp;
+        private boolean finished = false;
+
+        private Entry(final String key, final Path temp) {
+            this.key = key;
+            this.temp = temp;
+        }
+
+        /**
+         * Copies the document into the entry.  Nothing is stored until the
+         * entry is committed.
+         *
+         * @param document
+         *    the document; it is read to the end, but not closed
+         * @throws IOException
+         *    if the document can't be read, or the entry can't be written
+         */
+        void write(final Reader document) throws IOException {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8,
+                                                      StandardOpenOption.APPEND))
+            {
+                char[] buffer = new char[8192];
+                int count;
+                while ((count = document.read(buffer)) >= 0) {
+                    out.write(buffer, 0, count);
+                }
+            }
+        }
+
+        /**
+         * @return a Reader for the document written so far; the caller must close it
+         * @throws IOException if the entry can't be read
+         */
+        Reader openReader() throws IOException {
+            return openDocument(temp, key);
+        }
+
+        /**
+         * Stores the entry in the cache, replacing any entry with the same key.
+         *
+         * @param timeToLiveMillis
+         *    how long the entry should be used for, from now
+         */
+        void commit(final long timeToLiveMillis) {
+            finished = true;
+            long expires = clock.millis() + timeToLiveMillis;
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer digits = ByteBuffer.wrap(formatExpiry(expires)
+                                                        .getBytes(StandardCharsets.US_ASCII));
+                    channel.write(digits, EXPIRY_OFFSET);
+                }
+                Path file = entryFile(key);
+                long replaced = size(file);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                touch(file);
+                added(size(file) - replaced);
+            } catch (IOException | UnsupportedOperationException | SecurityException e) {
+                logger.log(Level.INFO, "unable to cache response for " + key, e);
+                FileUtilities.deleteFile(temp);
+            }
+        }
+
+        /**
+         * Discards the entry, unless it has been committed.
+         */
+        @Override
+        public void close() {
+            if (!finished) {
+                finished = true;
+                FileUtilities.deleteFile(temp);
+            }
+        }
+    }
+
+    /**
+     * Creates a cache in the given directory.  The directory is created when
+     * the first entry is written.
+     *
+     * @param directory
+     *    the directory to keep the entries in
+     * @param maxBytes
+     *    the most space the entries may take up
+     * @param clock
+     *    the clock to use to decide whether entries have expired
+     */
+    ResponseCache(final Path directory, final long maxBytes, final Clock clock) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    private static String formatExpiry(final long expires) {
+        StringBuilder digits = new StringBuilder(Long.toString(expires));
+        while (digits.length() < EXPIRY_DIGITS) {
+            digits.insert(0, '0');
+        }
+        return digits.toString();
+    }
+
+    private static String hash(final String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                .digest(key.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path entryFile(final String key) {
+        return directory.resolve(hash(key) + ENTRY_SUFFIX);
+    }
+
+    private void touch(final Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(clock.millis()));
+        } catch (IOException | SecurityException e) {
+            logger.log(Level.FINE, "unable to update access time of " + file, e);
+        }
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        throw new IOException("cache entry header is incomplete");
+    }
+
+    /*
+     * Opens the given entry file, checks that it's for the given key, and returns
+     * a Reader positioned at the start of the document.  Returns the expiry time
+     * through the given array, if it isn't null.
+     */
+    private static Reader openDocument(final Path file, final String key, final long[] expires)
+        throws IOException
+    {
+        InputStream in = Files.newInputStream(file);
+        try {
+            String expiryLine = readLine(in);
+            if ((expiryLine.length() != EXPIRY_LINE_LENGTH - 1) || !expiryLine.startsWith(MAGIC)) {
+                throw new IOException("not a cache entry: " + file);
+            }
+            if (expires != null) {
+                expires[0] = Long.parseLong(expiryLine.substring(EXPIRY_OFFSET));
+            }
+            String storedKey = new String(readLine(in).getBytes(StandardCharsets.ISO_8859_1),
+                                          StandardCharsets.UTF_8);
+            if (!key.equals(storedKey)) {
+                throw new IOException("cache entry " + file + " is for " + storedKey);
+            }
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static Reader openDocument(final Path file, final String key) throws IOException {
+        return openDocument(file, key, null);
+    }
+
+    /**
+     * Looks up the document stored under the given key.
+     *
+     * @param key
+     *    identifies the document
+     * @return a Reader for the document, which the caller must close; or null
+     *    if there is no entry for the key, or the entry has expired
+     */
+    Reader get(final String key) {
+        Path file = entryFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        long[] expires = new long[1];
+        Reader document;
+        try {
+            document = openDocument(file, key, expires);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.FINE, "unable to read cache entry for " + key, e);
+            return null;
+        }
+        if (expires[0] <= clock.millis()) {
+            logger.fine("cache entry for " + key + " has expired");
+            try {
+                document.close();
+            } catch (IOException ignored) {
+                // we didn't read anything from it
+            }
+            return null;
+        }
+        touch(file);
+        return document;
+    }
+
+    /**
+     * Begins a new entry for the given key.
+     *
+     * @param key
+     *    identifies the document
+     * @return the new entry, or null if it can't be created
+     */
+    Entry create(final String key) {
+        if (!FileUtilities.ensureWritableDirectory(directory)) {
+            return null;
+        }
+        try {
+            Path temp = Files.createTempFile(directory, TEMP_PREFIX, ENTRY_SUFFIX);
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(MAGIC);
+                out.write(formatExpiry(0L));
+                out.write('\n');
+                out.write(key);
+                out.write('\n');
+            }
+            return new Entry(key, temp);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.log(Level.INFO, "unable to create cache entry for " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the entry for the given key, if there is one.
+     *
+     * @param key
+     *    identifies the document
+     */
+    void remove(final String key) {
+        Path file = entryFile(key);
+        if (Files.exists(file)) {
+            long fileSize = size(file);
+            if (FileUtilities.deleteFile(file)) {
+                added(-fileSize);
+            }
+        }
+    }
+
+    private List<Path> listEntries() {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                    entries.add(file);
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            logger.log(Level.INFO, "unable to list cache directory " + directory, e);
+        }
+        return entries;
+    }
+
+    private static long size(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /*
+     * Counts an entry of the given size as added (or, if it's negative,
+     * removed), and evicts entries if that takes the total over the limit.
+     */
+    private synchronized void added(final long bytes) {
+        if (totalBytes < 0L) {
+            evict();
+        } else {
+            totalBytes += bytes;
+            if (totalBytes > maxBytes) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries, until the entries take up no
+     * more than the maximum size.
+     */
+    synchronized void evict() {
+        List<StoredFile> entries = new ArrayList<>();
+        long total = 0L;
+        for (Path file : listEntries()) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                entries.add(new StoredFile(file, attributes.lastModifiedTime().toMillis(),
+                                           attributes.size()));
+                total += attributes.size();
+            } catch (IOException | SecurityException e) {
+                logger.log(Level.FINE, "unable to read attributes of " + file, e);
+            }
+        }
+        if (total > maxBytes) {
+            entries.sort(Comparator.comparingLong(entry -> entry.lastModified));
+            for (StoredFile entry : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                if (FileUtilities.deleteFile(entry.file)) {
+                    logger.fine("evicted cache entry " + entry.file);
+                    total -= entry.size;
+                }
+            }
+        }
+        totalBytes = total;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    synchronized void clear() {
+        for (Path file : listEntries()) {
+            FileUtilities.deleteFile(file);
+        }
+        totalBytes = -1L;
+    }
+}
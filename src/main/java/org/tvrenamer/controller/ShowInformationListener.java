@@ -9,4 +9,15 @@ public interface ShowInformationListener {
     void downloadFailed(FailedShow failedShow);
 
     void apiHasBeenDeprecated();
+
+    /**
+     * How much this listener counts when deciding which show to look up next;
+     * shows whose listeners count for more are looked up first.  By default, a
+     * listener counts as one file waiting for the show.
+     *
+     * @return the weight of this listener
+     */
+    default int getLookupWeight() {
+        return 1;
+    }
 }
@@ -1,7 +1,34 @@
 package org.tvrenamer.controller;
 
+import org.tvrenamer.model.EpisodePlacement;
+
+import java.util.Set;
+
 public interface ShowListingsListener {
     void listingsDownloadComplete();
 
     void listingsDownloadFailed(Exception err);
+
+    /**
+     * Called when listings that were already reported complete have been
+     * downloaded again, and are different.  By default, acts as if the
+     * listings were complete for the first time.
+     *
+     * @param changed
+     *    the placements, in either ordering, of the episodes that changed
+     */
+    default void listingsChanged(Set<EpisodePlacement> changed) {
+        listingsDownloadComplete();
+    }
+
+    /**
+     * How much this listener counts when deciding which listings to download
+     * next; series whose listeners count for more are downloaded first.  By
+     * default, a listener counts as one file waiting for the listings.
+     *
+     * @return the weight of this listener
+     */
+    default int getLookupWeight() {
+        return 1;
+    }
 }
@@ -1,33 +1,32 @@
 package org.tvrenamer.controller;
 
-import static org.tvrenamer.controller.util.XPathUtilities.nodeListValue;
-import static org.tvrenamer.controller.util.XPathUtilities.nodeTextValue;
 import static org.tvrenamer.model.util.Constants.*;
 
+import org.tvrenamer.controller.util.SpecialCharacterEncodingReader;
 import org.tvrenamer.controller.util.StringUtils;
+import org.tvrenamer.controller.util.XmlRecordReader;
 import org.tvrenamer.model.DiscontinuedApiException;
 import org.tvrenamer.model.EpisodeInfo;
+import org.tvrenamer.model.EpisodePlacement;
+import org.tvrenamer.model.ListingsStore;
 import org.tvrenamer.model.Series;
 import org.tvrenamer.model.ShowName;
+import org.tvrenamer.model.ShowOption;
 import org.tvrenamer.model.TVRenamerIOException;
 
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
+import javax.xml.stream.XMLStreamException;
 
 public class TheTVDBProvider {
     private static final Logger logger = Logger.getLogger(TheTVDBProvider.class.getName());
@@ -38,97 +37,226 @@ public class TheTVDBProvider {
     // Whether or not we should try making v1 API calls
     private static boolean apiIsDeprecated = false;
 
-    // The base information for the provider
+    // The base information for the provider.  The site can be changed, to use
+    // a server that stands in for the provider, for testing.
     private static final String DEFAULT_SITE_URL = "http://thetvdb.com/";
-    private static final String API_URL = DEFAULT_SITE_URL + "api/";
+    private static final String API_PATH = "api/";
+    private static volatile String siteUrl
+        = normalizeSiteUrl(System.getProperty("tvrenamer.provider.url"));
 
-    // The URL to get, to receive options for a given series search string.
+    // The path to get, to receive options for a given series search string.
     // Note, does not take API key.
-    private static final String BASE_SEARCH_URL = API_URL + "GetSeries.php?seriesname=";
+    private static final String SEARCH_PATH = API_PATH + "GetSeries.php?seriesname=";
+
+    // Responses are kept in a cache on disk.  Search results, and the listings
+    // of series which are still running, may change any time; the listings of
+    // series which have ended very rarely do.
+    private static final long SEARCH_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long CONTINUING_LISTINGS_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long ENDED_LISTINGS_TTL_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final long MAX_CACHE_BYTES = 64L * 1024L * 1024L;
+    private static final ResponseCache CACHE
+        = new ResponseCache(CACHE_DIRECTORY, MAX_CACHE_BYTES, Clock.systemUTC());
+
+    // The episodes of each series we've looked up, already parsed, so that the
+    // series can be filled in without even reading the cached listings.  They
+    // expire at the same time as the cached listings would.
+    private static final ListingsStore STORE = new ListingsStore(LISTINGS_DIRECTORY, Clock.systemUTC());
+
+    // Limits how many requests we make to the provider, and how fast.
+    private static final ProviderThrottle THROTTLE = ProviderThrottle.getProviderThrottle();
+
+    // When set, cached responses are not used; everything is downloaded again,
+    // and the cache is updated with the new responses.
+    private static volatile boolean refreshCache = Boolean.getBoolean("tvrenamer.cache.refresh");
+
+    // The root element of the documents we get from the provider.
+    private static final String DATA_ELEMENT = "Data";
 
     // These are the tags that we use to extract the relevant information from the show document.
-    private static final String XPATH_SERIES = "/Data/Series";
-    private static final String XPATH_SERIES_ID = "seriesid";
-    private static final String XPATH_NAME = "SeriesName";
+    private static final String SERIES_ELEMENT = "Series";
+    private static final String[] SERIES_FIELDS = { "seriesid", "SeriesName" };
+    private static final int SERIES_ID_FIELD = 0;
+    private static final int SERIES_NAME_FIELD = 1;
     private static final String SERIES_NOT_PERMITTED = "** 403: Series Not Permitted **";
 
-    // The URL to get, to receive listings for a specific given series.
-    private static final String BASE_LIST_URL = API_URL + API_KEY + "/series/";
+    // The path to get, to receive listings for a specific given series.
+    private static final String LIST_PATH = API_PATH + API_KEY + "/series/";
     private static final String BASE_LIST_FILENAME = "/all/" + DEFAULT_LANGUAGE + XML_SUFFIX;
 
     // These are the tags that we use to extract the episode information
-    // from the listings document.
-    private static final String XPATH_EPISODE_LIST = "/Data/Episode";
-    private static final String XPATH_EPISODE_ID = "id";
-    private static final String XPATH_SEASON_NUM = "SeasonNumber";
-    private static final String XPATH_EPISODE_NUM = "EpisodeNumber";
-    private static final String XPATH_EPISODE_NAME = "EpisodeName";
-    private static final String XPATH_AIRDATE = "FirstAired";
-    // private static final String XPATH_EPISODE_SERIES_ID = "seriesid";
-    private static final String XPATH_DVD_SEASON_NUM = "DVD_season";
-    private static final String XPATH_DVD_EPISODE_NUM = "DVD_episodenumber";
-    // private static final String XPATH_EPISODE_NUM_ABS = "absolute_number";
-
-    private static String getShowSearchXml(final String queryString)
-        throws TVRenamerIOException, DiscontinuedApiException
-    {
-        if (apiIsDeprecated) {
-            throw new DiscontinuedApiException();
+    // from the listings document.  Other tags we might use some day include
+    // "seriesid" and "absolute_number".
+    private static final String[] LISTINGS_ELEMENTS = { SERIES_ELEMENT, "Episode" };
+    private static final int LISTINGS_SERIES = 0;
+    private static final int LISTINGS_EPISODE = 1;
+    private static final String[] LISTINGS_SERIES_FIELDS = { "Status" };
+    private static final int SERIES_STATUS_FIELD = 0;
+    private static final String SERIES_ENDED = "Ended";
+    private static final String[] EPISODE_FIELDS = {
+        "id", "SeasonNumber", "EpisodeNumber", "EpisodeName", "FirstAired",
+        "DVD_season", "DVD_episodenumber"
+    };
+    private static final int EPISODE_ID_FIELD = 0;
+    private static final int SEASON_NUM_FIELD = 1;
+    private static final int EPISODE_NUM_FIELD = 2;
+    private static final int EPISODE_NAME_FIELD = 3;
+    private static final int AIRDATE_FIELD = 4;
+    private static final int DVD_SEASON_NUM_FIELD = 5;
+    private static final int DVD_EPISODE_NUM_FIELD = 6;
+    private static final String[][] LISTINGS_FIELDS = { LISTINGS_SERIES_FIELDS, EPISODE_FIELDS };
+
+    /**
+     * The information we take from a listings document.
+     */
+    static class Listings {
+        final EpisodeInfo[] episodes;
+        final boolean ended;
+
+        Listings(final EpisodeInfo[] episodes, final boolean ended) {
+            this.episodes = episodes;
+            this.ended = ended;
         }
+    }
 
-        String searchURL = BASE_SEARCH_URL + StringUtils.encodeUrlCharacters(queryString);
+    /*
+     * Parses a document from the provider.
+     */
+    private interface DocumentParser<T> {
+        T parse(Reader document) throws TVRenamerIOException;
+    }
 
-        logger.fine("About to download search results from " + searchURL);
+    /*
+     * Decides how long a parsed document may be cached.
+     */
+    private interface TimeToLive<T> {
+        long millis(T parsed);
+    }
 
-        String content = new HttpConnectionHandler().downloadUrl(searchURL);
+    /**
+     * Sets whether cached responses should be ignored.  When set, everything is
+     * downloaded again, and the cache is updated with the new responses.  The
+     * initial value comes from the system property "tvrenamer.cache.refresh".
+     *
+     * @param refresh
+     *    true to download everything again; false to use the cache
+     */
+    public static void setRefreshCache(final boolean refresh) {
+        refreshCache = refresh;
+    }
 
-        return StringUtils.encodeSpecialCharacters(content);
+    /**
+     * Sets the site to get information from, in place of the provider's own;
+     * for example, a local server that stands in for it.  The initial value
+     * comes from the system property "tvrenamer.provider.url".
+     *
+     * @param url
+     *    the base URL of the site, such as "http://localhost:8080/"; or null
+     *    to use the provider's own site
+     */
+    public static void setSiteUrl(final String url) {
+        siteUrl = normalizeSiteUrl(url);
     }
 
-    private static String getSeriesListingXml(final Series series)
+    private static String normalizeSiteUrl(final String url) {
+        if ((url == null) || url.isEmpty()) {
+            return DEFAULT_SITE_URL;
+        }
+        return url.endsWith("/") ? url : (url + "/");
+    }
+
+    /**
+     * Discards all the cached responses.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+        STORE.clear();
+    }
+
+    /*
+     * Parses the document at the given URL, from the cache if we have it, and
+     * otherwise from the provider.  A downloaded document is written to the
+     * cache as it's read, and then parsed from there; it's only kept if it
+     * could be parsed.  A download first waits its turn with the provider
+     * throttle.
+     */
+    private static <T> T fetchDocument(final String url, final DocumentParser<T> parser,
+                                       final TimeToLive<T> timeToLive)
         throws TVRenamerIOException, DiscontinuedApiException
     {
+        if (!refreshCache) {
+            Reader cached = CACHE.get(url);
+            if (cached != null) {
+                logger.fine("Using cached response for " + url);
+                try (Reader document = new SpecialCharacterEncodingReader(cached)) {
+                    return parser.parse(document);
+                } catch (IOException ioe) {
+                    logger.log(Level.INFO, "discarding cached response for " + url, ioe);
+                    CACHE.remove(url);
+                }
+            }
+        }
+
         if (apiIsDeprecated) {
             throw new DiscontinuedApiException();
         }
 
-        int seriesId = series.getId();
-        String seriesURL = BASE_LIST_URL + seriesId + BASE_LIST_FILENAME;
-
-        logger.fine("Downloading episode listing from " + seriesURL);
+        logger.fine("About to download " + url);
 
-        String content = new HttpConnectionHandler().downloadUrl(seriesURL);
-
-        return StringUtils.encodeSpecialCharacters(content);
+        HttpConnectionHandler handler = new HttpConnectionHandler();
+        ProviderThrottle.Permit permit = THROTTLE.acquire(url);
+        try (ResponseCache.Entry entry = CACHE.create(url)) {
+            if (entry == null) {
+                try (Reader document = new SpecialCharacterEncodingReader(handler.openUrlReader(url))) {
+                    return parser.parse(document);
+                }
+            }
+            try (Reader content = handler.openUrlReader(url)) {
+                entry.write(content);
+            }
+            T parsed;
+            try (Reader document = new SpecialCharacterEncodingReader(entry.openReader())) {
+                parsed = parser.parse(document);
+            }
+            entry.commit(timeToLive.millis(parsed));
+            return parsed;
+        } catch (TVRenamerIOException tve) {
+            throw tve;
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, ioe.getMessage(), ioe);
+            throw new TVRenamerIOException(DOWNLOADING_FAILED_MESSAGE, ioe);
+        } finally {
+            permit.close();
+        }
     }
 
-    private static void collectShowOptions(final NodeList shows, final ShowName showName)
-        throws XPathExpressionException
+    private static List<ShowOption> collectShowOptions(final List<String[]> shows,
+                                                       final ShowName showName)
     {
-        for (int i = 0; i < shows.getLength(); i++) {
-            Node eNode = shows.item(i);
-            String seriesName = nodeTextValue(XPATH_NAME, eNode);
-            String tvdbId = nodeTextValue(XPATH_SERIES_ID, eNode);
+        List<ShowOption> options = new ArrayList<>();
+        for (String[] show : shows) {
+            String seriesName = show[SERIES_NAME_FIELD];
+            String tvdbId = show[SERIES_ID_FIELD];
 
             if (SERIES_NOT_PERMITTED.equals(seriesName)) {
                 logger.warning("ignoring unpermitted option for "
                                + showName.getExampleFilename());
             } else {
-                showName.addShowOption(tvdbId, seriesName);
+                options.add(ShowOption.getShowOption(tvdbId, seriesName));
             }
         }
+        return options;
     }
 
-    private static void readShowsFromInputSource(final DocumentBuilder bld,
-                                                 final InputSource searchXmlSource,
-                                                 final ShowName showName)
+    private static List<String[]> readShowsFromXml(final Reader searchXml)
         throws TVRenamerIOException
     {
         try {
-            Document doc = bld.parse(searchXmlSource);
-            NodeList shows = nodeListValue(XPATH_SERIES, doc);
-            collectShowOptions(shows, showName);
-        } catch (SAXException | XPathExpressionException | DOMException | IOException e) {
+            List<String[]> shows = new ArrayList<>();
+            XmlRecordReader.readRecords(searchXml, DATA_ELEMENT, SERIES_ELEMENT,
+                                        SERIES_FIELDS, shows::add);
+            return shows;
+        } catch (XMLStreamException e) {
             logger.log(Level.WARNING, ERROR_PARSING_XML, e);
             throw new TVRenamerIOException(ERROR_PARSING_XML, e);
         }
@@ -153,29 +281,25 @@ public class TheTVDBProvider {
      *
      * @param showName
      *   the show name to fetch the options for
+     * @return the options the provider gave; empty if it had none.  They belong
+     *   to this query alone, so that one called off can't mix its options
+     *   with those of the query that replaces it.
      * @throws DiscontinuedApiException if it appears that the API we are using
      *   is no longer supported
      * @throws TVRenamerIOException if anything else goes wrong; this could
      *   include network difficulties or difficulty parsing the XML.
      */
-    public static void getShowOptions(final ShowName showName)
+    public static List<ShowOption> getShowOptions(final ShowName showName)
         throws TVRenamerIOException, DiscontinuedApiException
     {
-        DocumentBuilder bld;
+        String queryString = showName.getQueryString();
+        String searchURL = siteUrl + SEARCH_PATH + StringUtils.encodeUrlCharacters(queryString);
         try {
-            bld = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            logger.log(Level.WARNING, "could not create DocumentBuilder: " + e.getMessage(), e);
-            throw new TVRenamerIOException(ERROR_PARSING_XML, e);
-        }
-
-        String searchXml = "";
-        try {
-            searchXml = getShowSearchXml(showName.getQueryString());
-            InputSource source = new InputSource(new StringReader(searchXml));
-            readShowsFromInputSource(bld, source, showName);
+            List<String[]> shows = fetchDocument(searchURL, TheTVDBProvider::readShowsFromXml,
+                                                 parsed -> SEARCH_TTL_MILLIS);
+            return collectShowOptions(shows, showName);
         } catch (TVRenamerIOException tve) {
-            String msg  = "error parsing XML from " + searchXml + " for series "
+            String msg  = "error parsing XML for query \"" + queryString + "\" for series "
                 + showName.getExampleFilename();
             if (isApiDiscontinuedError(tve)) {
                 throw new DiscontinuedApiException();
@@ -186,57 +310,136 @@ public class TheTVDBProvider {
         }
     }
 
-    private static EpisodeInfo createEpisodeInfo(final Node eNode) {
-        try {
-            return new EpisodeInfo.Builder()
-                .episodeId(nodeTextValue(XPATH_EPISODE_ID, eNode))
-                .seasonNumber(nodeTextValue(XPATH_SEASON_NUM, eNode))
-                .episodeNumber(nodeTextValue(XPATH_EPISODE_NUM, eNode))
-                .episodeName(nodeTextValue(XPATH_EPISODE_NAME, eNode))
-                .firstAired(nodeTextValue(XPATH_AIRDATE, eNode))
-                .dvdSeason(nodeTextValue(XPATH_DVD_SEASON_NUM, eNode))
-                .dvdEpisodeNumber(nodeTextValue(XPATH_DVD_EPISODE_NUM, eNode))
-                .build();
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "exception parsing episode", e);
-        }
-        return null;
+    private static EpisodeInfo createEpisodeInfo(final String[] episode) {
+        return new EpisodeInfo.Builder()
+            .episodeId(episode[EPISODE_ID_FIELD])
+            .seasonNumber(episode[SEASON_NUM_FIELD])
+            .episodeNumber(episode[EPISODE_NUM_FIELD])
+            .episodeName(episode[EPISODE_NAME_FIELD])
+            .firstAired(episode[AIRDATE_FIELD])
+            .dvdSeason(episode[DVD_SEASON_NUM_FIELD])
+            .dvdEpisodeNumber(episode[DVD_EPISODE_NUM_FIELD])
+            .build();
     }
 
-    private static NodeList getEpisodeList(final Series series)
+    /**
+     * Parses the episode listings document, as downloaded from the provider.
+     * This does not touch the network, which makes it usable on its own for
+     * testing and benchmarking.
+     *
+     * @param listingsXml
+     *   the listings document, with special characters already encoded
+     * @param description
+     *   what the listings are for, to use in log messages
+     * @return an EpisodeInfo for each episode in the document
+     * @throws TVRenamerIOException if the document could not be parsed
+     */
+    static EpisodeInfo[] parseEpisodeInfos(final String listingsXml, final String description)
         throws TVRenamerIOException
     {
-        NodeList episodeList;
+        return parseEpisodeInfos(new StringReader(listingsXml), description);
+    }
 
-        DocumentBuilder dbf;
+    /**
+     * Parses the episode listings document, as it is read from the given Reader.
+     *
+     * @param listingsXml
+     *   a Reader for the listings document, with special characters encoded
+     *   (see {@link SpecialCharacterEncodingReader})
+     * @param description
+     *   what the listings are for, to use in log messages
+     * @return an EpisodeInfo for each episode in the document
+     * @throws TVRenamerIOException if the document could not be read or parsed
+     */
+    static EpisodeInfo[] parseEpisodeInfos(final Reader listingsXml, final String description)
+        throws TVRenamerIOException
+    {
+        return parseListings(listingsXml, description).episodes;
+    }
+
+    /**
+     * Parses the episode listings document, as it is read from the given Reader,
+     * including the information about the series as a whole that we use.
+     *
+     * @param listingsXml
+     *   a Reader for the listings document, with special characters encoded
+     *   (see {@link SpecialCharacterEncodingReader})
+     * @param description
+     *   what the listings are for, to use in log messages
+     * @return the information from the document
+     * @throws TVRenamerIOException if the document could not be read or parsed
+     */
+    static Listings parseListings(final Reader listingsXml, final String description)
+        throws TVRenamerIOException
+    {
+        List<EpisodeInfo> episodeInfos = new ArrayList<>();
+        boolean[] ended = new boolean[1];
         try {
-            dbf = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            logger.log(Level.WARNING, "could not create DocumentBuilder: " + e.getMessage(), e);
+            XmlRecordReader.readRecords(listingsXml, DATA_ELEMENT, LISTINGS_ELEMENTS, LISTINGS_FIELDS,
+                                        (recordType, values) -> {
+                                            if (recordType == LISTINGS_EPISODE) {
+                                                episodeInfos.add(createEpisodeInfo(values));
+                                            } else if (recordType == LISTINGS_SERIES) {
+                                                ended[0] = SERIES_ENDED
+                                                    .equals(values[SERIES_STATUS_FIELD]);
+                                            }
+                                        });
+        } catch (XMLStreamException e) {
+            Throwable nested = e.getNestedException();
+            if (nested instanceof IOException) {
+                logger.log(Level.WARNING, nested.getMessage(), nested);
+                throw new TVRenamerIOException(DOWNLOADING_FAILED_MESSAGE, nested);
+            }
+            logger.log(Level.WARNING, "exception parsing episodes for " + description + ": "
+                       + e.getMessage(), e);
             throw new TVRenamerIOException(ERROR_PARSING_XML, e);
         }
+        return new Listings(episodeInfos.toArray(new EpisodeInfo[episodeInfos.size()]), ended[0]);
+    }
+
+    private static long listingsTimeToLive(final Listings listings) {
+        return listings.ended ? ENDED_LISTINGS_TTL_MILLIS : CONTINUING_LISTINGS_TTL_MILLIS;
+    }
 
+    /**
+     * Fills in the episodes of the given Series from the listings store, if
+     * they are there, without going to the provider.  Does not notify the
+     * Series' listeners.
+     *
+     * @param series
+     *   the Series to fill in
+     * @return NOT_FOUND if the listings must be downloaded; CURRENT if the
+     *   stored listings can be used as they are; or EXPIRED if they can be
+     *   used for now, but should be downloaded again
+     */
+    public static ListingsStore.LoadResult loadStoredListings(final Series series) {
+        if (refreshCache) {
+            return ListingsStore.LoadResult.NOT_FOUND;
+        }
+        return STORE.load(series);
+    }
+
+    private static Listings fetchListings(final Series series)
+        throws TVRenamerIOException
+    {
+        String seriesURL = siteUrl + LIST_PATH + series.getId() + BASE_LIST_FILENAME;
         try {
-            String listingsXml = getSeriesListingXml(series);
-            InputSource listingsXmlSource = new InputSource(new StringReader(listingsXml));
-            Document doc = dbf.parse(listingsXmlSource);
-            episodeList = nodeListValue(XPATH_EPISODE_LIST, doc);
-        } catch (XPathExpressionException | SAXException | DOMException e) {
-            logger.log(Level.WARNING, "exception parsing episodes for " + series + ": "
-                       + e.getMessage(), e);
-            throw new TVRenamerIOException(ERROR_PARSING_XML, e);
+            return fetchDocument(seriesURL,
+                                 document -> parseListings(document, series.toString()),
+                                 TheTVDBProvider::listingsTimeToLive);
         } catch (NumberFormatException nfe) {
             logger.log(Level.WARNING, nfe.getMessage(), nfe);
             throw new TVRenamerIOException(ERROR_PARSING_NUMBERS, nfe);
         } catch (IOException ioe) {
-            logger.log(Level.WARNING, ioe.getMessage(), ioe);
+            logger.warning(ioe.getMessage());
             throw new TVRenamerIOException(DOWNLOADING_FAILED_MESSAGE, ioe);
         }
-        return episodeList;
     }
 
     /**
-     * Fetch the episode listings from the provider, for the given Series.
+     * Fetch the episode listings from the provider, for the given Series, which
+     * does not have any episodes yet, and notify its listeners.  The listings
+     * are saved in the listings store.
      *
      * @param series
      *   the Series to fetch the episode listings for
@@ -244,28 +447,63 @@ public class TheTVDBProvider {
      *   network difficulties, difficulty parsing the XML, or problems parsing
      *   data expected to be numeric.
      */
-    public static void getSeriesListing(final Series series)
+    public static void downloadSeriesListing(final Series series)
         throws TVRenamerIOException
     {
-        try {
-            NodeList episodes = getEpisodeList(series);
-            int episodeCount = episodes.getLength();
+        Listings listings = fetchListings(series);
+        series.addEpisodeInfos(listings.episodes);
+        STORE.save(series, listingsTimeToLive(listings));
+        series.listingsSucceeded();
+    }
 
-            EpisodeInfo[] episodeInfos = new EpisodeInfo[episodeCount];
-            for (int i = 0; i < episodeCount; i++) {
-                episodeInfos[i] = createEpisodeInfo(episodes.item(i));
+    /**
+     * Fetch the episode listings from the provider again, for a Series that
+     * already has episodes, and replace its episodes with the new ones.  Does
+     * not notify the Series' listeners.
+     *
+     * @param series
+     *   the Series to fetch the episode listings for
+     * @return the placements of the episodes that changed; see
+     *   {@link Series#replaceEpisodeInfos}
+     * @throws TVRenamerIOException if anything goes wrong; the Series keeps
+     *   the episodes it had
+     */
+    public static Set<EpisodePlacement> refreshSeriesListing(final Series series)
+        throws TVRenamerIOException
+    {
+        Listings listings = fetchListings(series);
+        Set<EpisodePlacement> changed = series.replaceEpisodeInfos(listings.episodes);
+        STORE.save(series, listingsTimeToLive(listings));
+        return changed;
+    }
+
+    /**
+     * Fetch the episode listings for the given Series, and notify its listeners.
+     * If the episodes are in the listings store, they are loaded from there
+     * instead; if the stored episodes have expired, they are downloaded again
+     * before the listeners are notified, and used only if that fails.
+     *
+     * @param series
+     *   the Series to fetch the episode listings for
+     * @throws TVRenamerIOException if anything goes wrong; this could include
+     *   network difficulties, difficulty parsing the XML, or problems parsing
+     *   data expected to be numeric.
+     */
+    public static void getSeriesListing(final Series series)
+        throws TVRenamerIOException
+    {
+        ListingsStore.LoadResult stored = loadStoredListings(series);
+        if (stored == ListingsStore.LoadResult.NOT_FOUND) {
+            downloadSeriesListing(series);
+            return;
+        }
+        if (stored == ListingsStore.LoadResult.EXPIRED) {
+            try {
+                refreshSeriesListing(series);
+            } catch (TVRenamerIOException e) {
+                logger.info("using expired listings of " + series.getName() + ": " + e.getMessage());
             }
-            series.addEpisodeInfos(episodeInfos);
-            series.listingsSucceeded();
-        } catch (DOMException dom) {
-            logger.log(Level.WARNING, dom.getMessage(), dom);
-            throw new TVRenamerIOException(ERROR_PARSING_XML, dom);
-        } catch (NumberFormatException nfe) {
-            logger.log(Level.WARNING, nfe.getMessage(), nfe);
-            throw new TVRenamerIOException(ERROR_PARSING_NUMBERS, nfe);
-        } catch (IOException ioe) {
-            logger.warning(ioe.getMessage());
-            throw new TVRenamerIOException(DOWNLOADING_FAILED_MESSAGE, ioe);
         }
+        series.listingsSucceeded();
     }
 }
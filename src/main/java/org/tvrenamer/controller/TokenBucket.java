@@ -0,0 +1,81 @@
+package org.tvrenamer.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token-bucket rate limiter.  The bucket holds up to a given number of
+ * tokens, and is refilled at a steady rate; each request takes one token.
+ * A burst of requests, up to the size of the bucket, can go at once, but
+ * after that, they go no faster than the refill rate.<p>
+ *
+ * A request that finds the bucket empty reserves the next token anyway, and
+ * waits until it would have been added; so requests are served in the order
+ * they arrive, and a waiting request never holds the lock.<p>
+ *
+ * Access is synchronized; the work done under the lock is a few arithmetic
+ * operations.
+ */
+final class TokenBucket {
+    private final double capacity;
+    private final double nanosPerToken;
+    private final LongSupplier nanoTime;
+
+    // The number of tokens in the bucket at lastRefill.  Negative when requests
+    // have reserved tokens that haven't been added yet.
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param capacity
+     *    the most tokens the bucket holds; that is, the largest burst
+     * @param tokensPerSecond
+     *    the rate at which tokens are added
+     * @param nanoTime
+     *    the source of the current time, in nanoseconds, such as System::nanoTime
+     */
+    TokenBucket(final int capacity, final double tokensPerSecond, final LongSupplier nanoTime) {
+        if ((capacity < 1) || !(tokensPerSecond > 0.0)) {
+            throw new IllegalArgumentException("token bucket needs a positive size and rate");
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * Takes a token, if one is available now, or reserves the next one.
+     *
+     * @return how long the caller must wait, in nanoseconds, before its token
+     *    is available; 0 if it can go right away
+     */
+    synchronized long reserve() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + ((now - lastRefill) / nanosPerToken));
+        lastRefill = now;
+        tokens -= 1.0;
+        if (tokens >= 0.0) {
+            return 0L;
+        }
+        return (long) Math.ceil(-tokens * nanosPerToken);
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     *
+     * @return how long the caller waited, in nanoseconds
+     * @throws InterruptedException
+     *    if the thread is interrupted while it waits; the token is not given back
+     */
+    long acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0L) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return wait;
+    }
+}
@@ -0,0 +1,175 @@
+package org.tvrenamer.controller.util;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A Reader which does what {@link StringUtils#encodeSpecialCharacters} does, as
+ * the text is read, rather than to a String containing all of it.<p>
+ *
+ * The documents we get from the provider can be large, and we only need to
+ * read through them once, to parse them.  Putting this between the HTTP
+ * response and the XML parser means we don't need to have the whole document
+ * in memory, twice, before we start parsing it; only a buffer's worth.<p>
+ *
+ * Like encodeSpecialCharacters, it replaces "&amp; " with "&amp;amp; ", and,
+ * unless the text starts with an XML declaration, replaces every space with
+ * "%20".  The text read through this Reader is always exactly what
+ * encodeSpecialCharacters would return for the whole of the underlying text.<p>
+ *
+ * Mark and reset are not supported.
+ */
+public class SpecialCharacterEncodingReader extends FilterReader {
+
+    private static final String XML_DECLARATION = "<?xml";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+    private boolean started = false;
+    private boolean encodeSpaces = false;
+
+    // Text that has been produced, but that didn't fit in the caller's array.
+    private String pending = null;
+    private int pendingPosition = 0;
+
+    /**
+     * Creates a Reader which encodes the text of the given Reader.
+     *
+     * @param in
+     *    the Reader providing the unencoded text
+     */
+    public SpecialCharacterEncodingReader(final Reader in) {
+        super(in);
+    }
+
+    /*
+     * Reads the first few characters, to find out whether the text is an XML
+     * document.  That decides whether we encode spaces.
+     */
+    private void start() throws IOException {
+        while (!endOfInput && (limit < XML_DECLARATION.length())) {
+            int count = in.read(buffer, limit, BUFFER_SIZE - limit);
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                limit += count;
+            }
+        }
+        encodeSpaces = !new String(buffer, 0, limit).startsWith(XML_DECLARATION);
+        started = true;
+    }
+
+    /*
+     * Refills the (empty) buffer.  Returns false at the end of the text.
+     */
+    private boolean fill() throws IOException {
+        position = 0;
+        limit = 0;
+        while (!endOfInput && (limit == 0)) {
+            int count = in.read(buffer, 0, BUFFER_SIZE);
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                limit = count;
+            }
+        }
+        return limit > 0;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if ((off < 0) || (len < 0) || (len > cbuf.length - off)) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!started) {
+            start();
+        }
+        int count = 0;
+        while (count < len) {
+            if (pending != null) {
+                cbuf[off + count++] = pending.charAt(pendingPosition++);
+                if (pendingPosition == pending.length()) {
+                    pending = null;
+                }
+                continue;
+            }
+            if (position == limit) {
+                // Return what we have, rather than wait for more.
+                if ((count > 0) || !fill()) {
+                    break;
+                }
+            }
+            char c = buffer[position++];
+            if (c == '&') {
+                if ((position < limit) || fill()) {
+                    if (buffer[position] == ' ') {
+                        position++;
+                        setPending(encodeSpaces ? "amp;%20" : "amp; ");
+                    }
+                }
+            } else if ((c == ' ') && encodeSpaces) {
+                c = '%';
+                setPending("20");
+            }
+            cbuf[off + count++] = c;
+        }
+        return (count == 0) ? -1 : count;
+    }
+
+    private void setPending(final String text) {
+        pending = text;
+        pendingPosition = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] one = new char[1];
+        int count = read(one, 0, 1);
+        return (count < 0) ? -1 : one[0];
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n < 0L) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        char[] skipped = new char[(int) Math.min(n, BUFFER_SIZE)];
+        long remaining = n;
+        while (remaining > 0) {
+            int count = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (count < 0) {
+                break;
+            }
+            remaining -= count;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return (pending != null) || (position < limit) || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+}
@@ -37,6 +37,12 @@ public class StringUtils {
         });
     public static final Set<Character> ILLEGAL_CHARACTERS = SANITISE.keySet();
 
+    // The same information as SANITISE, indexed by the character, so that
+    // checking a character doesn't need to box it and look it up.  All the
+    // illegal characters are ASCII, so anything past the end of the table is
+    // legal.  A null entry means the character is legal.
+    private static final String[] SANITISE_TABLE = makeSanitiseTable(SANITISE);
+
     private static final ThreadLocal<DecimalFormat> DIGITS =
         new ThreadLocal<DecimalFormat>() {
             @Override
@@ -232,6 +238,26 @@ public class StringUtils {
         return original.substring(start, end);
     }
 
+    private static String[] makeSanitiseTable(final Map<Character, String> sanitise) {
+        int size = 0;
+        for (char c : sanitise.keySet()) {
+            size = Math.max(size, c + 1);
+        }
+        String[] table = new String[size];
+        for (Map.Entry<Character, String> entry : sanitise.entrySet()) {
+            table[entry.getKey()] = entry.getValue();
+        }
+        return table;
+    }
+
+    /*
+     * Returns what the given character should be replaced with in a filename,
+     * or null if it's legal.
+     */
+    private static String replacementFor(final char c) {
+        return (c < SANITISE_TABLE.length) ? SANITISE_TABLE[c] : null;
+    }
+
     /**
      * Return whether or not the given character is legal in filenames.
      *
@@ -239,7 +265,7 @@ public class StringUtils {
      * @return true if the character is ok to include in filenames, false if it is not
      */
     public static boolean isLegalFilenameCharacter(final char ch) {
-        return !ILLEGAL_CHARACTERS.contains(ch);
+        return replacementFor(ch) == null;
     }
 
     /**
@@ -266,10 +292,22 @@ public class StringUtils {
      *    which contains no illegal characters
      */
     private static String replaceIllegalCharacters(final String title, final int start, final int end) {
-        StringBuilder sanitised = new StringBuilder(end + 1);
-        for (int i = start; i <= end; i++) {
+        int i = start;
+        while ((i <= end) && (replacementFor(title.charAt(i)) == null)) {
+            i++;
+        }
+        if (i > end) {
+            // Nothing to replace; usually, there's nothing to strip away, either.
+            if ((start == 0) && (end == title.length() - 1)) {
+                return title;
+            }
+            return title.substring(start, end + 1);
+        }
+        StringBuilder sanitised = new StringBuilder(end - start + 1);
+        sanitised.append(title, start, i);
+        for (; i <= end; i++) {
             char c = title.charAt(i);
-            String replace = SANITISE.get(c);
+            String replace = replacementFor(c);
             if (replace == null) {
                 sanitised.append(c);
             } else {
@@ -290,6 +328,9 @@ public class StringUtils {
      * How illegal characters are handled actually depends on the particular character.  Some are
      * simply stripped away, others are replaced with a hyphen or apostrophe.<p>
      *
+     * Most strings have no illegal characters at all; for those, the original string is returned,
+     * and nothing is allocated.
+     *
      * @param title the original string, which may contain illegal characters
      * @return a version of the original string which contains no illegal characters
      */
@@ -368,6 +409,100 @@ public class StringUtils {
         return status;
     }
 
+    // The regular expressions in replacePunctuationWithRegex use the ASCII
+    // character classes: \p{Lower}, \p{Upper} and \p{Digit}, and \s and \D.
+    private static boolean isAsciiLower(final char c) {
+        return (c >= 'a') && (c <= 'z');
+    }
+
+    private static boolean isAsciiUpper(final char c) {
+        return (c >= 'A') && (c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(final char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static boolean isRegexWhitespace(final char c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000B')
+            || (c == '\f') || (c == '\r');
+    }
+
+    // [\S&&\D]
+    private static boolean isNonSpaceNonDigit(final char c) {
+        return !isRegexWhitespace(c) && !isAsciiDigit(c);
+    }
+
+    // [-._!?$\[:,;\\#%=@`"\]}{~><^/+|*]
+    private static boolean isReplacedPunctuation(final char c) {
+        switch (c) {
+            case '-': case '.': case '_': case '!': case '?': case '$': case '[':
+            case ':': case ',': case ';': case '\\': case '#': case '%': case '=':
+            case '@': case '`': case '"': case ']': case '}': case '{': case '~':
+            case '>': case '<': case '^': case '/': case '+': case '|': case '*':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * The hand-written version of replacePunctuation doesn't deal with line
+     * terminators, which affect what "$" matches, or with surrogate pairs, which
+     * the regular expressions treat as a single character.  Show names should
+     * never contain either.
+     */
+    private static boolean canReplacePunctuationDirectly(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028')
+                || (c == '\u2029') || Character.isSurrogate(c))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Appends a character to the output of the first pass of replacePunctuation,
+     * with a space before it if it starts a new word: "(\p{Lower})([\p{Upper}\p{Digit}])"
+     * and "(\p{Digit})([\p{Upper}])".
+     */
+    private static int appendSplittingWords(final char[] out, final int length, final char c) {
+        int m = length;
+        if (m > 0) {
+            char prev = out[m - 1];
+            if ((isAsciiLower(prev) && (isAsciiUpper(c) || isAsciiDigit(c)))
+                || (isAsciiDigit(prev) && isAsciiUpper(c)))
+            {
+                out[m++] = ' ';
+            }
+        }
+        out[m++] = c;
+        return m;
+    }
+
+    /*
+     * "(?<=(^|[. ])[\S&&\D])[.](?=[\S&&\D]([.]|$))": a dot between two single
+     * characters which are not spaces or digits, where the one before is at the
+     * start or follows a dot or space, and the one after is at the end or is
+     * followed by a dot.  For example, the dots in "S.H.I.E.L.D.", but not the
+     * last one.
+     */
+    private static boolean isAcronymDot(final char[] text, final int length, final int i) {
+        if ((i < 1) || !isNonSpaceNonDigit(text[i - 1])) {
+            return false;
+        }
+        if ((i >= 2) && (text[i - 2] != '.') && (text[i - 2] != ' ')) {
+            return false;
+        }
+        if ((i + 1 >= length) || !isNonSpaceNonDigit(text[i + 1])) {
+            return false;
+        }
+        return (i + 2 == length) || (text[i + 2] == '.');
+    }
+
     /**
      * Transforms a substring from a filename into something more like what a person
      * would type.<p>
@@ -383,6 +518,17 @@ public class StringUtils {
      * Perhaps the best way to understand what this does, and what it tries to do,
      * is to look at testReplacePunctuation() in StringUtilsTest.java.<p>
      *
+     * The transformation is defined by {@link #replacePunctuationWithRegex}, a
+     * series of regular expression replacements.  This method does the same thing
+     * without regular expressions: a first pass over the string does the
+     * character-level edits (apostrophes, hyphens, splitting words), and a second
+     * pass, which needs to see a couple of characters on either side, condenses
+     * acronyms, replaces punctuation with spaces, and collapses whitespace.  The
+     * regular expressions only consider ASCII letters and digits, so this does
+     * too.  Strings containing line terminators or surrogate pairs, where the
+     * regular expressions have subtle rules of their own, are handed to the
+     * regular expressions.<p>
+     *
      * @param s
      *   a String, presumably representing the part of a filename that we have identified as
      *   naming a show
@@ -390,6 +536,84 @@ public class StringUtils {
      *   a version of the string that is (we hope) much more suitable for feeding to a query API
      */
     public static String replacePunctuation(String s) {
+        if (!canReplacePunctuationDirectly(s)) {
+            return replacePunctuationWithRegex(s);
+        }
+        final boolean allLower = isLowerCaseWithHyphens(s);
+        final int length = s.length();
+
+        // The apostrophes are removed before anything else looks at the string.
+        char[] text = new char[length];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c != '\'') {
+                text[n++] = c;
+            }
+        }
+
+        // First pass: a hyphen between two lower-case letters becomes a space or
+        // disappears (once the letters after a hyphen have been used, they don't
+        // start another match); then a space goes between a lower-case letter
+        // and a capital or digit ("CamelCaps"), and between a digit and a capital
+        // ("30Rock").
+        char[] split = new char[n * 2];
+        int m = 0;
+        int i = 0;
+        while (i < n) {
+            char c = text[i];
+            m = appendSplittingWords(split, m, c);
+            if (isAsciiLower(c) && (i + 2 < n) && (text[i + 1] == '-') && isAsciiLower(text[i + 2])) {
+                if (allLower) {
+                    split[m++] = ' ';
+                }
+                m = appendSplittingWords(split, m, text[i + 2]);
+                i += 3;
+            } else {
+                i++;
+            }
+        }
+
+        // Second pass: condense acronyms, replace punctuation with spaces,
+        // collapse runs of spaces, and trim.
+        StringBuilder rval = new StringBuilder(m);
+        for (int j = 0; j < m; j++) {
+            char c = split[j];
+            if ((c == '.') && isAcronymDot(split, m, j)) {
+                continue;
+            }
+            if (isReplacedPunctuation(c)) {
+                c = ' ';
+            }
+            if ((c == ' ') && (rval.length() > 0) && (rval.charAt(rval.length() - 1) == ' ')) {
+                continue;
+            }
+            rval.append(c);
+        }
+        int start = 0;
+        int end = rval.length();
+        while ((start < end) && (rval.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (rval.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        return rval.substring(start, end);
+    }
+
+    /**
+     * The original implementation of {@link #replacePunctuation}, as a series of
+     * regular expression replacements.  It defines what replacePunctuation does,
+     * and is still used for the (unusual) strings that the hand-written version
+     * doesn't handle.
+     *
+     * @param s
+     *   a String, presumably representing the part of a filename that we have identified as
+     *   naming a show
+     * @return
+     *   a version of the string that is (we hope) much more suitable for feeding to a query API
+     */
+    static String replacePunctuationWithRegex(String s) {
         String rval = s;
 
         // The apostrophe is kind of unique, because it's usually found within a word, including
@@ -0,0 +1,193 @@
+package org.tvrenamer.controller.util;
+
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads "records" out of an XML document, in a single pass, without building
+ * a DOM.<p>
+ *
+ * The documents we get from the provider are flat: the root element contains
+ * a sequence of elements, each of which describes one thing (a series, or an
+ * episode), by way of child elements containing text.  For example:
+ * <pre>
+ *   &lt;Data&gt;
+ *     &lt;Episode&gt;
+ *       &lt;id&gt;12345&lt;/id&gt;
+ *       &lt;EpisodeName&gt;Pilot&lt;/EpisodeName&gt;
+ *       ...
+ *     &lt;/Episode&gt;
+ *     ...
+ *   &lt;/Data&gt;
+ * </pre>
+ *
+ * Given the name of the root element, the name of the record elements, and the
+ * names of the fields we're interested in, this finds the same values as the
+ * XPath expressions "/Data/Episode", and then "id" and "EpisodeName" relative
+ * to each episode, would find: the text content of the first child element
+ * with each name, or null if there is no such element.  A document may
+ * contain more than one kind of record; for example, the listings document
+ * has one "Series" record, describing the series as a whole, followed by the
+ * "Episode" records.<p>
+ *
+ * This class is thread-safe.
+ */
+public final class XmlRecordReader {
+
+    // XMLInputFactory is not specified to be thread-safe, so each thread gets its own.
+    private static final ThreadLocal<XMLInputFactory> FACTORY =
+        new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                // Match the DocumentBuilder we used to use, which was not namespace-aware.
+                factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+                return factory;
+            }
+        };
+
+    /**
+     * Receives the records read from a document that has more than one kind.
+     */
+    public interface RecordHandler {
+        /**
+         * Called for each record, as soon as the end of the record has been read.
+         *
+         * @param recordType
+         *    the index of the record's name, in the array of record names
+         * @param values
+         *    the text of each field, parallel to the array of field names for this
+         *    kind of record, or null for fields that the record doesn't have; each
+         *    record gets a new array
+         */
+        void record(int recordType, String[] values);
+    }
+
+    private XmlRecordReader() {
+        // not instantiable
+    }
+
+    private static int indexOf(final String[] names, final String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the document, and passes the fields of each record to the handler,
+     * as soon as the end of the record has been read.
+     *
+     * @param xml
+     *    a Reader for the XML document; it is not closed
+     * @param rootName
+     *    the name of the document's root element; if the root element has
+     *    a different name, there are no records
+     * @param recordName
+     *    the name of the record elements, which are children of the root element
+     * @param fieldNames
+     *    the names of the fields to extract from each record
+     * @param handler
+     *    receives, for each record, an array parallel to fieldNames, holding the
+     *    text of each field, or null for fields that the record doesn't have;
+     *    each record gets a new array
+     * @throws XMLStreamException
+     *    if the document could not be read or is not well-formed
+     */
+    public static void readRecords(final Reader xml, final String rootName,
+                                   final String recordName, final String[] fieldNames,
+                                   final Consumer<String[]> handler)
+        throws XMLStreamException
+    {
+        readRecords(xml, rootName, new String[] { recordName }, new String[][] { fieldNames },
+                    (recordType, values) -> handler.accept(values));
+    }
+
+    /**
+     * Reads the document, and passes the fields of each record, of any of the
+     * given kinds, to the handler, as soon as the end of the record has been read.
+     *
+     * @param xml
+     *    a Reader for the XML document; it is not closed
+     * @param rootName
+     *    the name of the document's root element; if the root element has
+     *    a different name, there are no records
+     * @param recordNames
+     *    the names of the kinds of record elements, which are children of the
+     *    root element
+     * @param fieldNames
+     *    for each kind of record, the names of the fields to extract
+     * @param handler
+     *    receives each record
+     * @throws XMLStreamException
+     *    if the document could not be read or is not well-formed
+     */
+    public static void readRecords(final Reader xml, final String rootName,
+                                   final String[] recordNames, final String[][] fieldNames,
+                                   final RecordHandler handler)
+        throws XMLStreamException
+    {
+        XMLStreamReader reader = FACTORY.get().createXMLStreamReader(xml);
+        try {
+            int depth = 0;
+            boolean inRoot = false;
+            // The kind of the current record, and its values; values is null when
+            // not inside a record.
+            int recordType = -1;
+            String[] values = null;
+            // The index of the field being read, or -1 if we're not inside a field.
+            int field = -1;
+            StringBuilder text = new StringBuilder();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 1) {
+                            inRoot = rootName.equals(reader.getLocalName());
+                        } else if ((depth == 2) && inRoot) {
+                            recordType = indexOf(recordNames, reader.getLocalName());
+                            if (recordType >= 0) {
+                                values = new String[fieldNames[recordType].length];
+                            }
+                        } else if ((depth == 3) && (values != null)) {
+                            int index = indexOf(fieldNames[recordType], reader.getLocalName());
+                            if ((index >= 0) && (values[index] == null)) {
+                                field = index;
+                                text.setLength(0);
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (field >= 0) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(),
+                                        reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if ((depth == 3) && (field >= 0)) {
+                            values[field] = text.toString();
+                            field = -1;
+                        } else if ((depth == 2) && (values != null)) {
+                            handler.record(recordType, values);
+                            values = null;
+                        }
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.tvrenamer.controller.util.StringUtils;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Objects;
 import java.util.logging.Logger;
 
 public class Episode {
@@ -72,6 +73,31 @@ public class Episode {
         }
     }
 
+    /**
+     * Constructs an Episode from information that has already been checked and
+     * converted, such as an Episode that was stored by {@link ListingsStore}.
+     *
+     * @param episodeId
+     *   the provider's ID for the episode
+     * @param title
+     *   the title of the episode
+     * @param airDateString
+     *   the date the episode first aired, as given by the provider
+     * @param airPlacement
+     *   the episode's placement in the over-the-air ordering, or null
+     * @param dvdPlacement
+     *   the episode's placement in the DVD ordering, or null
+     */
+    Episode(final String episodeId, final String title, final String airDateString,
+            final EpisodePlacement airPlacement, final EpisodePlacement dvdPlacement)
+    {
+        this.episodeId = episodeId;
+        this.title = title;
+        this.airDateString = airDateString;
+        this.airPlacement = airPlacement;
+        this.dvdPlacement = dvdPlacement;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -80,6 +106,11 @@ public class Episode {
         return episodeId;
     }
 
+    // "Package-private".  The air date as given by the provider, unparsed.
+    String getAirDateString() {
+        return airDateString;
+    }
+
     /**
      * Gets the air date of this episode.<p>
      *
@@ -169,6 +200,22 @@ public class Episode {
         }
     }
 
+    /**
+     * Finds out whether the given Episode has the same information as this one:
+     * the same title, air date and placements.
+     *
+     * @param other
+     *    another version of this episode, such as from a newer download of
+     *    the listings
+     * @return true if the two would be renamed the same way; false otherwise
+     */
+    boolean sameListing(final Episode other) {
+        return Objects.equals(title, other.title)
+            && Objects.equals(airDateString, other.airDateString)
+            && Objects.equals(airPlacement, other.airPlacement)
+            && Objects.equals(dvdPlacement, other.dvdPlacement);
+    }
+
     /**
      * Standard object method to represent this Episode as a String.
      *
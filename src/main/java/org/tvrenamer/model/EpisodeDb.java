@@ -1,6 +1,8 @@
 package org.tvrenamer.model;
 
 import org.tvrenamer.controller.AddEpisodeListener;
+import org.tvrenamer.controller.FilenameParser;
+import org.tvrenamer.controller.ParsedFilename;
 import org.tvrenamer.controller.util.FileUtilities;
 
 import java.io.IOException;
@@ -8,11 +10,14 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
@@ -38,17 +43,33 @@ public class EpisodeDb implements Observer {
         return null;
     }
 
-    private FileEpisode add(final String pathname) {
-        Path path = Paths.get(pathname);
-        final FileEpisode episode = new FileEpisode(path);
-        episode.setIgnoreReason(ignorableReason(pathname));
-        if (!episode.wasParsed()) {
-            // We're putting the episode in the table anyway, but it's
-            // not much use.  TODO: make better use of it.
-            logger.warning("Couldn't parse file: " + pathname);
+    /**
+     * Create FileEpisodes for the given files, and add them to the database and
+     * to the given queue.<p>
+     *
+     * The filenames are all parsed up front, in parallel, before any FileEpisode
+     * is created.
+     *
+     * @param contents
+     *    the queue to add the new FileEpisodes to
+     * @param paths
+     *    the absolute paths of the files to add, none of which is in the database
+     */
+    private void addAll(final Queue<FileEpisode> contents, final List<Path> paths) {
+        final List<ParsedFilename> parsed = FilenameParser.parseAll(paths);
+        for (int i = 0; i < paths.size(); i++) {
+            final Path path = paths.get(i);
+            final String pathname = path.toString();
+            final FileEpisode episode = new FileEpisode(path, parsed.get(i));
+            episode.setIgnoreReason(ignorableReason(pathname));
+            if (!episode.wasParsed()) {
+                // We're putting the episode in the table anyway, but it's
+                // not much use.  TODO: make better use of it.
+                logger.warning("Couldn't parse file: " + pathname);
+            }
+            episodes.put(pathname, episode);
+            contents.add(episode);
         }
-        episodes.put(pathname, episode);
-        return episode;
     }
 
     /**
@@ -148,28 +169,25 @@ public class EpisodeDb implements Observer {
         }
     }
 
-    private void addFileToQueue(final Queue<FileEpisode> contents,
+    private void addFileToQueue(final Set<Path> toAdd,
                                 final Path path)
     {
         final Path absPath = path.toAbsolutePath();
         final String key = absPath.toString();
-        if (episodes.containsKey(key)) {
+        if (episodes.containsKey(key) || !toAdd.add(absPath)) {
             logger.info("already in table: " + key);
-        } else {
-            FileEpisode ep = add(key);
-            contents.add(ep);
         }
     }
 
-    private void addFileIfVisible(final Queue<FileEpisode> contents,
+    private void addFileIfVisible(final Set<Path> toAdd,
                                   final Path path)
     {
         if (fileIsVisible(path) && Files.isRegularFile(path)) {
-            addFileToQueue(contents, path);
+            addFileToQueue(toAdd, path);
         }
     }
 
-    private void addFilesRecursively(final Queue<FileEpisode> contents,
+    private void addFilesRecursively(final Set<Path> toAdd,
                                      final Path parent,
                                      final Path filename)
     {
@@ -187,7 +205,7 @@ public class EpisodeDb implements Observer {
                 try (DirectoryStream<Path> files = Files.newDirectoryStream(fullpath)) {
                     if (files != null) {
                         // recursive call
-                        files.forEach(pth -> addFilesRecursively(contents,
+                        files.forEach(pth -> addFilesRecursively(toAdd,
                                                                  fullpath,
                                                                  pth.getFileName()));
                     }
@@ -195,11 +213,24 @@ public class EpisodeDb implements Observer {
                     logger.warning("IO Exception descending " + fullpath);
                 }
             } else {
-                addFileToQueue(contents, fullpath);
+                addFileToQueue(toAdd, fullpath);
             }
         }
     }
 
+    /**
+     * Create the episodes for all the files that were found, and notify the
+     * listeners.
+     *
+     * @param toAdd
+     *    the absolute paths of the files to add
+     */
+    private void addAndPublish(final Set<Path> toAdd) {
+        Queue<FileEpisode> contents = new ConcurrentLinkedQueue<>();
+        addAll(contents, new ArrayList<>(toAdd));
+        publish(contents);
+    }
+
     /**
      * Add the given folder to the queue.  This is intended to support the
      * "Add Folder" functionality.  This method itself does only sanity
@@ -219,10 +250,10 @@ public class EpisodeDb implements Observer {
             return;
         }
 
-        Queue<FileEpisode> contents = new ConcurrentLinkedQueue<>();
+        Set<Path> toAdd = new LinkedHashSet<>();
         final Path path = Paths.get(pathname);
-        addFilesRecursively(contents, path.getParent(), path.getFileName());
-        publish(contents);
+        addFilesRecursively(toAdd, path.getParent(), path.getFileName());
+        addAndPublish(toAdd);
     }
 
     /**
@@ -234,16 +265,16 @@ public class EpisodeDb implements Observer {
      * @param fileNames an array of Strings presumed to represent filenames
      */
     public void addFilesToQueue(final String pathPrefix, String[] fileNames) {
-        Queue<FileEpisode> contents = new ConcurrentLinkedQueue<>();
         if (pathPrefix != null) {
+            Set<Path> toAdd = new LinkedHashSet<>();
             Path path = Paths.get(pathPrefix);
             Path parent = path.getParent();
 
             for (String fileName : fileNames) {
                 path = parent.resolve(fileName);
-                addFileIfVisible(contents, path);
+                addFileIfVisible(toAdd, path);
             }
-            publish(contents);
+            addAndPublish(toAdd);
         }
     }
 
@@ -254,17 +285,17 @@ public class EpisodeDb implements Observer {
      * @param fileNames an array of Strings presumed to represent filenames
      */
     public void addArrayOfStringsToQueue(final String[] fileNames) {
-        Queue<FileEpisode> contents = new ConcurrentLinkedQueue<>();
+        Set<Path> toAdd = new LinkedHashSet<>();
         boolean descend = prefs.isRecursivelyAddFolders();
         for (final String fileName : fileNames) {
             final Path path = Paths.get(fileName);
             if (descend) {
-                addFilesRecursively(contents, path.getParent(), path.getFileName());
+                addFilesRecursively(toAdd, path.getParent(), path.getFileName());
             } else {
-                addFileIfVisible(contents, path);
+                addFileIfVisible(toAdd, path);
             }
         }
-        publish(contents);
+        addAndPublish(toAdd);
     }
 
     /**
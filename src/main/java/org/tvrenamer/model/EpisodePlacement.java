@@ -11,6 +11,23 @@ public class EpisodePlacement {
         this.episode = episode;
     }
 
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof EpisodePlacement)) {
+            return false;
+        }
+        EpisodePlacement that = (EpisodePlacement) other;
+        return (season == that.season) && (episode == that.episode);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * season) + episode;
+    }
+
     @Override
     public String toString() {
         return "S" + StringUtils.zeroPadTwoDigits(season)
@@ -0,0 +1,173 @@
+package org.tvrenamer.model;
+
+import org.tvrenamer.controller.util.StringUtils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Resolves files to episodes with futures, rather than listeners.  The lookups
+ * themselves run on the ShowStore and ListingsLookup threads, as they do for
+ * listeners, and are shared with them; the stages added here run on the
+ * executor the resolver is given.  That way, callers can compose the stages,
+ * and add deadlines, fan-in, or timing, with the usual CompletableFuture
+ * methods.<p>
+ *
+ * The listener API (ShowStore.mapStringToShow, Series.addListingsListener) is
+ * an adapter over the same futures, so the two can be mixed freely.<p>
+ *
+ * Cancelling a future returned from here withdraws the caller's interest in
+ * the lookup it's waiting for, which is called off if no one else is waiting.
+ */
+public final class EpisodeResolver {
+    private static final Logger logger = Logger.getLogger(EpisodeResolver.class.getName());
+
+    private final Executor executor;
+
+    /**
+     * Create a resolver whose stages run on whichever thread completes the
+     * lookup, or on the caller's thread, if the lookup is already done.
+     */
+    public EpisodeResolver() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Create a resolver whose stages run on the given executor.
+     *
+     * @param executor
+     *    the executor to run the stages on
+     */
+    public EpisodeResolver(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("EpisodeResolver needs an executor");
+        }
+        this.executor = executor;
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable failure) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    /*
+     * Gets the exception a stage failed with, without the CompletionException
+     * that CompletableFuture wraps it in.
+     */
+    private static Throwable unwrap(final Throwable failure) {
+        if ((failure instanceof CompletionException) && (failure.getCause() != null)) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+
+    /*
+     * Passes the cancellation of a future on to the one it depends on, which
+     * CompletableFuture doesn't do by itself.
+     */
+    private static <T> CompletableFuture<T> cancelling(final CompletableFuture<T> dependent,
+                                                       final CompletableFuture<?> source)
+    {
+        dependent.whenComplete((result, failure) -> {
+            if (failure instanceof CancellationException) {
+                source.cancel(false);
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Looks up the show that the given show name refers to.
+     *
+     * @param filenameShow
+     *    the name of the show as it appears in the filename
+     * @return a future which completes with the Show; or exceptionally, with a
+     *    ShowNotFoundException, if the provider did not find it, or with a
+     *    DiscontinuedApiException, if the provider's API is gone
+     */
+    public CompletableFuture<Show> resolveShow(final String filenameShow) {
+        if (StringUtils.isBlank(filenameShow)) {
+            return failed(new IllegalArgumentException("no show name to look up"));
+        }
+        CompletableFuture<ShowOption> resolution = ShowStore.resolveShowName(filenameShow);
+        return cancelling(resolution.thenApplyAsync(showOption -> {
+            if (showOption.isFailedShow()) {
+                throw new CompletionException(new ShowNotFoundException(showOption.asFailedShow()));
+            }
+            return showOption.getShowInstance();
+        }, executor), resolution);
+    }
+
+    /**
+     * Gets the listings of the given series, downloading them if necessary.
+     *
+     * @param series
+     *    the series to get the listings of
+     * @return a future which completes with the series, once it has its episodes,
+     *    or exceptionally, if the listings could not be downloaded
+     */
+    public CompletableFuture<Series> listings(final Series series) {
+        CompletableFuture<Series> listings = series.getListings();
+        return cancelling(listings.thenApplyAsync(downloaded -> downloaded, executor), listings);
+    }
+
+    /**
+     * Finds the episode, or episodes, that the given file might be: looks up
+     * its show, and then the show's listings, and updates the FileEpisode's
+     * status with the outcome of each, as ResultsTable does with listeners.
+     *
+     * @param episode
+     *    the FileEpisode to resolve; its filename must have been parsed
+     * @return a future which completes with the FileEpisode, once it has its
+     *    replacement options (see {@link FileEpisode#optionCount}); or
+     *    exceptionally, with the reason it could not get them
+     */
+    public CompletableFuture<FileEpisode> resolveEpisode(final FileEpisode episode) {
+        // The lookup being waited for, which is called off if the result is cancelled.
+        final AtomicReference<CompletableFuture<?>> waitingFor = new AtomicReference<>();
+        CompletableFuture<Show> show = resolveShow(episode.getFilenameShow());
+        waitingFor.set(show);
+        CompletableFuture<FileEpisode> resolved = show
+            .whenComplete((found, failure) -> {
+                Throwable cause = unwrap(failure);
+                if (cause instanceof ShowNotFoundException) {
+                    episode.setFailedShow(((ShowNotFoundException) cause).getFailedShow());
+                } else if (cause instanceof DiscontinuedApiException) {
+                    episode.setApiDiscontinued();
+                } else if ((cause != null) && !(cause instanceof CancellationException)) {
+                    episode.setEpisodeShow(null);
+                }
+            })
+            .thenCompose(found -> {
+                episode.setEpisodeShow(found);
+                if (!found.isValidSeries()) {
+                    logger.fine("no listings to get for " + found);
+                    return CompletableFuture.completedFuture(episode);
+                }
+                CompletableFuture<Series> listings = listings(found.asSeries());
+                waitingFor.set(listings);
+                return listings.handle((series, failure) -> {
+                    if (failure == null) {
+                        episode.listingsComplete();
+                        return episode;
+                    }
+                    Throwable cause = unwrap(failure);
+                    if (!(cause instanceof CancellationException)) {
+                        episode.listingsFailed((cause instanceof Exception) ? (Exception) cause : null);
+                    }
+                    throw new CompletionException(cause);
+                });
+            });
+        resolved.whenComplete((result, failure) -> {
+            if (failure instanceof CancellationException) {
+                waitingFor.get().cancel(false);
+            }
+        });
+        return resolved;
+    }
+}
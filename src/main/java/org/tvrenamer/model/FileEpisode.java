@@ -11,6 +11,7 @@ import static org.tvrenamer.model.ReplacementToken.*;
 import static org.tvrenamer.model.util.Constants.*;
 
 import org.tvrenamer.controller.FilenameParser;
+import org.tvrenamer.controller.ParsedFilename;
 import org.tvrenamer.controller.util.StringUtils;
 
 import java.io.IOException;
@@ -18,7 +19,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
@@ -172,6 +172,22 @@ public class FileEpisode {
      *   the Path of the file this FileEpisode represents
      */
     public FileEpisode(Path p) {
+        this(p, null);
+    }
+
+    /**
+     * Constructor for a FileEpisode whose filename has already been parsed;
+     * takes a Path, and the information extracted from its name.<p>
+     *
+     * This allows the parsing of a large number of files to be done up front,
+     * in parallel, with FilenameParser.parseAll.
+     *
+     * @param p
+     *   the Path of the file this FileEpisode represents
+     * @param parsed
+     *   the result of parsing the file's name; if null, the name is parsed now
+     */
+    public FileEpisode(Path p, ParsedFilename parsed) {
         if (p == null) {
             logger.severe(FILE_EPISODE_NEEDS_PATH);
             throw new IllegalArgumentException(FILE_EPISODE_NEEDS_PATH);
@@ -186,7 +202,11 @@ public class FileEpisode {
         filenameSuffix = StringUtils.getExtension(fileNameString);
         originalBasename = StringUtils.removeLast(fileNameString, filenameSuffix);
         checkFile(true);
-        FilenameParser.parseFilename(this);
+        if (parsed == null) {
+            FilenameParser.parseFilename(this);
+        } else {
+            FilenameParser.applyParsedFilename(this, parsed);
+        }
     }
 
     /**
@@ -260,6 +280,19 @@ public class FileEpisode {
         placement = new EpisodePlacement(seasonNum, episodeNum);
     }
 
+    /**
+     * Sets the season and episode found in the filename, when the parser has
+     * already converted them to numbers.
+     *
+     * @param seasonNum
+     *   the season number, or Show.NO_SEASON
+     * @param episodeNum
+     *   the episode number, or Show.NO_EPISODE
+     */
+    public void setEpisodePlacement(int seasonNum, int episodeNum) {
+        placement = new EpisodePlacement(seasonNum, episodeNum);
+    }
+
     /**
      * Gets the screen resolution found in the filename.<p>
      *
@@ -773,17 +806,13 @@ public class FileEpisode {
         return dest.toString();
     }
 
-    private static String formatDate(final LocalDate date, final String format) {
-        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern(format);
-        return dateFormat.format(date);
-    }
-
     /**
      * Replace the control strings in the replacement template, with the episode information.
      *
      * This method is static to make it obvious that it doesn't rely on any instance variables;
      * since it also does not modify any class variables, it is a pure function, and safe to
-     * call from any context.
+     * call from any context.  (It does cache the compiled form of the template, but that
+     * doesn't affect the result.)
      *
      * @param replacementTemplate
      *     the template provided by the user via the preferences dialog
@@ -809,6 +838,38 @@ public class FileEpisode {
             logger.fine("truncating episode title to " + episodeTitle);
             episodeTitle = episodeTitle.substring(0, MAX_TITLE_LENGTH);
         }
+
+        // Date and times
+        final LocalDate airDate = actualEpisode.getAirDate();
+        if (airDate == null) {
+            logger.log(Level.WARNING, "Episode air date not found for " + showName
+                       + ", " + placement + ", \"" + episodeTitle + "\"");
+        }
+
+        // If the airDate is null, we warn (above) but we go ahead and do the substitution anyway;
+        // if the date is null, we need to replace the control strings with the empty string.
+        String newFilename = RenameTemplate.forMask(replacementTemplate)
+            .render(showName, episodeTitle, placement, resolution, airDate);
+        if (newFilename == null) {
+            newFilename = replaceTokens(replacementTemplate, showName, episodeTitle,
+                                        placement, resolution, airDate);
+        }
+
+        return StringUtils.sanitiseTitle(newFilename);
+    }
+
+    /*
+     * Does the same thing as RenameTemplate.render, with a chain of calls to
+     * replaceAll.  This is how the template has always been filled in, and it's
+     * used for the (unusual) templates and values for which the single pass in
+     * RenameTemplate might not produce exactly the same thing.
+     */
+    @SuppressWarnings("WeakerAccess")
+    static String replaceTokens(final String replacementTemplate,
+                                final String showName, final String episodeTitle,
+                                final EpisodePlacement placement,
+                                final String resolution, final LocalDate airDate)
+    {
         String newFilename = replacementTemplate
             .replaceAll(SEASON_NUM.getToken(),
                         String.valueOf(placement.season))
@@ -827,17 +888,7 @@ public class FileEpisode {
             .replaceAll(EPISODE_RESOLUTION.getToken(),
                         resolution);
 
-        // Date and times
-        final LocalDate airDate = actualEpisode.getAirDate();
-        if (airDate == null) {
-            logger.log(Level.WARNING, "Episode air date not found for " + showName
-                       + ", " + placement + ", \"" + episodeTitle + "\"");
-        }
-        // If the airDate is null, we warn (above) but we go ahead and do the substitution anyway;
-        // if the date is null, we need to replace the control strings with the empty string.
-        newFilename = plugInAirDate(airDate, newFilename);
-
-        return StringUtils.sanitiseTitle(newFilename);
+        return plugInAirDate(airDate, newFilename);
     }
 
     private static String removeTokens(final String orig, final ReplacementToken... tokens) {
@@ -875,17 +926,17 @@ public class FileEpisode {
         } else {
             return template
                 .replaceAll(DATE_DAY_NUM.getToken(),
-                            formatDate(airDate, "d"))
+                            RenameTemplate.DAY_NUM.format(airDate))
                 .replaceAll(DATE_DAY_NUMLZ.getToken(),
-                            formatDate(airDate, "dd"))
+                            RenameTemplate.DAY_NUM_LZ.format(airDate))
                 .replaceAll(DATE_MONTH_NUM.getToken(),
-                            formatDate(airDate, "M"))
+                            RenameTemplate.MONTH_NUM.format(airDate))
                 .replaceAll(DATE_MONTH_NUMLZ.getToken(),
-                            formatDate(airDate, "MM"))
+                            RenameTemplate.MONTH_NUM_LZ.format(airDate))
                 .replaceAll(DATE_YEAR_FULL.getToken(),
-                            formatDate(airDate, "yyyy"))
+                            RenameTemplate.YEAR_FULL.format(airDate))
                 .replaceAll(DATE_YEAR_MIN.getToken(),
-                            formatDate(airDate, "yy"));
+                            RenameTemplate.YEAR_MIN.format(airDate));
         }
     }
 
@@ -0,0 +1,329 @@
+package org.tvrenamer.model;
+
+import org.tvrenamer.controller.util.FileUtilities;
+import org.tvrenamer.model.util.Environment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the episodes of each Show on disk, in a compact binary form, so that
+ * the next time the program runs, the Show can be filled in from the file,
+ * without downloading or parsing the listings.<p>
+ *
+ * There is one file per show, named for the show's ID.  The file is read
+ * through a memory mapping, except on Windows, which won't replace or delete
+ * a file while it's mapped; a mapping lasts until the buffer is garbage
+ * collected, so a show that was loaded couldn't be saved again.  There, the
+ * file is read into memory instead.  Its format, in big-endian order, is:
+ * <pre>
+ *   int     magic number, "TVRL"
+ *   int     format version
+ *   long    time the listings expire, in milliseconds
+ *   string  the show's ID
+ *   int     number of episodes
+ *   for each episode:
+ *     string  episode ID
+ *     string  title
+ *     string  air date, as given by the provider
+ *     int     air season,  int air episode  (NO_PLACEMENT if none)
+ *     int     DVD season,  int DVD episode  (NO_PLACEMENT if none)
+ * </pre>
+ * where a string is an int giving the number of bytes (-1 for null), followed
+ * by the bytes, in UTF-8.<p>
+ *
+ * Listings that have expired are still loaded, but the caller is told that
+ * they have expired.  A file with a different magic number or version is
+ * deleted and ignored, so changing the format only requires changing the
+ * version.  Files are written to a temporary file and moved into place, so a
+ * file is never seen half-written.
+ */
+public final class ListingsStore {
+    private static final Logger logger = Logger.getLogger(ListingsStore.class.getName());
+
+    private static final int MAGIC = 0x5456524c;
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_PLACEMENT = Integer.MIN_VALUE;
+    private static final int NULL_STRING = -1;
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String TEMP_PREFIX = "tmp-";
+
+    /**
+     * The result of trying to load a show's episodes from the store.
+     */
+    public enum LoadResult {
+        /** The store does not have usable listings for the show. */
+        NOT_FOUND,
+        /** The show's episodes were loaded, and have not expired. */
+        CURRENT,
+        /**
+         * The show's episodes were loaded, but they have expired; they can be
+         * used while the listings are downloaded again.
+         */
+        EXPIRED
+    }
+
+    private final Path directory;
+    private final Clock clock;
+    private final boolean mapFiles;
+
+    /**
+     * Creates a store in the given directory.  The directory is created when
+     * the first show is saved.
+     *
+     * @param directory
+     *    the directory to keep the files in
+     * @param clock
+     *    the clock to use to decide whether listings have expired
+     */
+    public ListingsStore(final Path directory, final Clock clock) {
+        this(directory, clock, !Environment.IS_WINDOWS);
+    }
+
+    ListingsStore(final Path directory, final Clock clock, final boolean mapFiles) {
+        this.directory = directory;
+        this.clock = clock;
+        this.mapFiles = mapFiles;
+    }
+
+    private Path showFile(final Show show) {
+        // The ID comes from the provider; make sure it's safe to use as a filename.
+        String id = show.getIdString().replaceAll("[^-0-9A-Za-z]", "_");
+        return directory.resolve(id + FILE_SUFFIX);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value)
+        throws IOException
+    {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writePlacement(final DataOutputStream out,
+                                       final EpisodePlacement placement)
+        throws IOException
+    {
+        if (placement == null) {
+            out.writeInt(NO_PLACEMENT);
+            out.writeInt(NO_PLACEMENT);
+        } else {
+            out.writeInt(placement.season);
+            out.writeInt(placement.episode);
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if ((length < 0) || (length > buffer.remaining())) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static EpisodePlacement readPlacement(final ByteBuffer buffer) {
+        int season = buffer.getInt();
+        int episode = buffer.getInt();
+        if ((season == NO_PLACEMENT) || (episode == NO_PLACEMENT)) {
+            return null;
+        }
+        return new EpisodePlacement(season, episode);
+    }
+
+    /**
+     * Saves the episodes of the given show.
+     *
+     * @param show
+     *    the show whose episodes should be saved
+     * @param timeToLiveMillis
+     *    how long the saved episodes should be used for, from now
+     */
+    public void save(final Show show, final long timeToLiveMillis) {
+        if (!FileUtilities.ensureWritableDirectory(directory)) {
+            return;
+        }
+        Collection<Episode> episodes = show.episodes.values();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, TEMP_PREFIX, FILE_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(temp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(clock.millis() + timeToLiveMillis);
+                writeString(out, show.getIdString());
+                out.writeInt(episodes.size());
+                for (Episode episode : episodes) {
+                    writeString(out, episode.getEpisodeId());
+                    writeString(out, episode.getTitle());
+                    writeString(out, episode.getAirDateString());
+                    writePlacement(out, episode.getEpisodePlacement(false));
+                    writePlacement(out, episode.getEpisodePlacement(true));
+                }
+            }
+            Files.move(temp, showFile(show), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            logger.fine("saved " + episodes.size() + " episodes of " + show.getName());
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.log(Level.INFO, "unable to save listings of " + show.getName(), e);
+            if ((temp != null) && Files.exists(temp)) {
+                FileUtilities.deleteFile(temp);
+            }
+        }
+    }
+
+    /*
+     * Gets the contents of the file, mapped or read into memory.
+     */
+    private ByteBuffer readFile(final FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (mapFiles) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("stored listings file is too big: " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+            // keep reading
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /*
+     * Reads the episodes from the given buffer, which has had its magic number
+     * and version read, or returns null if the buffer does not hold listings
+     * for the show.  Returns the expiry time through the given array.
+     */
+    private List<Episode> readEpisodes(final ByteBuffer buffer, final Show show, final Path file,
+                                       final long[] expires)
+    {
+        expires[0] = buffer.getLong();
+        if (!show.getIdString().equals(readString(buffer))) {
+            logger.warning(file + " is not the listings of " + show.getName());
+            return null;
+        }
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new BufferUnderflowException();
+        }
+        List<Episode> episodes = new ArrayList<>(Math.min(count, buffer.remaining()));
+        for (int i = 0; i < count; i++) {
+            String episodeId = readString(buffer);
+            String title = readString(buffer);
+            String airDate = readString(buffer);
+            EpisodePlacement airPlacement = readPlacement(buffer);
+            EpisodePlacement dvdPlacement = readPlacement(buffer);
+            if (episodeId == null) {
+                throw new BufferUnderflowException();
+            }
+            episodes.add(new Episode(episodeId, title, airDate, airPlacement, dvdPlacement));
+        }
+        return episodes;
+    }
+
+    /**
+     * Fills in the episodes of the given show from the store, if they are there.
+     * If they are, the show's episodes are indexed, and it is ready to use, just
+     * as if its listings had been downloaded.  The episodes are loaded even if
+     * they have expired; the caller decides whether to use them while it
+     * downloads the listings again.
+     *
+     * @param show
+     *    the show to fill in; it should not have any episodes yet
+     * @return NOT_FOUND if the show must be looked up in the usual way; otherwise,
+     *    whether the episodes that were loaded are CURRENT or EXPIRED
+     */
+    public LoadResult load(final Show show) {
+        Path file = showFile(show);
+        if (!Files.exists(file)) {
+            return LoadResult.NOT_FOUND;
+        }
+        List<Episode> episodes = null;
+        boolean otherVersion = false;
+        long[] expires = new long[1];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = readFile(channel);
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION)) {
+                otherVersion = true;
+            } else {
+                episodes = readEpisodes(buffer, show, file, expires);
+            }
+        } catch (IOException | BufferUnderflowException | SecurityException e) {
+            logger.log(Level.INFO, "unable to read stored listings of " + show.getName(), e);
+            return LoadResult.NOT_FOUND;
+        }
+        if (otherVersion) {
+            // Not deleted until it's closed, for Windows' sake.
+            logger.fine("discarding " + file + ", from another version");
+            FileUtilities.deleteFile(file);
+            return LoadResult.NOT_FOUND;
+        }
+        if (episodes == null) {
+            return LoadResult.NOT_FOUND;
+        }
+        show.addEpisodes(episodes);
+        logger.fine("loaded " + episodes.size() + " episodes of " + show.getName());
+        if (expires[0] <= clock.millis()) {
+            logger.fine("stored listings of " + show.getName() + " have expired");
+            return LoadResult.EXPIRED;
+        }
+        return LoadResult.CURRENT;
+    }
+
+    /**
+     * Removes the stored episodes of the given show, if there are any.
+     *
+     * @param show
+     *    the show whose episodes should be removed
+     */
+    public void remove(final Show show) {
+        Path file = showFile(show);
+        if (Files.exists(file)) {
+            FileUtilities.deleteFile(file);
+        }
+    }
+
+    /**
+     * Removes the stored episodes of every show.
+     */
+    public void clear() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                FileUtilities.deleteFile(file);
+            }
+        } catch (IOException | SecurityException e) {
+            logger.log(Level.INFO, "unable to list listings directory " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.tvrenamer.model;
+
+/**
+ * A file's interest in a lookup: the search for a show, or the download of a
+ * series's listings.  Each file waiting for a lookup holds an interest in it,
+ * and withdraws it when the file no longer needs the result, for example,
+ * when its row is removed from the table.  When the last interest in a
+ * lookup that hasn't finished is withdrawn, the lookup is called off.
+ */
+public interface LookupInterest {
+
+    /**
+     * Withdraws this interest.  The listener it was registered with, if any,
+     * won't be called.  Withdrawing it again does nothing.
+     */
+    void withdraw();
+}
@@ -0,0 +1,282 @@
+package org.tvrenamer.model;
+
+import org.tvrenamer.controller.util.FileUtilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers, across runs of the program, which show each query string was
+ * resolved to, so that a show we've seen before doesn't need to be searched
+ * for again.  It also remembers query strings for which the provider had no
+ * options at all, but only for a short while, since the provider may add the
+ * show later.<p>
+ *
+ * The mappings are kept in a text file, with a header line giving the format
+ * version, and then one line for each query string:
+ * <pre>
+ *   query string TAB expiry time in milliseconds TAB show ID TAB show name
+ * </pre>
+ * where the show ID and name are empty for a query string that was not found.
+ * The whole file is read the first time a query string is looked up.  Each
+ * mapping that is added is appended to it, so a drop of many shows doesn't
+ * rewrite the file for each one; if a query string appears more than once,
+ * the last line wins.  When the file is read, if it has lines that are
+ * expired, repeated or unreadable, it's rewritten without them (to a
+ * temporary file, which is then moved into place).  A file from another
+ * version of the format is ignored, and replaced the next time a mapping is
+ * added.
+ */
+final class QueryStringStore {
+    private static final Logger logger = Logger.getLogger(QueryStringStore.class.getName());
+
+    private static final String HEADER = "TVRSHOWS 1";
+    private static final char SEPARATOR = '\t';
+    private static final int NUM_FIELDS = 4;
+    private static final String TEMP_PREFIX = "tmp-";
+
+    /*
+     * What we know about one query string.  The idString is null if the
+     * provider did not find the query string.
+     */
+    private static class Resolution {
+        final long expires;
+        final String idString;
+        final String name;
+
+        Resolution(final long expires, final String idString, final String name) {
+            this.expires = expires;
+            this.idString = idString;
+            this.name = name;
+        }
+    }
+
+    private final Path file;
+    private final Clock clock;
+    private final Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+    // Both guarded by this.
+    private boolean loaded = false;
+    // True once the file exists, in this version of the format, so lines can be
+    // appended to it.
+    private boolean appendable = false;
+
+    /**
+     * Creates a store kept in the given file.  Nothing is read until the
+     * first lookup.
+     *
+     * @param file
+     *    the file to keep the mappings in
+     * @param clock
+     *    the clock to use to decide whether mappings have expired
+     */
+    QueryStringStore(final Path file, final Clock clock) {
+        this.file = file;
+        this.clock = clock;
+    }
+
+    /*
+     * Whether the character would break up a line of the file: the separator, or
+     * anything BufferedReader.readLine takes as the end of a line.
+     */
+    private static boolean breaksLine(final char c) {
+        return (c == SEPARATOR) || (c == '\n') || (c == '\r');
+    }
+
+    private static boolean breaksLine(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (breaksLine(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String clean(final String value) {
+        if (!breaksLine(value)) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (breaksLine(chars[i])) {
+                chars[i] = ' ';
+            }
+        }
+        return new String(chars);
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.exists(file)) {
+            return;
+        }
+        long now = clock.millis();
+        int lines = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                logger.info("ignoring " + file + ", from another version");
+                return;
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines++;
+                String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+                long expires;
+                try {
+                    expires = (fields.length == NUM_FIELDS) ? Long.parseLong(fields[1]) : 0L;
+                } catch (NumberFormatException nfe) {
+                    expires = 0L;
+                }
+                if (expires == 0L) {
+                    logger.fine("ignoring bad line in " + file + ": " + line);
+                } else if (expires > now) {
+                    String idString = fields[2].isEmpty() ? null : fields[2];
+                    resolutions.put(fields[0], new Resolution(expires, idString, fields[3]));
+                } else {
+                    // A later line may have renewed it.
+                    resolutions.remove(fields[0]);
+                }
+            }
+            appendable = true;
+            logger.fine("loaded " + resolutions.size() + " query strings from " + file);
+        } catch (IOException | SecurityException e) {
+            logger.log(Level.INFO, "unable to read " + file, e);
+            return;
+        }
+        if (lines > resolutions.size()) {
+            save();
+        }
+    }
+
+    private static void writeLine(final Writer out, final String queryString,
+                                  final Resolution resolution)
+        throws IOException
+    {
+        out.write(queryString);
+        out.write(SEPARATOR);
+        out.write(Long.toString(resolution.expires));
+        out.write(SEPARATOR);
+        if (resolution.idString != null) {
+            out.write(resolution.idString);
+        }
+        out.write(SEPARATOR);
+        out.write(resolution.name);
+        out.write('\n');
+    }
+
+    /*
+     * Adds one mapping to the end of the file, or, if the file can't be
+     * appended to, writes the whole file.
+     */
+    private synchronized void append(final String queryString, final Resolution resolution) {
+        if (!appendable) {
+            save();
+            return;
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                                  StandardOpenOption.APPEND))
+        {
+            writeLine(out, queryString, resolution);
+        } catch (IOException | SecurityException e) {
+            logger.log(Level.INFO, "unable to add query string to " + file, e);
+            appendable = false;
+        }
+    }
+
+    private synchronized void save() {
+        Path directory = file.toAbsolutePath().getParent();
+        if (!FileUtilities.ensureWritableDirectory(directory)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, TEMP_PREFIX, ".txt");
+            long now = clock.millis();
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(HEADER);
+                out.write('\n');
+                for (Map.Entry<String, Resolution> entry : new TreeMap<>(resolutions).entrySet()) {
+                    Resolution resolution = entry.getValue();
+                    if (resolution.expires > now) {
+                        writeLine(out, entry.getKey(), resolution);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            appendable = true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.log(Level.INFO, "unable to save query strings to " + file, e);
+            if ((temp != null) && Files.exists(temp)) {
+                FileUtilities.deleteFile(temp);
+            }
+        }
+    }
+
+    /**
+     * Looks up the show that the given query string was resolved to.
+     *
+     * @param queryString
+     *    the query string, as returned by makeQueryString
+     * @param foundName
+     *    the name to give the FailedShow, if the query string was not found
+     * @return the ShowOption the query string was resolved to; a FailedShow if
+     *    the provider did not find it; or null if we don't know, or the
+     *    mapping has expired
+     */
+    ShowOption lookup(final String queryString, final String foundName) {
+        ensureLoaded();
+        Resolution resolution = resolutions.get(queryString);
+        if ((resolution == null) || (resolution.expires <= clock.millis())) {
+            return null;
+        }
+        if (resolution.idString == null) {
+            return new FailedShow(foundName, null);
+        }
+        return ShowOption.getShowOption(resolution.idString, resolution.name);
+    }
+
+    /**
+     * Records that the given query string was resolved to the given show.
+     *
+     * @param queryString
+     *    the query string, as returned by makeQueryString
+     * @param showOption
+     *    the show it was resolved to, or a FailedShow if it was not found
+     * @param timeToLiveMillis
+     *    how long to remember the mapping for, from now
+     */
+    void put(final String queryString, final ShowOption showOption, final long timeToLiveMillis) {
+        if (breaksLine(queryString)) {
+            return;
+        }
+        ensureLoaded();
+        long expires = clock.millis() + timeToLiveMillis;
+        Resolution resolution;
+        if (showOption.isFailedShow()) {
+            resolution = new Resolution(expires, null, "");
+        } else {
+            resolution = new Resolution(expires, clean(showOption.getIdString()),
+                                        clean(showOption.getName()));
+        }
+        synchronized (this) {
+            // Together, so the last line in the file is the one in the map.
+            resolutions.put(queryString, resolution);
+            append(queryString, resolution);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.tvrenamer.model;
+
+import org.tvrenamer.controller.util.StringUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A rename template (the "replacement mask" from the preferences), broken down
+ * into a sequence of literal text and {@link ReplacementToken}s, so that a new
+ * filename can be built in a single pass.<p>
+ *
+ * The original way to fill in the template, which is still used as a fallback,
+ * is a chain of String.replaceAll calls, one per token, each applied to the
+ * output of the one before.  For almost all templates and values, that's the
+ * same thing as replacing each token in place.  But not always: text inserted
+ * for one token is visible to the replacements that come after it, and removing
+ * or replacing a token can join the text on either side of it into a new token.
+ * We don't try to reproduce those effects.  Instead, a template which could be
+ * subject to them is marked as not {@link #isCompiled compiled}, and
+ * {@link #render} returns null for values which could be subject to them; in
+ * either case, the caller uses the replaceAll chain, and the result is exactly
+ * what it has always been.<p>
+ *
+ * The template for the current preferences is kept, and discarded when the
+ * user changes the replacement mask; see {@link #forMask}.<p>
+ *
+ * Instances are immutable, and safe to share between threads.
+ */
+final class RenameTemplate {
+    private static final Logger logger = Logger.getLogger(RenameTemplate.class.getName());
+
+    private static final char TOKEN_START = '%';
+
+    // The date formatters, created once.  All the patterns are numeric, and
+    // DateTimeFormatter always uses ASCII digits unless told otherwise, so the
+    // locale doesn't affect the result.
+    static final DateTimeFormatter DAY_NUM = DateTimeFormatter.ofPattern("d");
+    static final DateTimeFormatter DAY_NUM_LZ = DateTimeFormatter.ofPattern("dd");
+    static final DateTimeFormatter MONTH_NUM = DateTimeFormatter.ofPattern("M");
+    static final DateTimeFormatter MONTH_NUM_LZ = DateTimeFormatter.ofPattern("MM");
+    static final DateTimeFormatter YEAR_FULL = DateTimeFormatter.ofPattern("yyyy");
+    static final DateTimeFormatter YEAR_MIN = DateTimeFormatter.ofPattern("yy");
+
+    private static final ReplacementToken[] TOKENS = ReplacementToken.values();
+
+    private static volatile RenameTemplate current = null;
+
+    static {
+        UserPreferences.getInstance().addObserver((observable, value) -> {
+            if (value == UserPreference.REPLACEMENT_MASK) {
+                current = null;
+            }
+        });
+    }
+
+    private final String mask;
+    private final boolean compiled;
+    // Parallel arrays; for each segment, either the token is non-null, or the
+    // segment is the literal text.
+    private final ReplacementToken[] tokens;
+    private final String[] literals;
+    private final boolean usesDotTitle;
+
+    private RenameTemplate(final String mask, final boolean compiled,
+                           final List<ReplacementToken> tokenList,
+                           final List<String> literalList)
+    {
+        this.mask = mask;
+        this.compiled = compiled;
+        tokens = tokenList.toArray(new ReplacementToken[tokenList.size()]);
+        literals = literalList.toArray(new String[literalList.size()]);
+        usesDotTitle = tokenList.contains(ReplacementToken.EPISODE_TITLE_NO_SPACES);
+    }
+
+    /**
+     * Returns the compiled form of the given mask.  The most recently used mask
+     * is cached until the replacement mask preference changes.
+     *
+     * @param mask
+     *    the replacement mask
+     * @return the template for the mask
+     */
+    static RenameTemplate forMask(final String mask) {
+        RenameTemplate template = current;
+        if ((template == null) || !template.mask.equals(mask)) {
+            template = compile(mask);
+            current = template;
+        }
+        return template;
+    }
+
+    /*
+     * Finds the token that starts at the given position of the mask.  When
+     * more than one does (that is, "%yyyy" and "%yy"), the replaceAll chain
+     * tries the longer one first, so we do too.
+     */
+    private static ReplacementToken tokenAt(final String mask, final int pos) {
+        ReplacementToken found = null;
+        for (ReplacementToken token : TOKENS) {
+            String text = token.getToken();
+            if (mask.startsWith(text, pos)
+                && ((found == null) || (text.length() > found.getToken().length())))
+            {
+                found = token;
+            }
+        }
+        return found;
+    }
+
+    /*
+     * Whether the text rendered for the given token always starts with
+     * something other than "y".  For other tokens, the text might be empty or
+     * start with "y", and then a preceding "%yy" could become "%yyyy" in the
+     * replaceAll chain.
+     */
+    private static boolean startsWithDigit(final ReplacementToken token) {
+        switch (token) {
+            case SEASON_NUM:
+            case SEASON_NUM_LEADING_ZERO:
+            case EPISODE_NUM:
+            case EPISODE_NUM_LEADING_ZERO:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Checks whether the "%yy" token at the given segment could be extended
+     * into "%yyyy" by the replaceAll chain: that's possible if it's followed,
+     * directly or after a single literal "y", by a token whose value could
+     * start with "y" or be empty.
+     */
+    private static boolean yearCanGrow(final List<ReplacementToken> tokenList,
+                                       final List<String> literalList, final int segment)
+    {
+        int next = segment + 1;
+        if ((next < tokenList.size()) && (tokenList.get(next) == null)
+            && "y".equals(literalList.get(next)))
+        {
+            next++;
+        }
+        if (next >= tokenList.size()) {
+            return false;
+        }
+        ReplacementToken token = tokenList.get(next);
+        return (token != null) && !startsWithDigit(token);
+    }
+
+    /**
+     * Breaks the given mask down into literal text and tokens.
+     *
+     * @param mask
+     *    the replacement mask
+     * @return the template for the mask
+     */
+    static RenameTemplate compile(final String mask) {
+        List<ReplacementToken> tokenList = new ArrayList<>();
+        List<String> literalList = new ArrayList<>();
+        boolean compilable = true;
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < mask.length()) {
+            char c = mask.charAt(pos);
+            ReplacementToken token = (c == TOKEN_START) ? tokenAt(mask, pos) : null;
+            if (token == null) {
+                if (c == TOKEN_START) {
+                    // A percent sign that doesn't start a token might become
+                    // part of one after an earlier replacement.
+                    compilable = false;
+                }
+                literal.append(c);
+                pos++;
+            } else {
+                if (literal.length() > 0) {
+                    tokenList.add(null);
+                    literalList.add(literal.toString());
+                    literal.setLength(0);
+                }
+                tokenList.add(token);
+                literalList.add(null);
+                pos += token.getToken().length();
+            }
+        }
+        if (literal.length() > 0) {
+            tokenList.add(null);
+            literalList.add(literal.toString());
+        }
+        for (int i = 0; i < tokenList.size(); i++) {
+            if ((tokenList.get(i) == ReplacementToken.DATE_YEAR_MIN)
+                && yearCanGrow(tokenList, literalList, i))
+            {
+                compilable = false;
+            }
+        }
+        if (!compilable) {
+            logger.fine("using replaceAll for rename template " + mask);
+        }
+        return new RenameTemplate(mask, compilable, tokenList, literalList);
+    }
+
+    /**
+     * @return the replacement mask this template was made from
+     */
+    String getMask() {
+        return mask;
+    }
+
+    /**
+     * @return true if this template can be rendered in a single pass; false if
+     *    the caller must always use the replaceAll chain
+     */
+    boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Fills in the template.  The arguments are the values that the tokens are
+     * replaced with; the result is not sanitised.
+     *
+     * @param showName
+     *     the name of the show
+     * @param episodeTitle
+     *     the (possibly truncated) title of the episode
+     * @param placement
+     *     the season and episode numbers
+     * @param resolution
+     *     the resolution found in the filename, or the empty string
+     * @param airDate
+     *     the date the episode first aired, or null to remove the date tokens
+     * @return the filled-in template, or null if this template or these values
+     *     need the replaceAll chain
+     */
+    String render(final String showName, final String episodeTitle,
+                  final EpisodePlacement placement, final String resolution,
+                  final LocalDate airDate)
+    {
+        if (!compiled
+            || (showName.indexOf(TOKEN_START) >= 0)
+            || (episodeTitle.indexOf(TOKEN_START) >= 0)
+            || (resolution.indexOf(TOKEN_START) >= 0)
+            // The resolution is used as a replacement string without quoting.
+            || (resolution.indexOf('$') >= 0)
+            || (resolution.indexOf('\\') >= 0))
+        {
+            return null;
+        }
+        final String dotTitle = usesDotTitle ? StringUtils.makeDotTitle(episodeTitle) : null;
+        StringBuilder rendered = new StringBuilder(mask.length() + 64);
+        for (int i = 0; i < tokens.length; i++) {
+            ReplacementToken token = tokens[i];
+            if (token == null) {
+                rendered.append(literals[i]);
+                continue;
+            }
+            switch (token) {
+                case SHOW_NAME:
+                    rendered.append(showName);
+                    break;
+                case SEASON_NUM:
+                    rendered.append(placement.season);
+                    break;
+                case SEASON_NUM_LEADING_ZERO:
+                    rendered.append(StringUtils.zeroPadTwoDigits(placement.season));
+                    break;
+                case EPISODE_NUM:
+                    rendered.append(StringUtils.formatDigits(placement.episode));
+                    break;
+                case EPISODE_NUM_LEADING_ZERO:
+                    rendered.append(StringUtils.zeroPadThreeDigits(placement.episode));
+                    break;
+                case EPISODE_TITLE:
+                    rendered.append(episodeTitle);
+                    break;
+                case EPISODE_TITLE_NO_SPACES:
+                    rendered.append(dotTitle);
+                    break;
+                case EPISODE_RESOLUTION:
+                    rendered.append(resolution);
+                    break;
+                default:
+                    appendDate(rendered, token, airDate);
+                    break;
+            }
+        }
+        return rendered.toString();
+    }
+
+    private static void appendDate(final StringBuilder rendered, final ReplacementToken token,
+                                   final LocalDate airDate)
+    {
+        if (airDate == null) {
+            return;
+        }
+        DateTimeFormatter formatter = formatterFor(token);
+        if (formatter != null) {
+            formatter.formatTo(airDate, rendered);
+        }
+    }
+
+    /**
+     * @param token
+     *    a date token
+     * @return the formatter for the token, or null if it isn't a date token
+     */
+    static DateTimeFormatter formatterFor(final ReplacementToken token) {
+        switch (token) {
+            case DATE_DAY_NUM:
+                return DAY_NUM;
+            case DATE_DAY_NUMLZ:
+                return DAY_NUM_LZ;
+            case DATE_MONTH_NUM:
+                return MONTH_NUM;
+            case DATE_MONTH_NUMLZ:
+                return MONTH_NUM_LZ;
+            case DATE_YEAR_FULL:
+                return YEAR_FULL;
+            case DATE_YEAR_MIN:
+                return YEAR_MIN;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenameTemplate [" + mask + (compiled ? "" : ", uncompiled") + "]";
+    }
+}
@@ -1,10 +1,17 @@
 package org.tvrenamer.model;
 
 import org.tvrenamer.controller.ListingsLookup;
+import org.tvrenamer.controller.LookupHandle;
 import org.tvrenamer.controller.ShowListingsListener;
 
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -61,6 +68,38 @@ public class Series extends Show {
      * Instance data
      */
     private DownloadStatus listingsStatus = DownloadStatus.NOT_STARTED;
+    private LookupHandle downloadHandle = null;
+
+    // Completes, with this Series, when the listings have been downloaded, or
+    // exceptionally, if they could not be.  Listeners are called from it.
+    private final CompletableFuture<Series> listings = new CompletableFuture<>();
+
+    // The interests of those waiting for the listings, or, for listeners, also
+    // for changes to them; the download is called off if none is left.
+    private final Queue<Interest> interests = new ConcurrentLinkedQueue<>();
+
+    /*
+     * An interest in this Series's listings, with the listener it was registered
+     * with, or null if it's held by a future.
+     */
+    private class Interest implements LookupInterest {
+        final ShowListingsListener listener;
+        volatile boolean withdrawn = false;
+
+        Interest(final ShowListingsListener listener) {
+            this.listener = listener;
+        }
+
+        int weight() {
+            return (listener == null) ? 1 : listener.getLookupWeight();
+        }
+
+        @Override
+        public void withdraw() {
+            withdrawn = true;
+            withdrawInterest(this);
+        }
+    }
 
     // private constructor; assumes idNum > 0 and that no Series instance already exists with
     // the given idNum.  That's what the factory method is for.
@@ -118,18 +157,55 @@ public class Series extends Show {
      * in progress (or, already finished), we return false, and the caller
      * should abort.  Otherwise, we will return true, and we assume that
      * means the caller will immediately initiate a download right after that,
-     * so we update the download status to "in progress".
+     * so we update the download status to "in progress".  (getListings and
+     * addListingsListener call this themselves.)
      *
      * @return true if the listings need to be downloaded, false otherwise
      */
     public synchronized boolean beginDownload() {
         if (listingsStatus == DownloadStatus.NOT_STARTED) {
             listingsStatus = DownloadStatus.IN_PROGRESS;
+            downloadHandle = new LookupHandle("listings of " + name);
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the handle on the download the caller of {@link #beginDownload} was
+     * told to start, by which it's called off once no one is waiting for it.
+     *
+     * @return the handle on the download, or null if it has been called off
+     */
+    public synchronized LookupHandle getDownloadHandle() {
+        return downloadHandle;
+    }
+
+    /*
+     * Forgets the interest, and, if no one else is waiting for the listings,
+     * calls off the download, so that the next one to want them starts it again.
+     */
+    private void withdrawInterest(final Interest interest) {
+        LookupHandle cancel = null;
+        synchronized (this) {
+            if (!interests.remove(interest)) {
+                return;
+            }
+            if (interest.listener != null) {
+                registrations.remove(interest.listener);
+            }
+            if (interests.isEmpty() && (listingsStatus == DownloadStatus.IN_PROGRESS)) {
+                cancel = downloadHandle;
+                downloadHandle = null;
+                listingsStatus = DownloadStatus.NOT_STARTED;
+            }
+        }
+        if (cancel != null) {
+            logger.fine("no one is waiting for the listings of " + name + " any more");
+            cancel.cancel();
+        }
+    }
+
     /**
      * Get this Series's ID, as an Integer.
      *
@@ -141,30 +217,107 @@ public class Series extends Show {
         return idNum;
     }
 
+    /**
+     * Get the listings of this Series, downloading them if that hasn't been
+     * started yet.  If the listings are in the listings store, the future may
+     * already be complete when this returns.
+     *
+     * @return a future which completes with this Series, once it has its episodes,
+     *   or exceptionally, if the listings could not be downloaded; callers may add
+     *   stages to it, or cancel it, which withdraws their interest in the download,
+     *   but not complete it
+     */
+    public CompletableFuture<Series> getListings() {
+        Interest interest = new Interest(null);
+        interests.add(interest);
+        CompletableFuture<Series> copy = listings.thenApply(series -> series);
+        copy.whenComplete((series, failure) -> {
+            if (failure instanceof CancellationException) {
+                interest.withdraw();
+            } else {
+                interests.remove(interest);
+            }
+        });
+        if (beginDownload()) {
+            ListingsLookup.downloadListings(this);
+        }
+        return copy;
+    }
+
+    /**
+     * Get the priority of downloading this Series's listings: the total weight
+     * of its listeners, which is, unless they say otherwise, the number of files
+     * waiting for the listings.  A future waiting for them counts as one file.
+     *
+     * @return the priority of the download; higher goes first
+     */
+    public int getLookupPriority() {
+        int priority = 0;
+        for (Interest interest : interests) {
+            priority += interest.weight();
+        }
+        return priority;
+    }
+
+    /*
+     * Calls the listener with the outcome of the listings download.
+     */
+    private void notifyListener(final ShowListingsListener listener, final Throwable failure) {
+        try {
+            if (failure == null) {
+                listener.listingsDownloadComplete();
+            } else if (failure instanceof ListingsUnavailableException) {
+                listener.listingsDownloadFailed(null);
+            } else if (failure instanceof Exception) {
+                listener.listingsDownloadFailed((Exception) failure);
+            } else {
+                listener.listingsDownloadFailed(new Exception(failure));
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "listings listener failed for " + name, e);
+        }
+    }
+
     /**
      * Registers a listener interested in this Series's listings.  If we
-     * already have the listings, and we can notify the new listener
-     * immediately, and not have to iterate over the list of existing
-     * listeners.
+     * already have the listings, the new listener is notified immediately,
+     * on this thread.  If this is the first listener, and the listings are in
+     * the listings store, the listener is also notified before this returns.<p>
+     *
+     * This is a thin adapter over {@link #getListings}; the listener is also
+     * told if the listings change after they've been reported.
      *
      * @param listener
      *   the listener to add to the registrations
+     * @return the listener's interest in the listings, which the caller withdraws
+     *   if it no longer wants to hear about them
      */
-    public synchronized void addListingsListener(ShowListingsListener listener) {
+    public LookupInterest addListingsListener(ShowListingsListener listener) {
         if (listener == null) {
             logger.warning("cannot get listings without a listener");
-            return;
+            return () -> { };
         }
+        final Interest interest = new Interest(listener);
+        interests.add(interest);
         registrations.add(listener);
-        if (listingsStatus == DownloadStatus.NOT_STARTED) {
+        listings.whenComplete((series, failure) -> {
+            if (!interest.withdrawn) {
+                notifyListener(listener, failure);
+            }
+        });
+        if (beginDownload()) {
             ListingsLookup.downloadListings(this);
-        } else if (listingsStatus == DownloadStatus.SUCCESS) {
-            listener.listingsDownloadComplete();
-        } else if (listingsStatus == DownloadStatus.FAILURE) {
-            listener.listingsDownloadFailed(null);
         }
-        // Else, listings are currently in progress, and listener will be
-        // notified when they're complete.
+        return interest;
+    }
+
+    /*
+     * The failure a listings download completes with when we weren't given one.
+     */
+    private static class ListingsUnavailableException extends Exception {
+        ListingsUnavailableException(final String message) {
+            super(message);
+        }
     }
 
     /**
@@ -175,11 +328,13 @@ public class Series extends Show {
      *     an exception that was thrown while trying to look up the listings.
      *     May be null.
      */
-    public synchronized void listingsFailed(Exception err) {
-        listingsStatus = DownloadStatus.FAILURE;
-        for (ShowListingsListener listener : registrations) {
-            listener.listingsDownloadFailed(err);
+    public void listingsFailed(Exception err) {
+        synchronized (this) {
+            listingsStatus = DownloadStatus.FAILURE;
         }
+        listings.completeExceptionally((err == null)
+                                       ? new ListingsUnavailableException("no listings for " + name)
+                                       : err);
     }
 
     /**
@@ -187,9 +342,31 @@ public class Series extends Show {
      * we have the listings, and we can notify the listeners.
      *
      */
-    public synchronized void listingsSucceeded() {
-        listingsStatus = DownloadStatus.SUCCESS;
-        registrations.forEach(ShowListingsListener::listingsDownloadComplete);
+    public void listingsSucceeded() {
+        synchronized (this) {
+            listingsStatus = DownloadStatus.SUCCESS;
+        }
+        listings.complete(this);
+    }
+
+    /**
+     * Called by ListingsLookup after it has downloaded the listings again, for a
+     * Series whose listings had already been reported, to let the listeners know
+     * which episodes changed.  If nothing changed, the listeners are not called.
+     *
+     * @param changed
+     *     the placements of the episodes that changed, as returned by
+     *     {@link #replaceEpisodeInfos}
+     */
+    public void listingsRefreshed(Set<EpisodePlacement> changed) {
+        if (changed.isEmpty()) {
+            logger.fine("listings of " + name + " have not changed");
+            return;
+        }
+        logger.info("listings of " + name + " changed at " + changed.size() + " placements");
+        for (ShowListingsListener listener : registrations) {
+            listener.listingsChanged(changed);
+        }
     }
 
     /**
@@ -3,10 +3,14 @@ package org.tvrenamer.model;
 import org.tvrenamer.controller.ShowListingsListener;
 import org.tvrenamer.controller.util.StringUtils;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
@@ -43,7 +47,10 @@ public class Show extends ShowOption {
     private final String dirName;
 
     final Map<String, Episode> episodes;
-    private final Map<Integer, Season> seasons;
+    // The index is rebuilt as a new map, and then swapped in, so that a lookup
+    // done while the listings are being refreshed sees either the old index or
+    // the new one, and never a partial one.
+    private volatile Map<Integer, Season> seasons;
     final Queue<ShowListingsListener> registrations;
 
     private boolean preferDvd = true;
@@ -135,13 +142,15 @@ public class Show extends ShowOption {
      * to the that ordering, if such a placement is known.  This method does not "fall
      * back" to the alternative ordering.
      *
+     * @param index
+     *           the index of seasons being built
      * @param episode
      *           the episode to place at the index
      * @param useDvd
      *           whether seasonNum and episodeNum refer to the DVD ordering or
      *           the over-the-air ordering
      */
-    private void addEpisodeToSeason(Episode episode, boolean useDvd) {
+    private void addEpisodeToSeason(Map<Integer, Season> index, Episode episode, boolean useDvd) {
         EpisodePlacement placement = episode.getEpisodePlacement(useDvd);
         if (placement == null) {
             // Note, in this case, the Episode will continue to exist in the list of
@@ -152,10 +161,10 @@ public class Show extends ShowOption {
         } else {
             // Check to see if there's already an existing episode.  Only applies if we
             // have a valid placement.
-            Season season = seasons.get(placement.season);
+            Season season = index.get(placement.season);
             if (season == null) {
                 season = new Season(this, placement.season);
-                seasons.put(placement.season, season);
+                index.put(placement.season, season);
             }
             season.addEpisode(episode, useDvd);
         }
@@ -172,19 +181,21 @@ public class Show extends ShowOption {
      * Does not change the episode list at all; just organizes them into seasons
      * and episode numbers.
      *
-     * Clears the season index before beginning, and iterates over all known episodes
-     * twice: first in the preferred ordering, and then in the alternate ordering.
+     * Builds a new season index, iterating over all known episodes twice: first
+     * in the preferred ordering, and then in the alternate ordering; and then
+     * replaces the old index with it.
      */
     public synchronized void indexEpisodesBySeason() {
-        seasons.clear();
+        Map<Integer, Season> index = new ConcurrentHashMap<>();
         for (Episode episode : episodes.values()) {
             if (episode == null) {
                 logger.severe("internal error creating episodes for " + name);
                 continue;
             }
-            addEpisodeToSeason(episode, preferDvd);
-            addEpisodeToSeason(episode, !preferDvd);
+            addEpisodeToSeason(index, episode, preferDvd);
+            addEpisodeToSeason(index, episode, !preferDvd);
         }
+        seasons = index;
     }
 
     /**
@@ -266,6 +277,78 @@ public class Show extends ShowOption {
         logEpisodeProblems(problems);
     }
 
+    /**
+     * Adds Episodes which have already been created, such as from the
+     * {@link ListingsStore}, to this Show, and then creates the index of the
+     * episodes by their placement.  An episode whose ID is already present is
+     * ignored.
+     *
+     * @param added
+     *    the episodes to add
+     */
+    void addEpisodes(final Collection<Episode> added) {
+        for (Episode episode : added) {
+            episodes.putIfAbsent(episode.getEpisodeId(), episode);
+        }
+        indexEpisodesBySeason();
+    }
+
+    private static void addPlacements(final Set<EpisodePlacement> placements,
+                                      final Episode episode)
+    {
+        for (boolean useDvd : new boolean[] { false, true }) {
+            EpisodePlacement placement = episode.getEpisodePlacement(useDvd);
+            if (placement != null) {
+                placements.add(placement);
+            }
+        }
+    }
+
+    /**
+     * Replaces this Show's episodes with the given ones, such as when the listings
+     * have been downloaded again, and finds out what changed.<p>
+     *
+     * If nothing changed, the Show is left as it was.  Otherwise, the episodes are
+     * replaced, and the index is rebuilt.  (An episode that has no placement at all
+     * can change without any placement being returned.)
+     *
+     * @param infos
+     *    an array containing information about the episodes, downloaded from the provider
+     * @return the placements, in either ordering, of every episode that was added,
+     *    removed, or changed; empty if the listings are the same as before
+     */
+    public synchronized Set<EpisodePlacement> replaceEpisodeInfos(final EpisodeInfo[] infos) {
+        Map<String, Episode> replacements = new HashMap<>();
+        for (EpisodeInfo info : infos) {
+            if ((info != null) && !replacements.containsKey(info.episodeId)) {
+                replacements.put(info.episodeId, new Episode(info));
+            }
+        }
+        Set<EpisodePlacement> changed = new HashSet<>();
+        boolean different = false;
+        for (Episode episode : episodes.values()) {
+            Episode replacement = replacements.get(episode.getEpisodeId());
+            if ((replacement == null) || !episode.sameListing(replacement)) {
+                addPlacements(changed, episode);
+                different = true;
+            }
+        }
+        for (Episode replacement : replacements.values()) {
+            Episode episode = episodes.get(replacement.getEpisodeId());
+            if ((episode == null) || !episode.sameListing(replacement)) {
+                addPlacements(changed, replacement);
+                different = true;
+            }
+        }
+        if (!different) {
+            return changed;
+        }
+        episodes.keySet().retainAll(replacements.keySet());
+        episodes.putAll(replacements);
+        indexEpisodesBySeason();
+        return changed;
+    }
+
     /**
      * Look up an episode for the given placement of this show.
      * Returns null if no such episode was found.
@@ -1,12 +1,21 @@
 package org.tvrenamer.model;
 
+import static org.tvrenamer.model.util.Constants.QUERY_STRINGS_FILE;
+
+import org.tvrenamer.controller.LookupHandle;
 import org.tvrenamer.controller.ShowInformationListener;
 import org.tvrenamer.controller.util.StringUtils;
 
-import java.util.LinkedList;
+import java.time.Clock;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -49,15 +58,33 @@ public class ShowName {
     /**
      * Inner class to hold a query string.  The query string is what we send to the provider
      * to try to resolve a show name.  We may re-use a single query string for multiple
-     * show names.
+     * show names.<p>
+     *
+     * The outcome of the lookup is a future, which completes with the Show, or with a
+     * FailedShow if the provider didn't find one, or exceptionally, with a
+     * DiscontinuedApiException, if the provider's API is gone.  Listeners are called
+     * when it completes.  Until then, the interests of those waiting for it are
+     * also kept, so that the lookup's priority can be worked out from them, and
+     * so that it can be called off once none is left.
      */
     private static class QueryString {
         final String queryString;
         private ShowOption matchedShow = null;
-        private final List<ShowInformationListener> listeners = new LinkedList<>();
+        private boolean queried = false;
+        private LookupHandle handle = null;
+        private final CompletableFuture<ShowOption> resolution = new CompletableFuture<>();
+        private final Queue<Interest> waiting = new ConcurrentLinkedQueue<>();
 
         private static final Map<String, QueryString> QUERY_STRINGS = new ConcurrentHashMap<>();
 
+        // The query strings resolved in earlier runs of the program.  A show the
+        // provider found is unlikely to change its ID, but a query string it
+        // didn't find might be added, so we try it again sooner.
+        private static final QueryStringStore STORE
+            = new QueryStringStore(QUERY_STRINGS_FILE, Clock.systemUTC());
+        private static final long RESOLVED_TTL_MILLIS = TimeUnit.DAYS.toMillis(30);
+        private static final long NOT_FOUND_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
         private QueryString(String queryString) {
             this.queryString = queryString;
         }
@@ -83,43 +110,53 @@ public class ShowName {
             matchedShow = showOption;
         }
 
-        // see ShowName.addListener for documentation
-        private void addListener(ShowInformationListener listener) {
-            synchronized (listeners) {
-                listeners.add(listener);
+        // see ShowName.beginQuery for documentation
+        private synchronized LookupHandle beginQuery() {
+            if ((matchedShow != null) || queried || resolution.isDone()) {
+                return null;
             }
+            queried = true;
+            handle = new LookupHandle("query string " + queryString);
+            return handle;
         }
 
-        // see ShowName.hasListeners for documentation
-        private boolean hasListeners() {
-            synchronized (listeners) {
-                return (listeners.size() > 0);
-            }
+        synchronized LookupHandle getHandle() {
+            return handle;
         }
 
-        // see ShowName.nameResolved for documentation
-        private void nameResolved(Show show) {
-            synchronized (listeners) {
-                for (ShowInformationListener informationListener : listeners) {
-                    informationListener.downloadSucceeded(show);
+        /*
+         * Forgets the interest, and, if no one else is waiting for the lookup,
+         * calls it off, so that the next one to want it starts it again.
+         */
+        private void withdraw(final Interest interest) {
+            LookupHandle cancel = null;
+            synchronized (this) {
+                if (!waiting.remove(interest)) {
+                    return;
                 }
-            }
-        }
-
-        // see ShowName.nameNotFound for documentation
-        private void nameNotFound(FailedShow failedShow) {
-            synchronized (listeners) {
-                for (ShowInformationListener informationListener : listeners) {
-                    informationListener.downloadFailed(failedShow);
+                if (waiting.isEmpty() && queried && !resolution.isDone()) {
+                    cancel = handle;
+                    handle = null;
+                    queried = false;
                 }
             }
+            if (cancel != null) {
+                logger.fine("no one is waiting for " + queryString + " any more");
+                cancel.cancel();
+            }
         }
 
-        // see ShowName.apiDiscontinued for documentation
-        private void apiDiscontinued() {
-            synchronized (listeners) {
-                listeners.forEach(ShowInformationListener::apiHasBeenDeprecated);
-            }
+        /**
+         * Remember the show the provider resolved this QueryString to, in later runs
+         * of the program.
+         *
+         * @param showOption
+         *    the ShowOption this QueryString was mapped to, or a FailedShow if the
+         *    provider did not have any options for it
+         */
+        void storeShowOption(ShowOption showOption) {
+            STORE.put(queryString, showOption,
+                      showOption.isFailedShow() ? NOT_FOUND_TTL_MILLIS : RESOLVED_TTL_MILLIS);
         }
 
         /**
@@ -133,7 +170,9 @@ public class ShowName {
 
         /**
          * Factory-style method to obtain a QueryString.  If an object has already been created
-         * for the query string we need for the found name, re-use it.
+         * for the query string we need for the found name, re-use it.  Otherwise, if the query
+         * string was resolved in an earlier run, the new QueryString is already mapped to the
+         * same show, and doesn't need to be looked up.
          *
          * @param foundName
          *    the portion of the filename that is believed to represent the show's name
@@ -144,12 +183,41 @@ public class ShowName {
             QueryString queryObj = QUERY_STRINGS.get(queryString);
             if (queryObj == null) {
                 queryObj = new QueryString(queryString);
+                queryObj.matchedShow = STORE.lookup(queryString, foundName);
+                if (queryObj.matchedShow != null) {
+                    queryObj.resolution.complete(queryObj.matchedShow);
+                }
                 QUERY_STRINGS.put(queryString, queryObj);
             }
             return queryObj;
         }
     }
 
+    /*
+     * An interest in a QueryString's lookup, with the listener it was registered
+     * with, or null if it's held by a future.
+     */
+    private static class Interest implements LookupInterest {
+        final QueryString queryString;
+        final ShowInformationListener listener;
+        volatile boolean withdrawn = false;
+
+        Interest(final QueryString queryString, final ShowInformationListener listener) {
+            this.queryString = queryString;
+            this.listener = listener;
+        }
+
+        int weight() {
+            return (listener == null) ? 1 : listener.getLookupWeight();
+        }
+
+        @Override
+        public void withdraw() {
+            withdrawn = true;
+            queryString.withdraw(this);
+        }
+    }
+
     /**
      * A mapping from Strings to ShowName objects.  This is potentially a
      * many-to-one relationship.
@@ -207,41 +275,116 @@ public class ShowName {
     private final String foundName;
     private final QueryString queryString;
 
-    private final List<ShowOption> showOptions;
+    /*
+     * QueryString methods -- these methods are the public interface to the
+     * functionality, but they are mostly pass-throughs to the QueryString
+     * inner class.
+     */
 
     /*
-     * QueryString methods -- these four methods are the public interface to the
-     * functionality, but they are just pass-throughs to the real implementations
-     * kept inside the QueryString inner class.
+     * Registers an interest in the lookup, which is kept until the lookup is done.
      */
+    private Interest addInterest(final ShowInformationListener listener) {
+        Interest interest = new Interest(queryString, listener);
+        if (!queryString.resolution.isDone()) {
+            queryString.waiting.add(interest);
+            queryString.resolution.whenComplete((showOption, failure)
+                                                -> queryString.waiting.remove(interest));
+        }
+        return interest;
+    }
 
     /**
-     * Add a listener for this ShowName's query string.
+     * Calls the listener when this ShowName's query string has been resolved,
+     * or right away, on this thread, if it already has been.
      *
      * @param listener
      *            the listener registering interest
+     * @return the listener's interest in the lookup, which the caller withdraws
+     *            if it no longer wants to hear about it
+     */
+    LookupInterest addShowInformationListener(final ShowInformationListener listener) {
+        final Interest interest = addInterest(listener);
+        queryString.resolution.whenComplete((showOption, failure) -> {
+            if (interest.withdrawn) {
+                return;
+            }
+            try {
+                if (failure instanceof DiscontinuedApiException) {
+                    listener.apiHasBeenDeprecated();
+                } else if (failure != null) {
+                    logger.log(Level.WARNING, "unexpected failure looking up " + foundName, failure);
+                    listener.downloadFailed(new FailedShow(foundName, null));
+                } else if (showOption.isFailedShow()) {
+                    listener.downloadFailed(showOption.asFailedShow());
+                } else {
+                    listener.downloadSucceeded(showOption.getShowInstance());
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "show information listener failed for " + foundName, e);
+            }
+        });
+        return interest;
+    }
+
+    /**
+     * Get the priority of looking up this ShowName's query string: the total
+     * weight of the listeners waiting for it, which is, unless they say
+     * otherwise, the number of files waiting for it.  A future waiting for it
+     * counts as one file.
+     *
+     * @return the priority of the lookup; higher goes first
      */
-    void addShowInformationListener(final ShowInformationListener listener) {
-        synchronized (queryString) {
-            queryString.addListener(listener);
+    int getLookupPriority() {
+        int priority = 0;
+        for (Interest interest : queryString.waiting) {
+            priority += interest.weight();
         }
+        return priority;
     }
 
     /**
-     * Determine if this ShowName needs to be queried.
+     * Get the future outcome of looking up this ShowName's query string.  It
+     * completes with the ShowOption the query string maps to, which is a
+     * FailedShow if the provider did not find it; or exceptionally, with a
+     * DiscontinuedApiException.  Cancelling it withdraws the caller's interest
+     * in the lookup.
      *
-     * If the answer is "yes", we add a listener and query immediately,
-     * in a synchronized block.  Therefore, that becomes how we determine
-     * the answer: if this ShowName already has a listener, that means
-     * its download is already underway.
+     * @return a future which callers may add stages to, or cancel, but not complete
+     */
+    CompletableFuture<ShowOption> getResolution() {
+        Interest interest = addInterest(null);
+        CompletableFuture<ShowOption> copy = queryString.resolution.thenApply(showOption -> showOption);
+        copy.whenComplete((showOption, failure) -> {
+            if (failure instanceof CancellationException) {
+                interest.withdraw();
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Determine if this ShowName needs to be queried, and, if it does, note that
+     * the caller is about to query it.  Only the first caller for a query string
+     * is told to query it, and none is if the query string was resolved in an
+     * earlier run.  If a query is called off, because no one is waiting for it
+     * any more, the next caller is told to query it again.
      *
-     * @return false if this ShowName's query string already has a listener;
-     *     true if not
+     * @return the handle on the query the caller should make, by which it's
+     *     called off once no one is waiting for it; or null if this ShowName's
+     *     query string has been, or is being, queried already
      */
-    boolean needsQuery() {
-        synchronized (queryString) {
-            return !queryString.hasListeners();
-        }
+    LookupHandle beginQuery() {
+        return queryString.beginQuery();
+    }
+
+    /**
+     * Get the handle on the query most recently begun, if it's still going.
+     *
+     * @return the handle on the query, or null if it has been called off
+     */
+    LookupHandle getQueryHandle() {
+        return queryString.getHandle();
     }
 
     /**
@@ -252,9 +395,7 @@ public class ShowName {
      *    the Show object representing the TV show we've mapped the string to.
      */
     public void nameResolved(Show show) {
-        synchronized (queryString) {
-            queryString.nameResolved(show);
-        }
+        queryString.resolution.complete(show);
     }
 
     /**
@@ -265,9 +406,7 @@ public class ShowName {
      *    the FailedShow object representing the string we searched for.
      */
     public void nameNotFound(FailedShow show) {
-        synchronized (queryString) {
-            queryString.nameNotFound(show);
-        }
+        queryString.resolution.complete(show);
     }
 
     /**
@@ -276,9 +415,7 @@ public class ShowName {
      *
      */
     public void apiDiscontinued() {
-        synchronized (queryString) {
-            queryString.apiDiscontinued();
-        }
+        queryString.resolution.completeExceptionally(new DiscontinuedApiException());
     }
 
     /**
@@ -292,30 +429,6 @@ public class ShowName {
     private ShowName(String foundName) {
         this.foundName = foundName;
         queryString = QueryString.lookupQueryString(foundName);
-
-        showOptions = new LinkedList<>();
-    }
-
-    /**
-     * Find out if this ShowName has received its options from the provider yet.
-     *
-     * @return true if this ShowName has show options; false otherwise
-     */
-    public boolean hasShowOptions() {
-        return (showOptions.size() > 0);
-    }
-
-    /**
-     * Add a possible Show option that could be mapped to this ShowName
-     *
-     * @param tvdbId
-     *    the show's id in the TVDB database
-     * @param seriesName
-     *    the "official" show name
-     */
-    public void addShowOption(final String tvdbId, final String seriesName) {
-        ShowOption option = ShowOption.getShowOption(tvdbId, seriesName);
-        showOptions.add(option);
     }
 
     /**
@@ -335,13 +448,17 @@ public class ShowName {
      * Given a list of two or more options for which series we're dealing with,
      * choose the best one and return it.
      *
+     * @param showOptions
+     *    the options the provider gave for this ShowName's query string
      * @return the series from the list which best matches the series information
      */
-    public ShowOption selectShowOption() {
+    public ShowOption selectShowOption(final List<ShowOption> showOptions) {
         int nOptions = showOptions.size();
         if (nOptions == 0) {
             logger.info("did not find any options for " + foundName);
-            return getFailedShow(null);
+            FailedShow notFound = getFailedShow(null);
+            queryString.storeShowOption(notFound);
+            return notFound;
         }
         // logger.info("got " + nOptions + " options for " + foundName);
         ShowOption selected = null;
@@ -366,6 +483,7 @@ public class ShowName {
         }
 
         queryString.setShowOption(selected);
+        queryString.storeShowOption(selected);
         return selected;
     }
 
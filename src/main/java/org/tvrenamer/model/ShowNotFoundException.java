@@ -0,0 +1,19 @@
+package org.tvrenamer.model;
+
+/**
+ * Thrown, or used to complete a future exceptionally, when the provider has no
+ * show that matches the name found in a filename.
+ */
+public class ShowNotFoundException extends TVRenamerIOException {
+
+    private final FailedShow failedShow;
+
+    public ShowNotFoundException(FailedShow failedShow) {
+        super("no show found for " + failedShow.getName());
+        this.failedShow = failedShow;
+    }
+
+    public FailedShow getFailedShow() {
+        return failedShow;
+    }
+}
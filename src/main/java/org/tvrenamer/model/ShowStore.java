@@ -1,11 +1,16 @@
 package org.tvrenamer.model;
 
+import org.tvrenamer.controller.LookupExecutor;
+import org.tvrenamer.controller.LookupHandle;
+import org.tvrenamer.controller.ProviderThrottle;
 import org.tvrenamer.controller.ShowInformationListener;
 import org.tvrenamer.controller.TheTVDBProvider;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
@@ -110,14 +115,80 @@ import java.util.logging.Logger;
  * provider to get back a list of options, choose the best option, and return it to the
  * listener via callback.  But we do, of course, also store the mapping in a hash map, so
  * if a second file comes in with the same query string, we don't go look it up again,
- * but simply return the same answer we gave the first time.
+ * but simply return the same answer we gave the first time.<p>
+ *
+ * The mapping is also saved on disk (see {@link QueryStringStore}), so that a query
+ * string resolved in an earlier run is already mapped when it's first seen.  For such a
+ * query string, mapStringToShow calls the listener right away, on the caller's thread.
  *
  */
 public class ShowStore {
 
     private static final Logger logger = Logger.getLogger(ShowStore.class.getName());
 
-    private static final ExecutorService threadPool = Executors.newCachedThreadPool();
+    // Lookups beyond the number the provider throttle lets go at once wait in the
+    // queue, rather than each taking a thread only to wait for the throttle.
+    private static final LookupExecutor threadPool
+        = new LookupExecutor("show-lookup", ProviderThrottle.MAX_IN_FLIGHT, Thread.NORM_PRIORITY);
+
+    // What's returned for a listener that wasn't registered.
+    private static final LookupInterest NO_INTEREST = () -> { };
+
+    /**
+     * A set of show names to be looked up together, such as the show names of
+     * all the files the user just added.  Add each show name, with the listener
+     * for it, and then submit the batch.<p>
+     *
+     * Every listener is registered before any lookup is started, so each query
+     * string is looked up only once, however many files (and however many
+     * different spellings that reduce to the same query string) there are.
+     * The lookups are then queued, and run a few at a time; those with the most
+     * files waiting for them go first.  Show names that are already known are reported
+     * to their listeners as soon as they are added.  A lookup is called off if
+     * every interest in it is withdrawn before it's done.
+     */
+    public static class Batch {
+        // Each show name this batch is to look up, with the handle on its query.
+        private final Map<ShowName, LookupHandle> toDownload = new LinkedHashMap<>();
+
+        /**
+         * Adds a show name to look up.
+         *
+         * @param filenameShow
+         *            the name of the show as it appears in the filename
+         * @param listener
+         *            the listener to notify
+         * @return the listener's interest in the lookup, to withdraw if the
+         *            file no longer needs it
+         */
+        public LookupInterest add(String filenameShow, ShowInformationListener listener) {
+            if (listener == null) {
+                logger.warning("cannot look up show without a listener");
+                return NO_INTEREST;
+            }
+            ShowName showName = ShowName.mapShowName(filenameShow);
+            LookupInterest interest = showName.addShowInformationListener(listener);
+            LookupHandle handle = showName.beginQuery();
+            if (handle != null) {
+                toDownload.put(showName, handle);
+            }
+            return interest;
+        }
+
+        /**
+         * Starts the lookups of all the show names that were added and are not
+         * already known, or being looked up.
+         */
+        public void submit() {
+            toDownload.forEach(ShowStore::downloadShow);
+            if (toDownload.size() > 0) {
+                logger.info("queued " + toDownload.size() + " show lookups; "
+                            + getQueuedLookups() + " waiting, " + getActiveLookups()
+                            + " running");
+            }
+            toDownload.clear();
+        }
+    }
 
     /**
      * Submits the task to download the information about the ShowName.
@@ -128,16 +199,19 @@ public class ShowStore {
      * @param showName
      *    an object containing the part of the filename that is presumed to name
      *    the show, as well as the version of that string we can give the provider
+     * @param handle
+     *    the handle on the query, by which the task is called off
      * @param showFetcher
      *    the task that will download the information
      */
-    private static void submitDownloadTask(final ShowName showName,
+    private static void submitDownloadTask(final ShowName showName, final LookupHandle handle,
                                            final Callable<Boolean> showFetcher)
     {
         Future<Boolean> result = null;
         FailedShow failure = null;
         try {
-            result = threadPool.submit(showFetcher);
+            result = threadPool.submit(showFetcher, showName::getLookupPriority);
+            handle.setFuture(result);
         } catch (RejectedExecutionException | NullPointerException e) {
             logger.warning("unable to submit download task (" + showName + ") for execution");
             failure = showName.getFailedShow(new TVRenamerIOException(e.getMessage()));
@@ -157,52 +231,71 @@ public class ShowStore {
      * </p>
      * <ul>
      * <li>if we have already downloaded the show (the ShowName returns a matched show)
-     *     then just notify the listener</li>
+     *     then just notify the listener, right away, on this thread</li>
      * <li>if we don't have the show, but are in the process of downloading the show
-     *     (the show already has listeners) then add the listener to the registration</li>
-     * <li>if we don't have the show and aren't downloading, then add the listener and
-     *     kick off the download</li>
+     *     then the listener is notified when the download is done</li>
+     * <li>if we don't have the show and aren't downloading, then kick off the
+     *     download, and notify the listener when it's done</li>
      * </ul>
+     * This is a thin adapter over {@link #resolveShowName}.  To look up the show
+     * names of many files at once, use a {@link Batch}.
      *
      * @param filenameShow
      *            the name of the show as it appears in the filename
      * @param listener
      *            the listener to notify or register
+     * @return the listener's interest in the lookup, to withdraw if the file
+     *            no longer needs it
      */
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-    public static void mapStringToShow(String filenameShow, ShowInformationListener listener) {
+    public static LookupInterest mapStringToShow(String filenameShow,
+                                                 ShowInformationListener listener)
+    {
         if (listener == null) {
             logger.warning("cannot look up show without a listener");
-            return;
+            return NO_INTEREST;
         }
         ShowName showName = ShowName.mapShowName(filenameShow);
-        ShowOption showOption = showName.getMatchedShow();
+        LookupInterest interest = showName.addShowInformationListener(listener);
+        LookupHandle handle = showName.beginQuery();
+        if (handle != null) {
+            downloadShow(showName, handle);
+        }
+        return interest;
+    }
 
-        if (showOption == null) {
-            boolean needsDownload;
-            // Since "show" is null, we know we haven't downloaded the options for
-            // this filenameShow yet; that is, we know we haven't FINISHED doing so.
-            // But we might have started.  If the showName already has one or more
-            // listeners, that means the download is already underway.
-            synchronized (showName) {
-                needsDownload = showName.needsQuery();
-                // We add this listener whether or not the download has been started.
-                showName.addShowInformationListener(listener);
-            }
-            // Now we start a download only if we need to.
-            if (needsDownload) {
-                downloadShow(showName);
-            }
-            // If we've already downloaded the show, we don't need to involve the
-            // ShowName at all.  We invoke the listener's callback immediately and
-            // directly.  If, in the future, we expand ShowInformationListener so
-            // that there is more information to be sent later, we'd want to edit
-            // the following clauses to add the listener.
-        } else if (showOption.isFailedShow()) {
-            listener.downloadFailed(showOption.asFailedShow());
-        } else {
-            listener.downloadSucceeded(showOption.getShowInstance());
+    /**
+     * Looks up the show that the given show name refers to, downloading the
+     * options from the provider if necessary, as {@link #mapStringToShow} does.
+     *
+     * @param filenameShow
+     *            the name of the show as it appears in the filename
+     * @return a future which completes with the ShowOption the name maps to,
+     *     which is a FailedShow if the provider did not find it; or exceptionally,
+     *     with a DiscontinuedApiException, if the provider's API is gone.  Cancelling
+     *     it withdraws the caller's interest in the lookup.
+     */
+    public static CompletableFuture<ShowOption> resolveShowName(String filenameShow) {
+        ShowName showName = ShowName.mapShowName(filenameShow);
+        CompletableFuture<ShowOption> resolution = showName.getResolution();
+        LookupHandle handle = showName.beginQuery();
+        if (handle != null) {
+            downloadShow(showName, handle);
         }
+        return resolution;
+    }
+
+    /**
+     * @return the number of show lookups waiting for a thread
+     */
+    public static int getQueuedLookups() {
+        return threadPool.getQueuedCount();
+    }
+
+    /**
+     * @return the number of show lookups running
+     */
+    public static int getActiveLookups() {
+        return threadPool.getActiveCount();
     }
 
     /**
@@ -221,20 +314,35 @@ public class ShowStore {
      * @param showName
      *    an object containing the part of the filename that is presumed to name
      *    the show, as well as the version of that string we can give the provider
+     * @param handle
+     *    the handle on the query, which {@link ShowName#beginQuery} gave the caller
      *
      * Returns nothing; but via callback, sends the series from the list which best
      * matches the series information.
      */
-    private static void downloadShow(final ShowName showName) {
-        Callable<Boolean> showFetcher = () -> {
+    private static void downloadShow(final ShowName showName, final LookupHandle handle) {
+        if (handle.isCancelled()) {
+            // Called off already; whoever wants it next will start it again.
+            return;
+        }
+        Callable<Boolean> showFetcher = () -> handle.call(() -> {
             ShowOption showOption;
             try {
-                TheTVDBProvider.getShowOptions(showName);
-                showOption = showName.selectShowOption();
+                List<ShowOption> options = TheTVDBProvider.getShowOptions(showName);
+                if (handle.isCancelled()) {
+                    logger.fine("lookup of " + showName + " was called off");
+                    return false;
+                }
+                showOption = showName.selectShowOption(options);
             } catch (DiscontinuedApiException e) {
                 showName.apiDiscontinued();
                 return false;
             } catch (TVRenamerIOException e) {
+                if (handle.isCancelled()) {
+                    // Don't remember it as not found; it may be looked up again.
+                    logger.fine("lookup of " + showName + " was called off");
+                    return false;
+                }
                 showOption = showName.getFailedShow(e);
             }
 
@@ -245,8 +353,8 @@ public class ShowStore {
                 showName.nameResolved(showOption.getShowInstance());
             }
             return true;
-        };
-        submitDownloadTask(showName, showFetcher);
+        });
+        submitDownloadTask(showName, handle, showFetcher);
     }
 
     public static void cleanUp() {
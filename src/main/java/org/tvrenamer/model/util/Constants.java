@@ -210,6 +210,9 @@ public class Constants {
     private static final String CONFIGURATION_DIRECTORY_NAME = ".tvrenamer";
     private static final String PREFERENCES_FILENAME = "prefs.xml";
     private static final String OVERRIDES_FILENAME = "overrides.xml";
+    private static final String CACHE_DIRECTORY_NAME = "cache";
+    private static final String LISTINGS_DIRECTORY_NAME = "listings";
+    private static final String QUERY_STRINGS_FILENAME = "shows.txt";
 
     public static final Path TMP_DIR = Paths.get(Environment.TMP_DIR_NAME);
 
@@ -218,6 +221,19 @@ public class Constants {
     public static final Path CONFIGURATION_DIRECTORY = USER_HOME_DIR.resolve(CONFIGURATION_DIRECTORY_NAME);
     public static final Path PREFERENCES_FILE = CONFIGURATION_DIRECTORY.resolve(PREFERENCES_FILENAME);
     public static final Path OVERRIDES_FILE = CONFIGURATION_DIRECTORY.resolve(OVERRIDES_FILENAME);
+    // The tests set the system property "tvrenamer.cache.dir" to keep their cache
+    // apart from the user's.
+    public static final Path CACHE_DIRECTORY = cacheDirectory();
+    public static final Path LISTINGS_DIRECTORY = CACHE_DIRECTORY.resolve(LISTINGS_DIRECTORY_NAME);
+    public static final Path QUERY_STRINGS_FILE = CACHE_DIRECTORY.resolve(QUERY_STRINGS_FILENAME);
+
+    private static Path cacheDirectory() {
+        String dir = System.getProperty("tvrenamer.cache.dir");
+        if ((dir == null) || dir.isEmpty()) {
+            return CONFIGURATION_DIRECTORY.resolve(CACHE_DIRECTORY_NAME);
+        }
+        return Paths.get(dir);
+    }
 
     public static final Path PREFERENCES_FILE_LEGACY = USER_HOME_DIR.resolve("tvrenamer.preferences");
     public static final Path OVERRIDES_FILE_LEGACY = USER_HOME_DIR.resolve(".tvrenameroverrides");
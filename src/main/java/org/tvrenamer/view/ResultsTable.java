@@ -30,6 +30,7 @@ import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Link;
 import org.eclipse.swt.widgets.ProgressBar;
+import org.eclipse.swt.widgets.ScrollBar;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
@@ -46,8 +47,10 @@ import org.tvrenamer.controller.UpdateChecker;
 import org.tvrenamer.controller.UrlLauncher;
 import org.tvrenamer.controller.util.StringUtils;
 import org.tvrenamer.model.EpisodeDb;
+import org.tvrenamer.model.EpisodePlacement;
 import org.tvrenamer.model.FailedShow;
 import org.tvrenamer.model.FileEpisode;
+import org.tvrenamer.model.LookupInterest;
 import org.tvrenamer.model.Series;
 import org.tvrenamer.model.Show;
 import org.tvrenamer.model.ShowStore;
@@ -55,13 +58,19 @@ import org.tvrenamer.model.UserPreference;
 import org.tvrenamer.model.UserPreferences;
 
 import java.text.Collator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 public final class ResultsTable implements Observer, AddEpisodeListener {
@@ -79,6 +88,10 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
 
     private static final int DEFAULT_MAX_FAILURES_TO_LIST = 3;
 
+    // When choosing which lookup to do next, a file the user can see counts as
+    // this many files they can't, so the rows in view get their names first.
+    private static final int VISIBLE_LOOKUP_WEIGHT = 100;
+
     private final UIStarter ui;
     private final Shell shell;
     private final Display display;
@@ -93,6 +106,14 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
 
     private boolean apiDeprecated = false;
 
+    // The episodes whose rows are in view.  Replaced, never modified, on the UI
+    // thread, and read by the lookup threads.
+    private volatile Set<FileEpisode> visibleEpisodes = Collections.emptySet();
+
+    // Each row's interests in the lookups its file is waiting for, which are
+    // withdrawn when the row is deleted, so no one looks up what no row needs.
+    private final Map<TableItem, List<LookupInterest>> lookupInterests = new ConcurrentHashMap<>();
+
     private synchronized void checkDestinationDirectory() {
         boolean success = prefs.ensureDestDir();
         if (!success) {
@@ -229,6 +250,32 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
         return (ITEM_NOT_IN_TABLE != getTableItemIndex(item));
     }
 
+    /*
+     * Notes which episodes' rows are in view.  Must be called on the UI thread,
+     * whenever they might have changed.
+     */
+    private void noteVisibleRows() {
+        if (swtTable.isDisposed()) {
+            return;
+        }
+        int itemHeight = swtTable.getItemHeight();
+        int rows = (itemHeight > 0) ? ((swtTable.getClientArea().height / itemHeight) + 1) : 0;
+        int top = swtTable.getTopIndex();
+        int end = Math.min(swtTable.getItemCount(), top + rows);
+        Set<FileEpisode> visible = new HashSet<>();
+        for (int i = top; i < end; i++) {
+            FileEpisode episode = episodeMap.get(CURRENT_FILE_FIELD.getCellText(swtTable.getItem(i)));
+            if (episode != null) {
+                visible.add(episode);
+            }
+        }
+        visibleEpisodes = visible;
+    }
+
+    private int lookupWeight(final FileEpisode episode) {
+        return visibleEpisodes.contains(episode) ? VISIBLE_LOOKUP_WEIGHT : 1;
+    }
+
     private void listingsDownloaded(final TableItem item, final FileEpisode episode) {
         int epsFound = episode.listingsComplete();
         display.asyncExec(() -> {
@@ -249,10 +296,10 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
         });
     }
 
-    private void getSeriesListings(final Series series, final TableItem item,
-                                   final FileEpisode episode)
+    private LookupInterest getSeriesListings(final Series series, final TableItem item,
+                                             final FileEpisode episode)
     {
-        series.addListingsListener(new ShowListingsListener() {
+        return series.addListingsListener(new ShowListingsListener() {
             @Override
             public void listingsDownloadComplete() {
                 listingsDownloaded(item, episode);
@@ -262,6 +309,18 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
             public void listingsDownloadFailed(Exception err) {
                 listingsFailed(item, episode, err);
             }
+
+            @Override
+            public void listingsChanged(Set<EpisodePlacement> changed) {
+                if (changed.contains(episode.getEpisodePlacement())) {
+                    listingsDownloaded(item, episode);
+                }
+            }
+
+            @Override
+            public int getLookupWeight() {
+                return lookupWeight(episode);
+            }
         });
     }
 
@@ -299,6 +358,7 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
 
     @Override
     public void addEpisodes(final Queue<FileEpisode> episodes) {
+        ShowStore.Batch lookups = new ShowStore.Batch();
         for (final FileEpisode episode : episodes) {
             final TableItem item = createTableItem(episode);
             if (!episode.wasParsed()) {
@@ -317,7 +377,9 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
                 logger.fine("no show name found for " + episode);
                 continue;
             }
-            ShowStore.mapStringToShow(showName, new ShowInformationListener() {
+            final List<LookupInterest> held = new CopyOnWriteArrayList<>();
+            lookupInterests.put(item, held);
+            held.add(lookups.add(showName, new ShowInformationListener() {
                     @Override
                     public void downloadSucceeded(Show show) {
                         episode.setEpisodeShow(show);
@@ -327,8 +389,13 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
                                 STATUS_FIELD.setCellImage(item, ADDED);
                             }
                         });
-                        if (show.isValidSeries()) {
-                            getSeriesListings(show.asSeries(), item, episode);
+                        List<LookupInterest> held = lookupInterests.get(item);
+                        if ((held != null) && show.isValidSeries()) {
+                            held.add(getSeriesListings(show.asSeries(), item, episode));
+                            if (!lookupInterests.containsKey(item)) {
+                                // The row was deleted while we were adding it.
+                                held.forEach(LookupInterest::withdraw);
+                            }
                         }
                     }
 
@@ -344,8 +411,15 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
                         episode.setApiDiscontinued();
                         tableItemFailed(item, episode);
                     }
-                });
+
+                    @Override
+                    public int getLookupWeight() {
+                        return lookupWeight(episode);
+                    }
+                }));
         }
+        noteVisibleRows();
+        lookups.submit();
     }
 
     /**
@@ -471,6 +545,7 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
         }
         swtTable.setSortDirection(sortDirection);
         swtTable.setSortColumn(column.swtColumn);
+        noteVisibleRows();
     }
 
     /**
@@ -560,6 +635,10 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
     }
 
     private void deleteTableItem(final TableItem item) {
+        List<LookupInterest> held = lookupInterests.remove(item);
+        if (held != null) {
+            held.forEach(LookupInterest::withdraw);
+        }
         deleteItemCombo(item);
         episodeMap.remove(CURRENT_FILE_FIELD.getCellText(item));
         item.dispose();
@@ -575,6 +654,7 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
             }
         }
         swtTable.deselectAll();
+        noteVisibleRows();
     }
 
     private void updateUserPreferences(final UserPreference userPref) {
@@ -774,6 +854,7 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
                 for (final TableItem item : swtTable.getItems()) {
                     deleteTableItem(item);
                 }
+                noteVisibleRows();
             }
         });
 
@@ -902,6 +983,13 @@ public final class ResultsTable implements Observer, AddEpisodeListener {
             }
         });
 
+        // Lookups for the rows in view go first; keep track of which they are.
+        swtTable.addListener(SWT.Resize, event -> noteVisibleRows());
+        ScrollBar verticalBar = swtTable.getVerticalBar();
+        if (verticalBar != null) {
+            verticalBar.addListener(SWT.Selection, event -> noteVisibleRows());
+        }
+
         // editable table
         final TableEditor editor = new TableEditor(swtTable);
         editor.horizontalAlignment = SWT.CENTER;
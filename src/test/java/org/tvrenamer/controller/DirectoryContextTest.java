@@ -0,0 +1,49 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.tvrenamer.model.FileEpisode;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class DirectoryContextTest {
+
+    @Test
+    public void testInferredShowName() {
+        assertEquals("Dexter",
+                     new DirectoryContext(Paths.get("TV", "Dexter")).getInferredShowName());
+        assertEquals("Dexter",
+                     new DirectoryContext(Paths.get("TV", "Dexter", "Season 02")).getInferredShowName());
+        assertEquals("Dexter",
+                     new DirectoryContext(Paths.get("TV", "Dexter", "S02", "versions")).getInferredShowName());
+        assertEquals("Dexter",
+                     new DirectoryContext(Paths.get("TV", "Dexter.Season02")).getInferredShowName());
+        assertEquals("", new DirectoryContext(null).getInferredShowName());
+    }
+
+    @Test
+    public void testParseWithContext() {
+        Path directory = Paths.get("TV", "Dexter", "Season 04");
+        DirectoryContext context = new DirectoryContext(directory);
+        for (int i = 1; i <= 3; i++) {
+            FileEpisode episode = new FileEpisode(directory.resolve("s04e0" + i + ".mkv").toString());
+            FilenameParser.parseFilename(episode, context);
+            assertTrue(episode.wasParsed());
+            assertEquals("Dexter", episode.getFilenameShow());
+            assertEquals(4, episode.getEpisodePlacement().season);
+            assertEquals(i, episode.getEpisodePlacement().episode);
+        }
+    }
+
+    @Test
+    public void testContextForOtherDirectoryIsIgnored() {
+        DirectoryContext context = new DirectoryContext(Paths.get("TV", "Lost"));
+        FileEpisode episode = new FileEpisode(Paths.get("TV", "Dexter", "s04e01.mkv").toString());
+        FilenameParser.parseFilename(episode, context);
+        assertEquals("Dexter", episode.getFilenameShow());
+    }
+}
@@ -0,0 +1,218 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.tvrenamer.controller.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+/**
+ * FilenameMatcher is meant to produce exactly the same results as the cascade of
+ * regular expressions in FilenameParser.  FilenameParserTest verifies the end
+ * results for a collection of real filenames; this class compares the matcher
+ * directly against the regular expressions, both for hand-picked names and for
+ * a large number of names assembled at random from the kinds of fragments that
+ * the patterns care about.
+ */
+public class FilenameMatcherTest {
+
+    private static final String[] NAMES = {
+        "The.Daily.Show.S22E105.D.L.Hughley.HDTV.x264",
+        "neighbours.s23e233.pdtv.xvid-ss.txt",
+        "Futurama.S07E14.2-D Blacktop.HDTV.x264",
+        "game.of.thrones.5x01.mp4",
+        "the.simpsons.s10x05.avi",
+        "Lost - Season 1 Episode 13",
+        "Lost.Season-1-Episode-13.720p.mkv",
+        "The.Americans.2013.S01E04.720p.HDTV.x264",
+        "Castle.2009.S01E09.720p.HDTV.X264-DIMENSION.mkv",
+        "Marvels.Agents.of.S.H.I.E.L.D.S03E03.1080p.mkv",
+        "Doctor.Who.2005.8x11.Dark.Water.720p.HDTV.x264",
+        "house.of.cards.us.2013.s0108.hdtv.mkv",
+        "Dexter 407.Slack.Tide.hdtv.x264-sys.mkv",
+        "the.big.bang.theory.0507.mkv",
+        "Cheers - S09E21 - It's a Wonderful Wife - 1991.02.28.avi",
+        "24.s08.e01.720p.hdtv.x264",
+        "Mad Men 1x03.mp4",
+        "Fringe S05E04 4k.mkv",
+        "Sherlock.S0203.Reichenbach.Fall.mkv",
+        "show 1 02",
+        "no episode information at all",
+        "S01E02",
+        ".s01e02",
+        "a.s01e02",
+        "a1234.s1 02",
+        "12345.5.07",
+        "x 1 2 3 720p 1080p",
+    };
+
+    private static final String[] FRAGMENTS = {
+        "s", "S", "e", "E", "x", "X", "p", "k", ".", "-", " ", "_", "!", "'",
+        "0", "1", "2", "9", "01", "10", "123", "2010", "19999", "720p", "1080p",
+        "4k", "Season", "Episode", "Season ", " Episode-", "Show", "the", "\u00e9",
+    };
+
+    private static void assertSameAsRegex(final FilenameMatcher matcher, final String name) {
+        assertTrue("scan failed on <[" + name + "]>", matcher.scan(name));
+        boolean found = matcher.match();
+        Matcher regex = FilenameParser.matchWithRegex(name);
+        if (regex == null) {
+            assertFalse("matcher found a match (rule " + matcher.getRule()
+                        + ") for <[" + name + "]>", found);
+            return;
+        }
+        assertTrue("matcher found no match for <[" + name + "]>", found);
+        assertEquals("resolution rule for <[" + name + "]>",
+                     regex.groupCount() == 4, matcher.hasResolution());
+        assertEquals("show group for <[" + name + "]>", regex.group(1), matcher.getShowGroup());
+        assertEquals("season for <[" + name + "]>", regex.group(2), matcher.getSeason());
+        assertEquals("episode for <[" + name + "]>", regex.group(3), matcher.getEpisode());
+        if (regex.groupCount() == 4) {
+            assertEquals("resolution for <[" + name + "]>", regex.group(4), matcher.getResolution());
+        } else {
+            assertEquals("resolution for <[" + name + "]>", "", matcher.getResolution());
+        }
+
+        ParseResult result = new ParseResult();
+        result.parsedName.append(name);
+        matcher.copyTo(result);
+        assertEquals("trimmed show for <[" + name + "]>",
+                     StringUtils.trimFoundShow(regex.group(1)), result.getShowName());
+    }
+
+    @Test
+    public void testKnownNames() {
+        FilenameMatcher matcher = new FilenameMatcher();
+        for (String name : NAMES) {
+            assertSameAsRegex(matcher, name);
+        }
+    }
+
+    @Test
+    public void testRandomNames() {
+        FilenameMatcher matcher = new FilenameMatcher();
+        Random random = new Random(20170704L);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            name.setLength(0);
+            int pieces = 1 + random.nextInt(12);
+            for (int j = 0; j < pieces; j++) {
+                name.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameAsRegex(matcher, name.toString());
+        }
+    }
+
+    @Test
+    public void testPrefilteredRegexGivesSameResult() {
+        FilenameMatcher matcher = new FilenameMatcher();
+        Random random = new Random(31415L);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            name.setLength(0);
+            int pieces = 1 + random.nextInt(12);
+            for (int j = 0; j < pieces; j++) {
+                name.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            // The prefilter must also be right for names the matcher declines.
+            if (random.nextInt(4) == 0) {
+                name.insert(random.nextInt(name.length() + 1), '\n');
+            }
+            String text = name.toString();
+            matcher.scan(text);
+            Matcher expected = FilenameParser.matchWithRegex(text);
+            Matcher actual = FilenameParser.matchWithRegex(text, matcher.getFeatures());
+            if (expected == null) {
+                assertNull("prefiltered regex matched <[" + text + "]>", actual);
+            } else {
+                assertNotNull("prefiltered regex missed <[" + text + "]>", actual);
+                assertEquals("pattern for <[" + text + "]>", expected.pattern(), actual.pattern());
+            }
+        }
+    }
+
+    @Test
+    public void testPrefilterRulesOutImpossibleShapes() {
+        FilenameMatcher matcher = new FilenameMatcher();
+        assertTrue(matcher.scan("Show.Name.S01E02"));
+        int features = matcher.getFeatures();
+        assertTrue(FilenameMatcher.isPossible(8 + FilenameMatcher.SHAPE_SXXEYY, features));
+        assertFalse(FilenameMatcher.isPossible(FilenameMatcher.SHAPE_SXXEYY, features));
+        assertFalse(FilenameMatcher.isPossible(8 + FilenameMatcher.SHAPE_SSXEE, features));
+        assertFalse(FilenameMatcher.isPossible(8 + FilenameMatcher.SHAPE_YEAR, features));
+        assertFalse(FilenameMatcher.isPossible(8 + FilenameMatcher.SHAPE_SEASON_EPISODE, features));
+
+        assertTrue(matcher.scan("Show.2010.1x02.720p"));
+        features = matcher.getFeatures();
+        assertTrue(FilenameMatcher.isPossible(FilenameMatcher.SHAPE_YEAR, features));
+        assertFalse(FilenameMatcher.isPossible(FilenameMatcher.SHAPE_SSXEE, features));
+    }
+
+    @Test
+    public void testAdaptiveOrderGivesCanonicalResult() {
+        FilenameMatcher canonical = new FilenameMatcher();
+        FilenameMatcher adaptive = new FilenameMatcher();
+        ParserStatistics stats = new ParserStatistics();
+        Random random = new Random(1066L);
+        List<Integer> rules = new ArrayList<>();
+        for (int r = 0; r < FilenameMatcher.NUM_RULES; r++) {
+            rules.add(r);
+        }
+        int[] order = new int[FilenameMatcher.NUM_RULES];
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            Collections.shuffle(rules, random);
+            for (int r = 0; r < order.length; r++) {
+                order[r] = rules.get(r);
+            }
+            name.setLength(0);
+            int pieces = 1 + random.nextInt(12);
+            for (int j = 0; j < pieces; j++) {
+                name.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String text = name.toString();
+            canonical.scan(text);
+            adaptive.scan(text);
+            boolean found = canonical.match();
+            assertEquals("on <[" + text + "]>", found, adaptive.match(order, stats));
+            if (found) {
+                assertEquals("on <[" + text + "]>", canonical.getRule(), adaptive.getRule());
+                assertEquals("on <[" + text + "]>", canonical.getShowGroup(), adaptive.getShowGroup());
+                assertEquals("on <[" + text + "]>", canonical.getSeason(), adaptive.getSeason());
+                assertEquals("on <[" + text + "]>", canonical.getEpisode(), adaptive.getEpisode());
+                assertEquals("on <[" + text + "]>", canonical.getResolution(), adaptive.getResolution());
+            }
+        }
+    }
+
+    @Test
+    public void testLongName() {
+        StringBuilder name = new StringBuilder("A.Very.Long.Show.Name");
+        for (int i = 0; i < 40; i++) {
+            name.append(".Part.").append(i);
+        }
+        name.append(".S04E12.1080p.mkv");
+        assertSameAsRegex(new FilenameMatcher(), name.toString());
+    }
+
+    @Test
+    public void testLineTerminatorIsDeclined() {
+        FilenameMatcher matcher = new FilenameMatcher();
+        assertFalse(matcher.scan("Show.S01E02\n.mkv"));
+        assertTrue(matcher.scan("Show.S01E02.mkv"));
+        assertTrue(matcher.match());
+        assertEquals("Show.", matcher.getShowGroup());
+        assertNotNull(FilenameParser.matchWithRegex("Show.S01E02.mkv"));
+        assertNull(FilenameParser.matchWithRegex("Show"));
+    }
+}
@@ -0,0 +1,264 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.OkHttpClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tvrenamer.model.TVRenamerIOException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class HttpConnectionHandlerTest {
+    private static final String CONTENT = "<Data><Series><id>80379</id></Series></Data>";
+    private static final String SERIES_PATH = "/api/4A9560FF0B2670B2/series/80379/all/en.xml";
+
+    /*
+     * A server that gives the responses in the queue, in order, and then
+     * successful responses.  Each response is a status code, and, optionally,
+     * a Retry-After value after a space; or "slow", for a successful response
+     * that isn't sent until the test lets it go.
+     */
+    private HttpServer server;
+    private final ConcurrentLinkedQueue<String> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch slowResponse = new CountDownLatch(1);
+
+    private final List<Long> sleeps = new ArrayList<>();
+    private long nanos = 0L;
+    private CircuitBreaker breaker;
+    private EndpointStatistics statistics;
+    private HttpConnectionHandler handler;
+
+    private void respond(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String next = responses.poll();
+        int code = 200;
+        if ("slow".equals(next)) {
+            try {
+                slowResponse.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (next != null) {
+            String[] parts = next.split(" ");
+            code = Integer.parseInt(parts[0]);
+            if (parts.length > 1) {
+                exchange.getResponseHeaders().add("Retry-After", parts[1]);
+            }
+        }
+        byte[] body = ((code == 200) ? CONTENT : "error").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::respond);
+        server.start();
+        breaker = new CircuitBreaker(3, 1000L, () -> nanos);
+        statistics = new EndpointStatistics();
+        OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(2, TimeUnit.SECONDS)
+            .readTimeout(2, TimeUnit.SECONDS)
+            .build();
+        handler = new HttpConnectionHandler(client, 3, 100L, host -> breaker, statistics,
+                                            sleeps::add);
+    }
+
+    @After
+    public void stopServer() {
+        slowResponse.countDown();
+        server.stop(0);
+    }
+
+    private String url(final String path) {
+        return "http://" + server.getAddress().getHostString() + ":"
+            + server.getAddress().getPort() + path;
+    }
+
+    private String endpoint() {
+        return EndpointStatistics.endpoint(server.getAddress().getHostString(), SERIES_PATH);
+    }
+
+    @Test
+    public void testEndpointHidesIds() {
+        assertEquals("thetvdb.com/api/*/series/*/all/en.xml",
+                     EndpointStatistics.endpoint("thetvdb.com", SERIES_PATH));
+        assertEquals("thetvdb.com/api/GetSeries.php",
+                     EndpointStatistics.endpoint("thetvdb.com", "/api/GetSeries.php"));
+    }
+
+    @Test
+    public void testServerErrorsAreRetried() throws TVRenamerIOException {
+        responses.add("503");
+        responses.add("500");
+        assertEquals(CONTENT, handler.downloadUrl(url(SERIES_PATH)));
+        assertEquals(3, requests.get());
+        assertEquals(2, sleeps.size());
+        // Equal jitter: between half the delay and the whole delay, which doubles.
+        assertTrue(sleeps.get(0) >= 50L && sleeps.get(0) <= 100L);
+        assertTrue(sleeps.get(1) >= 100L && sleeps.get(1) <= 200L);
+
+        assertEquals(3L, statistics.getAttempts(endpoint()));
+        assertEquals(2L, statistics.getFailures(endpoint()));
+        assertEquals(2L, statistics.getRetries(endpoint()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testRetryAfterIsHonored() throws TVRenamerIOException {
+        responses.add("429 2");
+        assertEquals(CONTENT, handler.downloadUrl(url(SERIES_PATH)));
+        assertEquals(1, sleeps.size());
+        assertEquals(2000L, (long) sleeps.get(0));
+    }
+
+    @Test
+    public void testLongRetryAfterIsNotWaitedFor() {
+        responses.add("503 3600");
+        try {
+            handler.downloadUrl(url(SERIES_PATH));
+            fail("expected the download to fail");
+        } catch (TVRenamerIOException expected) {
+            assertEquals(1, requests.get());
+            assertTrue(sleeps.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRetryAfterDate() {
+        assertEquals(90000L, HttpConnectionHandler.parseRetryAfter("Wed, 21 Oct 2015 07:29:30 GMT",
+                                                                   1445412480000L));
+        assertEquals(120000L, HttpConnectionHandler.parseRetryAfter(" 120 ", 0L));
+        assertEquals(-1L, HttpConnectionHandler.parseRetryAfter("soon", 0L));
+        assertEquals(-1L, HttpConnectionHandler.parseRetryAfter(null, 0L));
+    }
+
+    @Test
+    public void testNotFoundIsNotRetried() {
+        responses.add("404");
+        try {
+            handler.downloadUrl(url(SERIES_PATH));
+            fail("expected the download to fail");
+        } catch (TVRenamerIOException expected) {
+            assertTrue(expected.getCause() instanceof FileNotFoundException);
+            assertEquals(1, requests.get());
+            assertTrue(sleeps.isEmpty());
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+    }
+
+    @Test
+    public void testBreakerOpensAndRecovers() throws TVRenamerIOException {
+        for (int i = 0; i < 3; i++) {
+            responses.add("502");
+        }
+        try {
+            handler.downloadUrl(url(SERIES_PATH));
+            fail("expected the download to fail");
+        } catch (TVRenamerIOException expected) {
+            assertEquals(3, requests.get());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // While the breaker is open, nothing is sent to the server.
+        try {
+            handler.downloadUrl(url(SERIES_PATH));
+            fail("expected the download to be refused");
+        } catch (TVRenamerIOException expected) {
+            assertEquals(3, requests.get());
+            assertEquals(1L, statistics.getRejected(endpoint()));
+        }
+
+        // After the cool-down, a trial request goes through, and closes it.
+        nanos += TimeUnit.SECONDS.toNanos(1);
+        assertEquals(CONTENT, handler.downloadUrl(url(SERIES_PATH)));
+        assertEquals(4, requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1L, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testFailedTrialReopensBreaker() {
+        breaker = new CircuitBreaker(2, 1000L, () -> nanos);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        nanos += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one trial at a time.
+        assertTrue(!breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(!breaker.allowRequest());
+        assertEquals(2L, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testCancelledLookupMakesNoRequest() {
+        LookupHandle handle = new LookupHandle("test");
+        handle.cancel();
+        try {
+            handle.call(() -> handler.downloadUrl(url(SERIES_PATH)));
+            fail("expected the download to be cancelled");
+        } catch (Exception expected) {
+            assertTrue(expected instanceof TVRenamerIOException);
+            assertEquals(0, requests.get());
+        }
+    }
+
+    @Test
+    public void testCancellingLookupStopsDownload() throws InterruptedException {
+        // One failure would open this breaker; a cancelled request is not one.
+        breaker = new CircuitBreaker(1, 1000L, () -> nanos);
+        responses.add("slow");
+        LookupHandle handle = new LookupHandle("test");
+        AtomicReference<Exception> outcome = new AtomicReference<>();
+        Thread lookup = new Thread(() -> {
+            try {
+                handle.call(() -> handler.downloadUrl(url(SERIES_PATH)));
+            } catch (Exception e) {
+                outcome.set(e);
+            }
+        });
+        lookup.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((requests.get() == 0) && (System.nanoTime() < deadline)) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(1, requests.get());
+
+        handle.cancel();
+        lookup.join(TimeUnit.SECONDS.toMillis(5));
+        assertTrue(outcome.get() instanceof TVRenamerIOException);
+        // Not retried, and not counted against the server.
+        assertEquals(1, requests.get());
+        assertTrue(sleeps.isEmpty());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0L, statistics.getFailures(endpoint()));
+    }
+}
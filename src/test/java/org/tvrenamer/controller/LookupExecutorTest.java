@@ -0,0 +1,120 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LookupExecutorTest {
+
+    /*
+     * Runs more tasks than the limit, each of which waits for the gate, and
+     * checks that no more than the limit ran at once, and that they started
+     * in the order they were submitted.
+     */
+    private void checkLimit(final LookupExecutor.Mode mode) throws InterruptedException {
+        LookupExecutor executor = new LookupExecutor("test-lookup", 3, Thread.NORM_PRIORITY, mode);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<Integer> started = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int task = i;
+            executor.execute(() -> {
+                started.add(task);
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                firstStarted.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(7, executor.getQueuedCount());
+        gate.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(3, mostRunning.get());
+        assertEquals(10, started.size());
+        // The first three may start in any order; the rest wait their turn.
+        for (int i = 3; i < 10; i++) {
+            assertTrue(started.indexOf(i) >= 3);
+        }
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    public void testPlatformThreadsAreLimited() throws InterruptedException {
+        checkLimit(LookupExecutor.Mode.PLATFORM);
+    }
+
+    @Test
+    public void testVirtualThreadsAreLimited() throws InterruptedException {
+        // On Java versions without virtual threads, this uses platform threads.
+        checkLimit(LookupExecutor.Mode.VIRTUAL);
+    }
+
+    @Test
+    public void testHighestPriorityGoesFirst() throws InterruptedException {
+        LookupExecutor executor = new LookupExecutor("test-lookup", 1, Thread.NORM_PRIORITY,
+                                                     LookupExecutor.Mode.PLATFORM);
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // While the first task runs, the others wait, and one's priority goes up.
+        List<String> order = new CopyOnWriteArrayList<>();
+        AtomicInteger waitingFiles = new AtomicInteger(1);
+        executor.submit(() -> order.add("one file"), () -> 1);
+        executor.submit(() -> order.add("five files"), () -> 5);
+        executor.submit(() -> order.add("also one file"), () -> 1);
+        executor.submit(() -> order.add("more files later"), waitingFiles::get);
+        executor.execute(() -> order.add("no priority"));
+        waitingFiles.set(10);
+        gate.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals("[more files later, five files, one file, also one file, no priority]",
+                     order.toString());
+    }
+
+    @Test
+    public void testShutdownNowReturnsWaitingTasks() throws InterruptedException {
+        LookupExecutor executor = new LookupExecutor("test-lookup", 1, Thread.NORM_PRIORITY,
+                                                     LookupExecutor.Mode.PLATFORM);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger interrupted = new AtomicInteger();
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                TimeUnit.SECONDS.sleep(30);
+            } catch (InterruptedException ie) {
+                interrupted.incrementAndGet();
+            }
+        });
+        executor.execute(() -> { });
+        executor.execute(() -> { });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, interrupted.get());
+    }
+}
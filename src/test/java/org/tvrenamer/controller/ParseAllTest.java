@@ -0,0 +1,49 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParseAllTest {
+
+    @Test
+    public void testResultsInInputOrder() {
+        List<Path> paths = new ArrayList<>();
+        for (int season = 1; season <= 10; season++) {
+            for (int episode = 1; episode <= 30; episode++) {
+                String basename = String.format("s%02de%02d.mkv", season, episode);
+                paths.add(Paths.get("TV", "Show " + season, "Season " + season, basename));
+            }
+        }
+        paths.add(Paths.get("TV", "unparseable.txt"));
+
+        List<ParsedFilename> results = FilenameParser.parseAll(paths);
+        assertEquals(paths.size(), results.size());
+
+        int i = 0;
+        for (int season = 1; season <= 10; season++) {
+            for (int episode = 1; episode <= 30; episode++) {
+                ParsedFilename parsed = results.get(i++);
+                assertTrue(parsed.wasParsed());
+                assertEquals("Show " + season, parsed.filenameShow);
+                assertEquals(season, parsed.season);
+                assertEquals(episode, parsed.episode);
+            }
+        }
+        assertSame(ParsedFilename.FAILED, results.get(i));
+        assertFalse(results.get(i).wasParsed());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(FilenameParser.parseAll(new ArrayList<>()).isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ParseCacheTest {
+
+    private static ParsedFilename parse(final String name) {
+        return FilenameParser.parseName(name);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        ParseCache cache = new ParseCache(10);
+        String name = "Lost.S01E13.720p.mkv";
+        assertNull(cache.get(name));
+        ParsedFilename parsed = parse(name);
+        cache.put(name, parsed);
+        assertSame(parsed, cache.get(name));
+        assertSame(parsed, cache.get(name));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertEquals("Lost", parsed.filenameShow);
+        assertEquals(1, parsed.season);
+        assertEquals(13, parsed.episode);
+        assertEquals("720p", parsed.resolution);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ParseCache cache = new ParseCache(2);
+        cache.put("a", ParsedFilename.FAILED);
+        cache.put("b", ParsedFilename.FAILED);
+        // touch "a", so "b" is the least recently used
+        cache.get("a");
+        cache.put("c", ParsedFilename.FAILED);
+        assertEquals(2, cache.size());
+        assertSame(ParsedFilename.FAILED, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(ParsedFilename.FAILED, cache.get("c"));
+    }
+
+    @Test
+    public void testEvictsAnEighthAtOnce() {
+        ParseCache cache = new ParseCache(16);
+        for (int i = 0; i < 16; i++) {
+            cache.put("name" + i, ParsedFilename.FAILED);
+        }
+        cache.get("name0");
+        cache.put("name16", ParsedFilename.FAILED);
+        assertEquals(14, cache.size());
+        assertSame(ParsedFilename.FAILED, cache.get("name0"));
+        assertNull(cache.get("name1"));
+        assertNull(cache.get("name3"));
+        assertSame(ParsedFilename.FAILED, cache.get("name4"));
+        assertSame(ParsedFilename.FAILED, cache.get("name16"));
+    }
+
+    @Test
+    public void testClear() {
+        ParseCache cache = new ParseCache(2);
+        cache.put("a", parse("a.s01e02"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,82 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.tvrenamer.model.Show;
+
+import java.util.Random;
+
+public class ParseResultTest {
+
+    @Test
+    public void testReusedResult() {
+        ParseResult result = new ParseResult();
+
+        assertTrue(FilenameParser.parse("The.Americans.2013.S01E04.720p.HDTV.x264", result));
+        assertEquals("The.Americans.2013", result.getShowName());
+        assertEquals(1, result.getSeason());
+        assertEquals(4, result.getEpisode());
+        assertTrue(result.hasResolution());
+        assertEquals("720p", result.getResolution());
+        assertEquals("720p", result.getParsedName().subSequence(result.getResolutionStart(),
+                                                                 result.getResolutionEnd()).toString());
+
+        assertTrue(FilenameParser.parse("Dexter 407.Slack.Tide.hdtv.x264-sys.mkv", result));
+        assertEquals("Dexter", result.getShowName());
+        assertEquals(4, result.getSeason());
+        assertEquals(7, result.getEpisode());
+        assertFalse(result.hasResolution());
+        assertEquals("", result.getResolution());
+
+        assertFalse(FilenameParser.parse("no episode information", result));
+        assertEquals(Show.NO_SEASON, result.getSeason());
+        assertEquals(Show.NO_EPISODE, result.getEpisode());
+    }
+
+    @Test
+    public void testNumberTooBig() {
+        ParseResult result = new ParseResult();
+        assertTrue(FilenameParser.parse("Show.S99999999999E0000000000002.avi", result));
+        assertEquals(Show.NO_SEASON, result.getSeason());
+        assertEquals(2, result.getEpisode());
+    }
+
+    @Test
+    public void testLineTerminatorInShowName() {
+        // The matcher leaves this one to the regular expressions; the separator
+        // before the line terminator is trimmed, as trimFoundShow always has.
+        ParseResult result = new ParseResult();
+        assertTrue(FilenameParser.parse("Show.\nS01E02.avi", result));
+        assertEquals("Show\n", result.getShowName());
+        assertEquals(1, result.getSeason());
+        assertEquals(2, result.getEpisode());
+
+        // Reused for a name that doesn't need the regular expressions.
+        assertTrue(FilenameParser.parse("Other.Show.S03E04.avi", result));
+        assertEquals("Other.Show", result.getShowName());
+    }
+
+    @Test
+    public void testStripJunkMatchesStringVersion() {
+        String[] fragments = {
+            "hdtv", "HDTV", "HdTv", "dvdrip", "DVDRip", "dvd", "rip", "hd", "tv",
+            ".", " ", "-", "S01E02", "Show", "720p", "\u00e9",
+        };
+        Random random = new Random(42L);
+        StringBuilder name = new StringBuilder();
+        StringBuilder stripped = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            name.setLength(0);
+            int pieces = 1 + random.nextInt(8);
+            for (int j = 0; j < pieces; j++) {
+                name.append(fragments[random.nextInt(fragments.length)]);
+            }
+            FilenameParser.stripJunk(name, stripped);
+            assertEquals(FilenameParser.stripJunk(name.toString()), stripped.toString());
+        }
+    }
+}
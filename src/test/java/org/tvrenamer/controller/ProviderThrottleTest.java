@@ -0,0 +1,76 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProviderThrottleTest {
+
+    @Test
+    public void testInFlightIsBounded() throws Exception {
+        // A bucket big and fast enough that only the in-flight limit matters.
+        ProviderThrottle throttle
+            = new ProviderThrottle(3, new TokenBucket(1000, 1.0e6, System::nanoTime));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(pool.submit(() -> {
+                    ProviderThrottle.Permit permit = throttle.acquire("request");
+                    try {
+                        mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        release.await();
+                        running.decrementAndGet();
+                    } finally {
+                        permit.close();
+                    }
+                    return null;
+                }));
+            }
+            long deadline = System.currentTimeMillis() + 5000L;
+            while ((throttle.getWaiting() < 7) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(10L);
+            }
+            assertEquals(3, throttle.getInFlight());
+            assertEquals(7, throttle.getWaiting());
+
+            release.countDown();
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(3, mostRunning.get());
+        assertEquals(0, throttle.getInFlight());
+        assertEquals(0, throttle.getWaiting());
+        assertEquals(10L, throttle.getRequestCount());
+    }
+
+    @Test
+    public void testPermitIsReleasedOnce() throws Exception {
+        ProviderThrottle throttle
+            = new ProviderThrottle(1, new TokenBucket(1000, 1.0e6, System::nanoTime));
+        ProviderThrottle.Permit permit = throttle.acquire("request");
+        permit.close();
+        permit.close();
+        assertEquals(0, throttle.getInFlight());
+        ProviderThrottle.Permit again = throttle.acquire("request");
+        assertEquals(1, throttle.getInFlight());
+        again.close();
+        assertTrue(throttle.toString().contains("2 requests"));
+    }
+}
@@ -0,0 +1,142 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tvrenamer.model.TVRenamerIOException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordReplayInterceptorTest {
+    private static final String CONTENT
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data><Series><SeriesName>Caf\u00e9"
+        + "</SeriesName></Series></Data>";
+    private static final String SEARCH = "/api/GetSeries.php?seriesname=quintuplets";
+    private static final String MISSING = "/api/GetSeries.php?seriesname=nothing";
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer startServer() throws IOException {
+        HttpServer server
+            = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            boolean found = exchange.getRequestURI().toString().equals(SEARCH);
+            byte[] body = (found ? CONTENT : "").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(found ? 200 : 404, found ? body.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static HttpConnectionHandler handler(final RecordReplayInterceptor interceptor) {
+        OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(2, TimeUnit.SECONDS)
+            .readTimeout(2, TimeUnit.SECONDS)
+            .addInterceptor(interceptor)
+            .build();
+        CircuitBreaker breaker = new CircuitBreaker(100, 1000L, System::nanoTime);
+        return new HttpConnectionHandler(client, 1, 1L, host -> breaker,
+                                         new EndpointStatistics(), millis -> { });
+    }
+
+    @Test
+    public void testFixtureName() {
+        HttpUrl url = HttpUrl.parse("http://thetvdb.com/api/GetSeries.php?seriesname=the%20office");
+        assertEquals("api_GetSeries.php_seriesname=the_20office.http",
+                     RecordReplayInterceptor.fixtureName(url));
+        // The host doesn't matter.
+        assertEquals(RecordReplayInterceptor.fixtureName(url),
+                     RecordReplayInterceptor.fixtureName(url.newBuilder().host("127.0.0.1")
+                                                         .port(8080).build()));
+    }
+
+    @Test
+    public void testRecordedResponsesAreReplayed() throws IOException {
+        Path fixtures = tempFolder.getRoot().toPath().resolve("fixtures");
+        HttpServer server = startServer();
+        String base = "http://" + server.getAddress().getHostString() + ":"
+            + server.getAddress().getPort();
+        try {
+            HttpConnectionHandler recorder = handler(new RecordReplayInterceptor(
+                RecordReplayInterceptor.Mode.RECORD, fixtures,
+                RecordReplayInterceptor.NetworkProfile.NONE));
+            assertEquals(CONTENT, recorder.downloadUrl(base + SEARCH));
+            try {
+                recorder.downloadUrl(base + MISSING);
+                fail("expected the download to fail");
+            } catch (TVRenamerIOException expected) {
+                assertTrue(expected.getCause() instanceof FileNotFoundException);
+            }
+        } finally {
+            server.stop(0);
+        }
+        assertEquals(2, requests.get());
+        assertTrue(Files.exists(fixtures.resolve("api_GetSeries.php_seriesname=quintuplets.http")));
+
+        // The server is gone; the responses, including the 404, come from the fixtures.
+        HttpConnectionHandler replayer = handler(new RecordReplayInterceptor(
+            RecordReplayInterceptor.Mode.REPLAY, fixtures,
+            RecordReplayInterceptor.NetworkProfile.NONE));
+        assertEquals(CONTENT, replayer.downloadUrl("http://thetvdb.com" + SEARCH));
+        try {
+            replayer.downloadUrl("http://thetvdb.com" + MISSING);
+            fail("expected the download to fail");
+        } catch (TVRenamerIOException expected) {
+            assertTrue(expected.getCause() instanceof FileNotFoundException);
+        }
+        try {
+            replayer.downloadUrl("http://thetvdb.com/api/GetSeries.php?seriesname=unrecorded");
+            fail("expected the download to fail");
+        } catch (TVRenamerIOException expected) {
+            assertTrue(expected.getMessage().contains("unrecorded"));
+        }
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testProfileSlowsReplay() throws IOException {
+        Path fixtures = tempFolder.getRoot().toPath();
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 32 * 1024) {
+            content.append(CONTENT);
+        }
+        Files.write(fixtures.resolve("api_GetSeries.php_seriesname=quintuplets.http"),
+                    ("TVRFIXTURE 1\n200\nContent-Type: text/xml; charset=utf-8\n\n" + content)
+                    .getBytes(StandardCharsets.UTF_8));
+        HttpConnectionHandler replayer = handler(new RecordReplayInterceptor(
+            RecordReplayInterceptor.Mode.REPLAY, fixtures,
+            RecordReplayInterceptor.NetworkProfile.SLOW));
+
+        long start = System.nanoTime();
+        assertEquals(content.toString(), replayer.downloadUrl("http://thetvdb.com" + SEARCH));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 400 ms of latency, and half a second for 32K at 64K per second.
+        assertTrue("replay took only " + elapsedMillis + " ms", elapsedMillis >= 850L);
+    }
+}
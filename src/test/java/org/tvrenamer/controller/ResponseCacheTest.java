@@ -0,0 +1,166 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class ResponseCacheTest {
+    private static final long HOUR = 60L * 60L * 1000L;
+    private static final String SEARCH_URL
+        = "http://thetvdb.com/api/GetSeries.php?seriesname=quintuplets";
+    private static final String DOCUMENT
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data><Series><SeriesName>Caf\u00e9"
+        + "</SeriesName></Series></Data>";
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static String read(final Reader reader) throws IOException {
+        try (Reader in = reader) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[100];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                text.append(buffer, 0, count);
+            }
+            return text.toString();
+        }
+    }
+
+    private static void put(final ResponseCache cache, final String key, final String document,
+                            final long timeToLive)
+        throws IOException
+    {
+        try (ResponseCache.Entry entry = cache.create(key)) {
+            assertNotNull(entry);
+            entry.write(new StringReader(document));
+            assertEquals(document, read(entry.openReader()));
+            entry.commit(timeToLive);
+        }
+    }
+
+    private long countFiles(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testEntryIsStoredUntilItExpires() throws IOException {
+        Path dir = tempFolder.getRoot().toPath().resolve("cache");
+        TestClock clock = new TestClock();
+        ResponseCache cache = new ResponseCache(dir, 1000000L, clock);
+        assertNull(cache.get(SEARCH_URL));
+
+        put(cache, SEARCH_URL, DOCUMENT, 2 * HOUR);
+        assertEquals(DOCUMENT, read(cache.get(SEARCH_URL)));
+
+        // Another instance, such as the next run of the program, sees the entry.
+        ResponseCache reopened = new ResponseCache(dir, 1000000L, clock);
+        assertEquals(DOCUMENT, read(reopened.get(SEARCH_URL)));
+        assertNull(reopened.get(SEARCH_URL + "x"));
+
+        clock.advance(HOUR);
+        assertEquals(DOCUMENT, read(cache.get(SEARCH_URL)));
+        clock.advance(2 * HOUR);
+        assertNull(cache.get(SEARCH_URL));
+    }
+
+    @Test
+    public void testUncommittedEntryIsDiscarded() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        ResponseCache cache = new ResponseCache(dir, 1000000L, new TestClock());
+        try (ResponseCache.Entry entry = cache.create(SEARCH_URL)) {
+            assertNotNull(entry);
+            entry.write(new StringReader(DOCUMENT));
+        }
+        assertNull(cache.get(SEARCH_URL));
+        assertEquals(0L, countFiles(dir));
+    }
+
+    @Test
+    public void testReplaceAndRemove() throws IOException {
+        ResponseCache cache = new ResponseCache(tempFolder.getRoot().toPath(), 1000000L,
+                                                new TestClock());
+        put(cache, SEARCH_URL, DOCUMENT, HOUR);
+        put(cache, SEARCH_URL, "<Data/>", HOUR);
+        assertEquals("<Data/>", read(cache.get(SEARCH_URL)));
+        cache.remove(SEARCH_URL);
+        assertNull(cache.get(SEARCH_URL));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAreEvicted() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        TestClock clock = new TestClock();
+        StringBuilder document = new StringBuilder();
+        while (document.length() < 1000) {
+            document.append(DOCUMENT);
+        }
+        // Room for three entries, but not four.
+        ResponseCache cache = new ResponseCache(dir, 3500L, clock);
+        for (int i = 0; i < 3; i++) {
+            put(cache, "key" + i, document.toString(), HOUR);
+            clock.advance(1000L);
+        }
+        // Use the first one, so the second is now the least recently used.
+        assertEquals(document.toString(), read(cache.get("key0")));
+        clock.advance(1000L);
+
+        put(cache, "key3", document.toString(), HOUR);
+        assertEquals(document.toString(), read(cache.get("key0")));
+        assertNull(cache.get("key1"));
+        assertEquals(document.toString(), read(cache.get("key2")));
+        assertEquals(document.toString(), read(cache.get("key3")));
+        assertEquals(3L, countFiles(dir));
+    }
+
+    @Test
+    public void testReplacedAndRemovedEntriesAreNotCounted() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        TestClock clock = new TestClock();
+        StringBuilder document = new StringBuilder();
+        while (document.length() < 1000) {
+            document.append(DOCUMENT);
+        }
+        // Room for two entries, but not three.
+        ResponseCache cache = new ResponseCache(dir, 2500L, clock);
+        put(cache, "key0", document.toString(), HOUR);
+        clock.advance(1000L);
+        for (int i = 0; i < 5; i++) {
+            put(cache, "key1", document.toString(), HOUR);
+            clock.advance(1000L);
+        }
+        cache.remove("key1");
+        put(cache, "key2", document.toString(), HOUR);
+        assertEquals(document.toString(), read(cache.get("key0")));
+        assertEquals(document.toString(), read(cache.get("key2")));
+        assertEquals(2L, countFiles(dir));
+    }
+
+    @Test
+    public void testCorruptEntryIsIgnored() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        ResponseCache cache = new ResponseCache(dir, 1000000L, new TestClock());
+        put(cache, SEARCH_URL, DOCUMENT, HOUR);
+        try (Stream<Path> files = Files.list(dir)) {
+            Path file = files.findFirst().get();
+            Files.write(file, "garbage".getBytes("UTF-8"));
+        }
+        assertNull(cache.get(SEARCH_URL));
+        cache.clear();
+        assertFalse(countFiles(dir) > 0L);
+    }
+}
@@ -0,0 +1,38 @@
+package org.tvrenamer.controller;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when the test moves it.
+ */
+public class TestClock extends Clock {
+    private long millis = 1500000000000L;
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param elapsedMillis
+     *    how far to move it, in milliseconds
+     */
+    public void advance(final long elapsedMillis) {
+        millis += elapsedMillis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+}
@@ -14,6 +14,13 @@
  * to choose data that is most likely to fail if and only if our tvdb-fetching code
  * is broken, and not for any other reason.
  *
+ * To run these tests without the network, record the responses once, with
+ * -Dtvrenamer.http.mode=record -Dtvrenamer.http.fixtures=(directory), and then
+ * replay them with -Dtvrenamer.http.mode=replay; see RecordReplayInterceptor.
+ * The cache is always refreshed here, so that responses come through the
+ * network layer, and not from the cache; and the build points the cache, with
+ * -Dtvrenamer.cache.dir, at a directory of its own, not the user's.
+ *
  */
 
 package org.tvrenamer.controller;
@@ -23,6 +30,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.Test;
@@ -49,6 +58,16 @@ public class TheTVDBProviderTest {
     private static final String API_DISCONTINUED_NAME = "api_dead";
     private static final Boolean RUN_EXTRA_TESTS = false;
 
+    @BeforeClass
+    public static void refreshCache() {
+        TheTVDBProvider.setRefreshCache(true);
+    }
+
+    @AfterClass
+    public static void useCache() {
+        TheTVDBProvider.setRefreshCache(Boolean.getBoolean("tvrenamer.cache.refresh"));
+    }
+
     /**
      * Static inner class to use as a Listener for downloading show listings.
      * Takes a completable future in its constructor, and episode information.
@@ -177,8 +196,9 @@ public class TheTVDBProviderTest {
         ShowOption best = showName.getMatchedShow();
 
         if (best == null) {
+            List<ShowOption> options = new LinkedList<>();
             try {
-                TheTVDBProvider.getShowOptions(showName);
+                options = TheTVDBProvider.getShowOptions(showName);
             } catch (DiscontinuedApiException api) {
                 fail("API deprecation discovered getting show options for " + queryString);
             } catch (Exception e) {
@@ -186,9 +206,9 @@ public class TheTVDBProviderTest {
             }
             assertTrue("got no options on showName <[" + showName.getExampleFilename()
                        + "]> (from input <[" + queryString + "]>)",
-                       showName.hasShowOptions());
+                       !options.isEmpty());
 
-            best = showName.selectShowOption();
+            best = showName.selectShowOption(options);
         }
         assertEquals("resolved show name <[" + showName.getExampleFilename() + "]> to wrong series;",
                      actualName, best.getName());
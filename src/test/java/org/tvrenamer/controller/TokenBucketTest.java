@@ -0,0 +1,52 @@
+package org.tvrenamer.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private long now = 0L;
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        TokenBucket bucket = new TokenBucket(3, 2.0, () -> now);
+        // A full bucket lets a burst go at once.
+        assertEquals(0L, bucket.reserve());
+        assertEquals(0L, bucket.reserve());
+        assertEquals(0L, bucket.reserve());
+        // After that, one every half second, in the order they asked.
+        assertEquals(SECOND / 2, bucket.reserve());
+        assertEquals(SECOND, bucket.reserve());
+
+        // Once the reserved tokens have been added, requests go again at the rate.
+        now += SECOND;
+        assertEquals(SECOND / 2, bucket.reserve());
+    }
+
+    @Test
+    public void testBucketDoesNotOverfill() {
+        TokenBucket bucket = new TokenBucket(2, 10.0, () -> now);
+        now += 60L * SECOND;
+        assertEquals(0L, bucket.reserve());
+        assertEquals(0L, bucket.reserve());
+        assertEquals(SECOND / 10, bucket.reserve());
+    }
+
+    @Test
+    public void testRefillsBetweenRequests() {
+        TokenBucket bucket = new TokenBucket(1, 4.0, () -> now);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0L, bucket.reserve());
+            now += SECOND / 4;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new TokenBucket(1, 0.0, () -> now);
+    }
+}
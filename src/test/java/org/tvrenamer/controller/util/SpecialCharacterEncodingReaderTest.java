@@ -0,0 +1,119 @@
+package org.tvrenamer.controller.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * SpecialCharacterEncodingReader is meant to produce exactly what
+ * StringUtils.encodeSpecialCharacters produces.  Compare the two on strings
+ * made up at random, read a few characters at a time, from a Reader which
+ * itself only provides a few characters at a time, so that the special
+ * characters land on the boundaries between reads.
+ */
+public class SpecialCharacterEncodingReaderTest {
+
+    private static final String[] FRAGMENTS = {
+        "<?xml", "<?xm", "<", "?", "x", "&", "& ", "&&", " ", "  ", "amp;", "%20", "Data",
+        "\n", "\u00e9",
+    };
+
+    /*
+     * A Reader that returns at most a random number of characters from each
+     * read, the way a network stream might.
+     */
+    private static class TrickleReader extends Reader {
+        private final Reader in;
+        private final Random random;
+
+        TrickleReader(final Reader in, final Random random) {
+            this.in = in;
+            this.random = random;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            return in.read(cbuf, off, Math.min(len, 1 + random.nextInt(4)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static String readAll(final Reader reader, final Random random) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] chunk = new char[8];
+        while (true) {
+            if (random.nextInt(5) == 0) {
+                int c = reader.read();
+                if (c < 0) {
+                    break;
+                }
+                text.append((char) c);
+            } else {
+                int count = reader.read(chunk, 0, 1 + random.nextInt(chunk.length));
+                if (count < 0) {
+                    break;
+                }
+                text.append(chunk, 0, count);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void assertEncodedLike(final String input, final Random random)
+        throws IOException
+    {
+        try (Reader reader = new SpecialCharacterEncodingReader(
+                 new TrickleReader(new StringReader(input), random)))
+        {
+            assertEquals("input <[" + input + "]>",
+                         StringUtils.encodeSpecialCharacters(input), readAll(reader, random));
+        }
+    }
+
+    @Test
+    public void testEncodesLikeEncodeSpecialCharacters() throws IOException {
+        Random random = new Random(20170801L);
+        assertEncodedLike("", random);
+        assertEncodedLike("&", random);
+        assertEncodedLike("& ", random);
+        assertEncodedLike("<?xml version=\"1.0\"?><Data>Law & Order</Data>", random);
+        assertEncodedLike("<Data>Law & Order</Data>", random);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder input = new StringBuilder();
+            int pieces = random.nextInt(12);
+            for (int j = 0; j < pieces; j++) {
+                input.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertEncodedLike(input.toString(), random);
+        }
+    }
+
+    @Test
+    public void testLongDocument() throws IOException {
+        Random random = new Random(1L);
+        StringBuilder input = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data>");
+        for (int i = 0; i < 5000; i++) {
+            input.append("<Episode><EpisodeName>Rock & Roll ").append(i)
+                .append("</EpisodeName></Episode>\n");
+        }
+        input.append("</Data>");
+        assertEncodedLike(input.toString(), random);
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        try (Reader reader = new SpecialCharacterEncodingReader(new StringReader("a & b"))) {
+            assertEquals(4L, reader.skip(4L));
+            assertEquals("&amp;%20b", readAll(reader, new Random(2L)));
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package org.tvrenamer.controller.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.tvrenamer.controller.util.StringUtils.*;
 
 import org.junit.Test;
 
+import java.util.Random;
+
 public class StringUtilsTest {
 
     @Test
@@ -316,6 +319,64 @@ public class StringUtilsTest {
         assertEquals("New Girl", replacePunctuation("New~Girl"));
     }
 
+    @Test
+    public void testSanitiseCleanTitleReturnsOriginal() {
+        String title = "The Simpsons [8x01] Treehouse of Horror VII";
+        assertSame(title, sanitiseTitle(title));
+        assertSame(title, replaceIllegalCharacters(title));
+        assertEquals(title, sanitiseTitle("  " + title + "\t"));
+        assertEquals("", sanitiseTitle(""));
+        assertEquals("", sanitiseTitle(" "));
+    }
+
+    @Test
+    public void testLegalFilenameCharacters() {
+        for (char c = 0; c < 0x3000; c++) {
+            assertEquals(String.valueOf((int) c), !ILLEGAL_CHARACTERS.contains(c),
+                         isLegalFilenameCharacter(c));
+            String expected = SANITISE.containsKey(c) ? "a" + SANITISE.get(c) + "b" : "a" + c + "b";
+            assertEquals(expected, replaceIllegalCharacters("a" + c + "b"));
+        }
+    }
+
+    private static final String[] PUNCTUATION_FRAGMENTS = {
+        "a", "b", "z", "A", "Q", "Z", "0", "7", "-", "--", ".", "..", " ", "  ", "'",
+        "!", "?", "_", ":", ",", "\\", "/", "&", "(", ")", "\t", "\u00e9", "\u00c9",
+        "\u00a0", "of", "The", "S.H.", "x-", "-y", "3D", "Mr.",
+    };
+
+    private static final String[] REGEX_ONLY_FRAGMENTS = {
+        "\n", "\r\n", "\u2028", "\ud83d\ude00",
+    };
+
+    private static String randomPunctuationInput(final Random random, final int pieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            if (random.nextInt(40) == 0) {
+                text.append(REGEX_ONLY_FRAGMENTS[random.nextInt(REGEX_ONLY_FRAGMENTS.length)]);
+            } else {
+                text.append(PUNCTUATION_FRAGMENTS[random.nextInt(PUNCTUATION_FRAGMENTS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * replacePunctuation is a hand-written version of a series of regular
+     * expression replacements, which are kept as replacePunctuationWithRegex.
+     * Compare the two on strings made up at random, from pieces chosen to
+     * exercise the individual replacements and the interactions between them.
+     */
+    @Test
+    public void testReplacePunctuationMatchesRegex() {
+        Random random = new Random(20170531L);
+        for (int i = 0; i < 100000; i++) {
+            String input = randomPunctuationInput(random, random.nextInt(12));
+            assertEquals("input <[" + input + "]>",
+                         replacePunctuationWithRegex(input), replacePunctuation(input));
+        }
+    }
+
     /**
      * Test trimFoundShow.  It should trim separator characters (space, hyphen,
      * dot, underscore) from the beginning and end of the string, but not change
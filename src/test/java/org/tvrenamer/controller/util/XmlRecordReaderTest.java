@@ -0,0 +1,145 @@
+package org.tvrenamer.controller.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * XmlRecordReader replaced a DOM and a set of XPath expressions.  Compare it
+ * to that, on documents made up at random, in the shape of the documents we
+ * get from the provider, but with the kinds of things that the provider
+ * doesn't usually send: missing, repeated and nested elements, entities, CDATA,
+ * comments, and records in the wrong place.
+ */
+public class XmlRecordReaderTest {
+
+    private static final String[] FIELDS = { "id", "EpisodeName", "FirstAired" };
+
+    private static final String[] TEXT_FRAGMENTS = {
+        "Pilot", " ", "  ", "\n", "42", "&amp;", "&lt;", "&#233;", "<![CDATA[a<b]]>",
+        "<!-- comment -->", "<b>bold</b>", "<id>inner</id>", "",
+    };
+
+    private static final String[] ELEMENT_NAMES = {
+        "id", "EpisodeName", "FirstAired", "SeasonNumber", "Episode", "Data",
+    };
+
+    private static void appendText(final StringBuilder xml, final Random random) {
+        int pieces = random.nextInt(4);
+        for (int i = 0; i < pieces; i++) {
+            xml.append(TEXT_FRAGMENTS[random.nextInt(TEXT_FRAGMENTS.length)]);
+        }
+    }
+
+    private static void appendRecord(final StringBuilder xml, final Random random) {
+        String name = (random.nextInt(6) == 0) ? "Series" : "Episode";
+        xml.append('<').append(name).append('>');
+        int fields = random.nextInt(6);
+        for (int i = 0; i < fields; i++) {
+            String field = ELEMENT_NAMES[random.nextInt(ELEMENT_NAMES.length)];
+            if (random.nextInt(8) == 0) {
+                xml.append('<').append(field).append("/>");
+            } else {
+                xml.append('<').append(field).append('>');
+                appendText(xml, random);
+                xml.append("</").append(field).append('>');
+            }
+            appendText(xml, random);
+        }
+        xml.append("</").append(name).append(">\n");
+    }
+
+    private static String randomDocument(final Random random) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+        String root = (random.nextInt(20) == 0) ? "Other" : "Data";
+        xml.append('<').append(root).append(">\n");
+        int records = random.nextInt(5);
+        for (int i = 0; i < records; i++) {
+            appendRecord(xml, random);
+        }
+        xml.append("</").append(root).append('>');
+        return xml.toString();
+    }
+
+    private static List<String[]> readWithXPath(final String xml) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new InputSource(new StringReader(xml)));
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        NodeList nodes = (NodeList) xpath.evaluate("/Data/Episode", doc, XPathConstants.NODESET);
+        List<String[]> records = new ArrayList<>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            String[] values = new String[FIELDS.length];
+            for (int j = 0; j < FIELDS.length; j++) {
+                Node node = (Node) xpath.evaluate(FIELDS[j], nodes.item(i), XPathConstants.NODE);
+                values[j] = (node == null) ? null : node.getTextContent();
+            }
+            records.add(values);
+        }
+        return records;
+    }
+
+    private static List<String[]> readRecords(final String xml) throws Exception {
+        List<String[]> records = new ArrayList<>();
+        XmlRecordReader.readRecords(new StringReader(xml), "Data", "Episode", FIELDS, records::add);
+        return records;
+    }
+
+    private static void assertSameRecords(final String xml) throws Exception {
+        List<String[]> expected = readWithXPath(xml);
+        List<String[]> actual = readRecords(xml);
+        assertEquals(xml, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(xml, expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testSimpleDocument() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<Data>\n"
+            + "<Series><id>1</id></Series>\n"
+            + "<Episode><id>11</id><EpisodeName>Law &amp; Order</EpisodeName></Episode>\n"
+            + "<Episode><FirstAired>2005-09-22</FirstAired><id>12</id><id>13</id></Episode>\n"
+            + "</Data>";
+        List<String[]> records = readRecords(xml);
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] { "11", "Law & Order", null }, records.get(0));
+        assertArrayEquals(new String[] { "12", null, "2005-09-22" }, records.get(1));
+        assertSameRecords(xml);
+    }
+
+    @Test
+    public void testMoreThanOneKindOfRecord() throws Exception {
+        String xml = "<Data><Series><Status>Ended</Status><id>1</id></Series>"
+            + "<Episode><id>11</id><Status>x</Status></Episode><Other><id>0</id></Other>"
+            + "<Episode><id>12</id></Episode></Data>";
+        List<String> seen = new ArrayList<>();
+        XmlRecordReader.readRecords(new StringReader(xml), "Data",
+                                    new String[] { "Series", "Episode" },
+                                    new String[][] { { "Status" }, { "id" } },
+                                    (type, values) -> seen.add(type + ":" + values[0]));
+        assertEquals("[0:Ended, 1:11, 1:12]", seen.toString());
+    }
+
+    @Test
+    public void testRandomDocuments() throws Exception {
+        Random random = new Random(20170919L);
+        for (int i = 0; i < 3000; i++) {
+            assertSameRecords(randomDocument(random));
+        }
+    }
+}
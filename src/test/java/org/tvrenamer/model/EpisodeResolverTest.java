@@ -0,0 +1,250 @@
+package org.tvrenamer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.tvrenamer.controller.LookupHandle;
+import org.tvrenamer.controller.ShowInformationListener;
+import org.tvrenamer.controller.ShowListingsListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * None of these go to the provider: each test resolves its show name, and starts
+ * its series' download, itself, so ShowStore and ListingsLookup have nothing to do.
+ * Where a test needs a lookup in progress, it begins the query itself, too.
+ */
+public class EpisodeResolverTest {
+
+    private static Series series(final int id, final String name) {
+        Series series = Series.createSeries(id, name);
+        assertTrue(series.beginDownload());
+        series.addEpisodeInfos(new EpisodeInfo[] {
+            new EpisodeInfo.Builder()
+                .episodeId(id + "01")
+                .seasonNumber("1")
+                .episodeNumber("2")
+                .episodeName("Second")
+                .firstAired("2011-01-12")
+                .build()
+        });
+        return series;
+    }
+
+    private static FileEpisode fileEpisode(final String filenameShow) {
+        FileEpisode episode = new FileEpisode(filenameShow.replace(' ', '.') + ".S01E02.avi");
+        episode.setFilenameShow(filenameShow);
+        episode.setEpisodePlacement(1, 2);
+        return episode;
+    }
+
+    private static Throwable failure(final CompletableFuture<?> future)
+        throws InterruptedException, TimeoutException
+    {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the future to fail");
+        } catch (ExecutionException expected) {
+            return expected.getCause();
+        }
+        return null;
+    }
+
+    @Test
+    public void testResolveEpisode() throws Exception {
+        String filenameShow = "resolver test alpha";
+        Series series = series(9907101, "Resolver Test Alpha");
+        ShowName.mapShowName(filenameShow).nameResolved(series);
+
+        // The listener API sees the same outcome as the future.
+        List<String> heard = new ArrayList<>();
+        ShowStore.mapStringToShow(filenameShow, new ShowInformationListener() {
+                @Override
+                public void downloadSucceeded(Show show) {
+                    heard.add("show " + show.getName());
+                    show.asSeries().addListingsListener(new ShowListingsListener() {
+                            @Override
+                            public void listingsDownloadComplete() {
+                                heard.add("listings");
+                            }
+
+                            @Override
+                            public void listingsDownloadFailed(Exception err) {
+                                heard.add("failed");
+                            }
+                        });
+                }
+
+                @Override
+                public void downloadFailed(FailedShow failedShow) {
+                    heard.add("not found");
+                }
+
+                @Override
+                public void apiHasBeenDeprecated() {
+                    heard.add("deprecated");
+                }
+            });
+
+        FileEpisode episode = fileEpisode(filenameShow);
+        CompletableFuture<FileEpisode> future = new EpisodeResolver().resolveEpisode(episode);
+        assertFalse(future.isDone());
+        series.listingsSucceeded();
+
+        assertSame(episode, future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, episode.optionCount());
+        assertEquals("[show Resolver Test Alpha, listings]", heard.toString());
+    }
+
+    @Test
+    public void testShowNotFound() throws Exception {
+        String filenameShow = "resolver test beta";
+        ShowName.mapShowName(filenameShow).nameNotFound(new FailedShow(filenameShow, null));
+
+        FileEpisode episode = fileEpisode(filenameShow);
+        Throwable cause = failure(new EpisodeResolver().resolveEpisode(episode));
+        assertTrue(cause instanceof ShowNotFoundException);
+        assertEquals(filenameShow, ((ShowNotFoundException) cause).getFailedShow().getName());
+        assertEquals(0, episode.optionCount());
+    }
+
+    @Test
+    public void testApiDiscontinued() throws Exception {
+        String filenameShow = "resolver test gamma";
+        ShowName.mapShowName(filenameShow).apiDiscontinued();
+
+        assertTrue(failure(new EpisodeResolver().resolveShow(filenameShow))
+                   instanceof DiscontinuedApiException);
+    }
+
+    @Test
+    public void testListingsFailed() throws Exception {
+        String filenameShow = "resolver test delta";
+        Series series = series(9907102, "Resolver Test Delta");
+        ShowName.mapShowName(filenameShow).nameResolved(series);
+        TVRenamerIOException err = new TVRenamerIOException("listings unavailable");
+        series.listingsFailed(err);
+
+        FileEpisode episode = fileEpisode(filenameShow);
+        assertSame(err, failure(new EpisodeResolver().resolveEpisode(episode)));
+        assertEquals(0, episode.optionCount());
+    }
+
+    @Test
+    public void testStagesRunOnExecutor() throws Exception {
+        String filenameShow = "resolver test epsilon";
+        Series series = series(9907103, "Resolver Test Epsilon");
+        ShowName.mapShowName(filenameShow).nameResolved(series);
+        series.listingsSucceeded();
+
+        AtomicInteger stages = new AtomicInteger();
+        Executor executor = task -> {
+            stages.incrementAndGet();
+            task.run();
+        };
+        FileEpisode episode = fileEpisode(filenameShow);
+        assertSame(episode, new EpisodeResolver(executor).resolveEpisode(episode)
+                   .get(5, TimeUnit.SECONDS));
+        // One for the show, and one for the listings.
+        assertEquals(2, stages.get());
+    }
+
+    private static ShowInformationListener recorder(final List<String> heard) {
+        return new ShowInformationListener() {
+            @Override
+            public void downloadSucceeded(Show show) {
+                heard.add("show " + show.getName());
+            }
+
+            @Override
+            public void downloadFailed(FailedShow failedShow) {
+                heard.add("not found");
+            }
+
+            @Override
+            public void apiHasBeenDeprecated() {
+                heard.add("deprecated");
+            }
+        };
+    }
+
+    @Test
+    public void testLastWithdrawalCallsOffQuery() {
+        String filenameShow = "resolver test zeta";
+        List<String> heard = new ArrayList<>();
+        ShowStore.Batch lookups = new ShowStore.Batch();
+        LookupInterest first = lookups.add(filenameShow, recorder(heard));
+        LookupInterest second = lookups.add(filenameShow, recorder(heard));
+        ShowName showName = ShowName.mapShowName(filenameShow);
+        LookupHandle handle = showName.getQueryHandle();
+        assertFalse(handle.isCancelled());
+
+        first.withdraw();
+        assertFalse(handle.isCancelled());
+        second.withdraw();
+        assertTrue(handle.isCancelled());
+        assertNull(showName.getQueryHandle());
+
+        // The next one to want it looks it up again; the withdrawn aren't told.
+        assertNotNull(showName.beginQuery());
+        showName.nameResolved(series(9907104, "Resolver Test Zeta"));
+        assertTrue(heard.isEmpty());
+    }
+
+    @Test
+    public void testCancellingFutureCallsOffQuery() {
+        String filenameShow = "resolver test eta";
+        ShowName showName = ShowName.mapShowName(filenameShow);
+        LookupHandle handle = showName.beginQuery();
+        assertNotNull(handle);
+
+        CompletableFuture<Show> show = new EpisodeResolver().resolveShow(filenameShow);
+        assertFalse(handle.isCancelled());
+        show.cancel(false);
+        assertTrue(handle.isCancelled());
+    }
+
+    @Test
+    public void testLastWithdrawalCallsOffListings() {
+        Series series = series(9907105, "Resolver Test Theta");
+        LookupHandle handle = series.getDownloadHandle();
+        List<String> heard = new ArrayList<>();
+        LookupInterest interest = series.addListingsListener(new ShowListingsListener() {
+                @Override
+                public void listingsDownloadComplete() {
+                    heard.add("listings");
+                }
+
+                @Override
+                public void listingsDownloadFailed(Exception err) {
+                    heard.add("failed");
+                }
+            });
+        CompletableFuture<Series> listings = series.getListings();
+
+        interest.withdraw();
+        assertFalse(handle.isCancelled());
+        listings.cancel(false);
+        assertTrue(handle.isCancelled());
+        assertNull(series.getDownloadHandle());
+        assertEquals(0, series.getLookupPriority());
+
+        // The download can be started again.
+        assertTrue(series.beginDownload());
+        series.listingsSucceeded();
+        assertTrue(heard.isEmpty());
+    }
+}
@@ -0,0 +1,181 @@
+package org.tvrenamer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tvrenamer.controller.TestClock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class ListingsStoreTest {
+    private static final long HOUR = 60L * 60L * 1000L;
+    private static final String SHOW_ID = "-8001";
+    private static final String SHOW_NAME = "Listings Store Test Show";
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static EpisodeInfo[] listing() {
+        return new EpisodeInfo[] {
+            new EpisodeInfo.Builder()
+                .episodeId("1001").seasonNumber("1").episodeNumber("1")
+                .episodeName("Caf\u00e9 Society").firstAired("2010-01-04")
+                .dvdSeason("1").dvdEpisodeNumber("2.0")
+                .build(),
+            new EpisodeInfo.Builder()
+                .episodeId("1002").seasonNumber("1").episodeNumber("2")
+                .episodeName("The Second One").firstAired("2010-01-11")
+                .dvdSeason("1").dvdEpisodeNumber("1.0")
+                .build(),
+            new EpisodeInfo.Builder()
+                .episodeId("1003").seasonNumber("2").episodeNumber("1")
+                .build(),
+        };
+    }
+
+    private static Show savedShow() {
+        Show show = new Show(SHOW_ID, SHOW_NAME);
+        show.addEpisodeInfos(listing());
+        return show;
+    }
+
+    private static void assertSameEpisode(final Episode expected, final Episode actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getEpisodeId(), actual.getEpisodeId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getAirDate(), actual.getAirDate());
+        assertEquals(String.valueOf(expected.getEpisodePlacement(false)),
+                     String.valueOf(actual.getEpisodePlacement(false)));
+        assertEquals(String.valueOf(expected.getEpisodePlacement(true)),
+                     String.valueOf(actual.getEpisodePlacement(true)));
+    }
+
+    private static Path onlyFile(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.findFirst().get();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Path dir = tempFolder.getRoot().toPath().resolve("listings");
+        TestClock clock = new TestClock();
+        Show saved = savedShow();
+        new ListingsStore(dir, clock).save(saved, HOUR);
+
+        Show loaded = new Show(SHOW_ID, SHOW_NAME);
+        assertEquals(ListingsStore.LoadResult.CURRENT, new ListingsStore(dir, clock).load(loaded));
+        assertFalse(loaded.noEpisodes());
+        for (int season = 1; season <= 2; season++) {
+            for (int episode = 1; episode <= 2; episode++) {
+                EpisodePlacement placement = new EpisodePlacement(season, episode);
+                Episode expected = saved.getEpisode(placement);
+                if (expected == null) {
+                    assertNull(loaded.getEpisode(placement));
+                } else {
+                    assertSameEpisode(expected, loaded.getEpisode(placement));
+                }
+            }
+        }
+        // The DVD ordering is preferred, so the index is built from it.
+        assertEquals("1002", loaded.getEpisode(new EpisodePlacement(1, 1)).getEpisodeId());
+        assertNull(loaded.getEpisode(new EpisodePlacement(2, 1)).getTitle());
+    }
+
+    @Test
+    public void testOtherShowIsNotLoaded() {
+        ListingsStore store = new ListingsStore(tempFolder.getRoot().toPath(), new TestClock());
+        store.save(savedShow(), HOUR);
+        Show other = new Show("-8002", "Another Show");
+        assertEquals(ListingsStore.LoadResult.NOT_FOUND, store.load(other));
+        assertTrue(other.noEpisodes());
+    }
+
+    @Test
+    public void testExpiredListingsAreLoadedAsExpired() {
+        TestClock clock = new TestClock();
+        ListingsStore store = new ListingsStore(tempFolder.getRoot().toPath(), clock);
+        store.save(savedShow(), 2 * HOUR);
+        clock.advance(HOUR);
+        assertEquals(ListingsStore.LoadResult.CURRENT, store.load(new Show(SHOW_ID, SHOW_NAME)));
+        clock.advance(2 * HOUR);
+        Show show = new Show(SHOW_ID, SHOW_NAME);
+        assertEquals(ListingsStore.LoadResult.EXPIRED, store.load(show));
+        assertFalse(show.noEpisodes());
+    }
+
+    @Test
+    public void testOtherVersionIsDiscarded() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        ListingsStore store = new ListingsStore(dir, new TestClock());
+        store.save(savedShow(), HOUR);
+        Path file = onlyFile(dir);
+        byte[] bytes = Files.readAllBytes(file);
+        // The version is the second int in the file.
+        bytes[7]++;
+        Files.write(file, bytes);
+        assertEquals(ListingsStore.LoadResult.NOT_FOUND, store.load(new Show(SHOW_ID, SHOW_NAME)));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testTruncatedFileIsIgnored() throws IOException {
+        Path dir = tempFolder.getRoot().toPath();
+        ListingsStore store = new ListingsStore(dir, new TestClock());
+        store.save(savedShow(), HOUR);
+        Path file = onlyFile(dir);
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] truncated = new byte[bytes.length - 10];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        Files.write(file, truncated);
+        Show show = new Show(SHOW_ID, SHOW_NAME);
+        assertEquals(ListingsStore.LoadResult.NOT_FOUND, store.load(show));
+        assertTrue(show.noEpisodes());
+
+        store.clear();
+        assertFalse(Files.exists(file));
+    }
+
+    /*
+     * What refreshing expired listings does: load them, save the new ones over
+     * them, and load them again.  Windows won't replace a file that's still
+     * mapped, so that is where not mapping matters, but both ways are tried.
+     */
+    private void checkLoadSaveReload(final boolean mapFiles) {
+        TestClock clock = new TestClock();
+        ListingsStore store = new ListingsStore(tempFolder.getRoot().toPath(), clock, mapFiles);
+        store.save(savedShow(), HOUR);
+        clock.advance(2 * HOUR);
+        Show show = new Show(SHOW_ID, SHOW_NAME);
+        assertEquals(ListingsStore.LoadResult.EXPIRED, store.load(show));
+
+        store.save(show, HOUR);
+        Show reloaded = new Show(SHOW_ID, SHOW_NAME);
+        assertEquals(ListingsStore.LoadResult.CURRENT, store.load(reloaded));
+        assertSameEpisode(show.getEpisode(new EpisodePlacement(1, 1)),
+                          reloaded.getEpisode(new EpisodePlacement(1, 1)));
+
+        store.remove(reloaded);
+        assertEquals(ListingsStore.LoadResult.NOT_FOUND,
+                     store.load(new Show(SHOW_ID, SHOW_NAME)));
+    }
+
+    @Test
+    public void testLoadSaveReloadMapped() {
+        checkLoadSaveReload(true);
+    }
+
+    @Test
+    public void testLoadSaveReloadRead() {
+        checkLoadSaveReload(false);
+    }
+}
@@ -0,0 +1,118 @@
+package org.tvrenamer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tvrenamer.controller.TestClock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class QueryStringStoreTest {
+    private static final long HOUR = 60L * 60L * 1000L;
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path storeFile() {
+        return tempFolder.getRoot().toPath().resolve("cache").resolve("shows.txt");
+    }
+
+    @Test
+    public void testResolvedShowIsRemembered() {
+        TestClock clock = new TestClock();
+        QueryStringStore store = new QueryStringStore(storeFile(), clock);
+        assertNull(store.lookup("cosmos a space time odyssey", "Cosmos"));
+        store.put("cosmos a space time odyssey",
+                  ShowOption.getShowOption("260586", "Cosmos: A Spacetime Odyssey"), 2 * HOUR);
+
+        // Another instance, such as the next run of the program, reads the file.
+        QueryStringStore reopened = new QueryStringStore(storeFile(), clock);
+        ShowOption option = reopened.lookup("cosmos a space time odyssey", "Cosmos");
+        assertNotNull(option);
+        assertFalse(option.isFailedShow());
+        assertEquals("260586", option.getIdString());
+        assertEquals("Cosmos: A Spacetime Odyssey", option.getName());
+        assertNull(reopened.lookup("cosmos", "Cosmos"));
+
+        clock.advance(3 * HOUR);
+        assertNull(new QueryStringStore(storeFile(), clock)
+                   .lookup("cosmos a space time odyssey", "Cosmos"));
+    }
+
+    @Test
+    public void testNotFoundExpires() {
+        TestClock clock = new TestClock();
+        QueryStringStore store = new QueryStringStore(storeFile(), clock);
+        store.put("no such show", new FailedShow("No.Such.Show", null), HOUR);
+
+        ShowOption option = new QueryStringStore(storeFile(), clock)
+            .lookup("no such show", "no.such.show");
+        assertNotNull(option);
+        assertTrue(option.isFailedShow());
+        assertEquals("no.such.show", option.getName());
+
+        clock.advance(HOUR);
+        assertNull(store.lookup("no such show", "no.such.show"));
+    }
+
+    @Test
+    public void testNamesAreKeptOnOneLine() {
+        QueryStringStore store = new QueryStringStore(storeFile(), new TestClock());
+        store.put("tabs", ShowOption.getShowOption("1234", "Tab\tAnd\nNewline\rReturn"), HOUR);
+        store.put("carriage\rreturn", ShowOption.getShowOption("5678", "Carriage Return"), HOUR);
+        QueryStringStore reloaded = new QueryStringStore(storeFile(), new TestClock());
+        ShowOption option = reloaded.lookup("tabs", "tabs");
+        assertNotNull(option);
+        assertEquals("Tab And Newline Return", option.getName());
+        assertNull(reloaded.lookup("carriage\rreturn", "carriage\rreturn"));
+        // Had it been written, the part after the return would be read as a key.
+        assertNull(reloaded.lookup("return", "return"));
+    }
+
+    @Test
+    public void testOtherVersionIsIgnored() throws IOException {
+        Path file = storeFile();
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList("TVRSHOWS 0", "futurama\t9999999999999\t73871\tFuturama"),
+                    StandardCharsets.UTF_8);
+        TestClock clock = new TestClock();
+        QueryStringStore store = new QueryStringStore(file, clock);
+        assertNull(store.lookup("futurama", "Futurama"));
+
+        store.put("archer", ShowOption.getShowOption("110381", "Archer (2009)"), HOUR);
+        ShowOption option = new QueryStringStore(file, clock).lookup("archer", "Archer");
+        assertNotNull(option);
+        assertEquals("110381", option.getIdString());
+    }
+
+    @Test
+    public void testMappingsAreAppendedAndCompacted() throws IOException {
+        TestClock clock = new TestClock();
+        QueryStringStore store = new QueryStringStore(storeFile(), clock);
+        store.put("archer", ShowOption.getShowOption("110381", "Archer (2009)"), HOUR);
+        store.put("futurama", new FailedShow("Futurama", null), HOUR);
+        store.put("futurama", ShowOption.getShowOption("73871", "Futurama"), 3 * HOUR);
+        // The header, and a line for each mapping added.
+        assertEquals(4, Files.readAllLines(storeFile(), StandardCharsets.UTF_8).size());
+
+        // The last line for a query string wins, and reading the file drops
+        // the lines that are repeated or expired.
+        clock.advance(2 * HOUR);
+        QueryStringStore reopened = new QueryStringStore(storeFile(), clock);
+        assertNull(reopened.lookup("archer", "Archer"));
+        ShowOption option = reopened.lookup("futurama", "Futurama");
+        assertNotNull(option);
+        assertEquals("73871", option.getIdString());
+        assertEquals(2, Files.readAllLines(storeFile(), StandardCharsets.UTF_8).size());
+    }
+}
@@ -0,0 +1,142 @@
+package org.tvrenamer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.tvrenamer.model.util.Constants;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * RenameTemplate is meant to produce exactly what the chain of replaceAll calls
+ * in FileEpisode produces.  This compares the two on templates and values made
+ * up at random, including the kinds of things that make the chain behave
+ * differently from a simple substitution.
+ */
+public class RenameTemplateTest {
+
+    private static final String[] TEMPLATE_FRAGMENTS = {
+        "%S", "%s", "%0s", "%e", "%0e", "%t", "%T", "%r",
+        "%yyyy", "%yy", "%m", "%0m", "%d", "%0d",
+        "%", "%0", "%y", "y", "yy", " ", "[", "]", "x", "-", ".", "$", "$1", "\\", "S", "abc",
+    };
+
+    private static final String[] VALUE_FRAGMENTS = {
+        "The", " ", "Show", "y", "yy", "%", "%t", "%d", "$", "$1", "\\", ".", "\u00e9", ":", "?",
+        "  ", "x",
+    };
+
+    private static final String[] RESOLUTIONS = {
+        "", "720p", "1080p", "4k", "y", "yy", "%r", "$1", "\\",
+    };
+
+    private static final String[] COMMON_TEMPLATES = {
+        Constants.DEFAULT_REPLACEMENT_MASK,
+        "%S [%sx%e] %t",
+        "%S [%sx%e] %t %r",
+        "%S S%0sE%0e %t",
+        "%S.S%0sE%0e.%T",
+        "%S - %yyyy-%0m-%0d - %t",
+        "%S %d.%m.%yy",
+    };
+
+    private static String randomString(final Random random, final String[] fragments,
+                                       final int maxPieces)
+    {
+        StringBuilder text = new StringBuilder();
+        int pieces = random.nextInt(maxPieces + 1);
+        for (int i = 0; i < pieces; i++) {
+            text.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return text.toString();
+    }
+
+    private static void assertSameAsReplaceAll(final String template, final String showName,
+                                               final String title,
+                                               final EpisodePlacement placement,
+                                               final String resolution, final LocalDate airDate)
+    {
+        String rendered = RenameTemplate.compile(template)
+            .render(showName, title, placement, resolution, airDate);
+        if (rendered == null) {
+            return;
+        }
+        String expected;
+        try {
+            expected = FileEpisode.replaceTokens(template, showName, title, placement,
+                                                 resolution, airDate);
+        } catch (RuntimeException e) {
+            throw new AssertionError("replaceAll failed, but template rendered: <[" + template
+                                     + "]> with resolution <[" + resolution + "]>", e);
+        }
+        assertEquals("template <[" + template + "]>, show <[" + showName + "]>, title <["
+                     + title + "]>, resolution <[" + resolution + "]>, date " + airDate,
+                     expected, rendered);
+    }
+
+    @Test
+    public void testCommonTemplatesAreCompiled() {
+        EpisodePlacement placement = new EpisodePlacement(5, 10);
+        LocalDate airDate = LocalDate.of(1993, 12, 9);
+        for (String template : COMMON_TEMPLATES) {
+            RenameTemplate compiled = RenameTemplate.compile(template);
+            assertTrue(template, compiled.isCompiled());
+            assertNotNull(template, compiled.render("The Simpsons", "$pringfield",
+                                                    placement, "720p", airDate));
+            assertSameAsReplaceAll(template, "The Simpsons", "$pringfield",
+                                   placement, "720p", airDate);
+            assertSameAsReplaceAll(template, "The Simpsons", "$pringfield",
+                                   placement, "", null);
+        }
+    }
+
+    @Test
+    public void testAmbiguousTemplatesAreNotCompiled() {
+        assertFalse(RenameTemplate.compile("100% %S").isCompiled());
+        assertFalse(RenameTemplate.compile("%%s").isCompiled());
+        assertFalse(RenameTemplate.compile("%yy%t").isCompiled());
+        assertFalse(RenameTemplate.compile("%yyy%r").isCompiled());
+        assertFalse(RenameTemplate.compile("%yy%dyy").isCompiled());
+        assertTrue(RenameTemplate.compile("%yy%s").isCompiled());
+        assertTrue(RenameTemplate.compile("%yyy").isCompiled());
+    }
+
+    @Test
+    public void testRandomTemplates() {
+        Random random = new Random(19891217L);
+        for (int i = 0; i < 50000; i++) {
+            String template = randomString(random, TEMPLATE_FRAGMENTS, 8);
+            String showName = randomString(random, VALUE_FRAGMENTS, 5);
+            String title = randomString(random, VALUE_FRAGMENTS, 5);
+            String resolution = RESOLUTIONS[random.nextInt(RESOLUTIONS.length)];
+            EpisodePlacement placement = new EpisodePlacement(random.nextInt(30) - 1,
+                                                              random.nextInt(1200));
+            LocalDate airDate = (random.nextInt(4) == 0) ? null
+                : LocalDate.of(1950 + random.nextInt(80), 1 + random.nextInt(12),
+                               1 + random.nextInt(28));
+            assertSameAsReplaceAll(template, showName, title, placement, resolution, airDate);
+        }
+    }
+
+    @Test
+    public void testCacheIsDiscardedWhenMaskChanges() {
+        UserPreferences prefs = UserPreferences.getInstance();
+        String original = prefs.getRenameReplacementString();
+        try {
+            RenameTemplate first = RenameTemplate.forMask("%S %t");
+            assertSame(first, RenameTemplate.forMask("%S %t"));
+            prefs.setRenameReplacementString(original + " %r");
+            assertNotSame(first, RenameTemplate.forMask("%S %t"));
+            assertEquals("%S [%sx%e]", RenameTemplate.forMask("%S [%sx%e]").getMask());
+        } finally {
+            prefs.setRenameReplacementString(original);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.tvrenamer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ShowTest {
+
+    private static EpisodeInfo episode(final String id, final int season, final int episode,
+                                       final String title)
+    {
+        return new EpisodeInfo.Builder()
+            .episodeId(id)
+            .seasonNumber(String.valueOf(season))
+            .episodeNumber(String.valueOf(episode))
+            .episodeName(title)
+            .firstAired("2011-0" + season + "-1" + episode)
+            .build();
+    }
+
+    private static EpisodeInfo[] listing() {
+        return new EpisodeInfo[] {
+            episode("2001", 1, 1, "Pilot"),
+            episode("2002", 1, 2, "Second"),
+            episode("2003", 2, 1, "Third"),
+        };
+    }
+
+    private static Set<EpisodePlacement> placements(final EpisodePlacement... placements) {
+        return new HashSet<>(Arrays.asList(placements));
+    }
+
+    @Test
+    public void testReplaceWithSameListings() {
+        Show show = new Show("-9101", "Replace Same Show");
+        show.addEpisodeInfos(listing());
+        Episode before = show.getEpisode(new EpisodePlacement(1, 1));
+
+        assertTrue(show.replaceEpisodeInfos(listing()).isEmpty());
+        assertTrue(before == show.getEpisode(new EpisodePlacement(1, 1)));
+    }
+
+    @Test
+    public void testReplaceWithChangedListings() {
+        Show show = new Show("-9102", "Replace Changed Show");
+        show.addEpisodeInfos(listing());
+
+        EpisodeInfo[] refreshed = {
+            episode("2001", 1, 1, "Pilot"),
+            episode("2002", 1, 2, "Second, With A Title"),
+            episode("2004", 2, 2, "Fourth"),
+        };
+        Set<EpisodePlacement> changed = show.replaceEpisodeInfos(refreshed);
+        assertEquals(placements(new EpisodePlacement(1, 2), new EpisodePlacement(2, 1),
+                                new EpisodePlacement(2, 2)),
+                     changed);
+        assertEquals("Second, With A Title",
+                     show.getEpisode(new EpisodePlacement(1, 2)).getTitle());
+        assertEquals("Fourth", show.getEpisode(new EpisodePlacement(2, 2)).getTitle());
+        assertNull(show.getEpisodes(new EpisodePlacement(2, 1)));
+    }
+}